@@ -0,0 +1,229 @@
+package com.elmsoftware.env.benchmark;
+
+import com.elmsoftware.env.EnvironmentSettings;
+import com.elmsoftware.env.EnvironmentSettingsSnapshot;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes synthetic configuration files for the benchmarks - this runs at build time so the files end up on the
+ * benchmark classpath.
+ * <p>
+ * Each file has {@code keyCount} global settings, and each of its {@code environmentCount} environments overrides
+ * about a tenth of them. The first {@code aliasCount} keys get an alias, and {@code requiredRatio} of the keys (spread
+ * evenly) are required. More files can be written by passing specs after the directory, as
+ * {@code environments:keys[:aliases[:requiredRatio]]} - {@code 10:100000:1000:0.5}, for example.
+ */
+public class ConfigGenerator {
+
+	public static final int DEFAULT_ALIAS_COUNT = 1;
+	public static final double DEFAULT_REQUIRED_RATIO = 0.05;
+
+	// environments x keys, with the default aliases and required keys
+	private static final int[][] SIZES = {{5, 10}, {5, 100}, {60, 1000}, {60, 5000}, {5, 100_000}};
+	// and some with more aliases and required keys - environments:keys:aliases:requiredRatio
+	private static final String[] VARIANTS = {"60:1000:500:0.5", "5:100000:10000:0.5"};
+
+	private final int environmentCount;
+	private final int keyCount;
+
+	private int aliasCount = DEFAULT_ALIAS_COUNT;
+	private double requiredRatio = DEFAULT_REQUIRED_RATIO;
+
+	public ConfigGenerator(final int environmentCount, final int keyCount) {
+		this.environmentCount = environmentCount;
+		this.keyCount = keyCount;
+	}
+
+	/**
+	 * @param spec - environments:keys[:aliases[:requiredRatio]]
+	 * @return a generator for the spec
+	 */
+	public static ConfigGenerator parse(final String spec) {
+		final String[] parts = spec.split(":");
+		if (parts.length < 2 || parts.length > 4) {
+			throw new IllegalArgumentException("expected environments:keys[:aliases[:requiredRatio]], not " + spec);
+		}
+		final ConfigGenerator generator = new ConfigGenerator(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+		if (parts.length > 2) {
+			generator.withAliases(Integer.parseInt(parts[2]));
+		}
+		if (parts.length > 3) {
+			generator.withRequiredRatio(Double.parseDouble(parts[3]));
+		}
+		return generator;
+	}
+
+	/**
+	 * @param aliasCount - how many keys get an alias (at most all of them)
+	 * @return this generator
+	 */
+	public ConfigGenerator withAliases(final int aliasCount) {
+		this.aliasCount = Math.min(aliasCount, keyCount);
+		return this;
+	}
+
+	/**
+	 * @param requiredRatio - the share of the keys (0 to 1) that are required
+	 * @return this generator
+	 */
+	public ConfigGenerator withRequiredRatio(final double requiredRatio) {
+		if (requiredRatio < 0 || requiredRatio > 1) {
+			throw new IllegalArgumentException("requiredRatio must be from 0 to 1, not " + requiredRatio);
+		}
+		this.requiredRatio = requiredRatio;
+		return this;
+	}
+
+	public static String resourceName(final int environmentCount, final int keyCount) {
+		return String.format("generated-%dx%d.json", environmentCount, keyCount);
+	}
+
+	public static String resourceName(
+		final int environmentCount,
+		final int keyCount,
+		final int aliasCount,
+		final double requiredRatio
+	) {
+		return String.format(
+			"generated-%dx%d-a%d-r%d.json",
+			environmentCount,
+			keyCount,
+			aliasCount,
+			Math.round(requiredRatio * 100)
+		);
+	}
+
+	/**
+	 * @return the name of this generator's file - the short form if the aliases and required keys are the defaults
+	 */
+	public String resourceName() {
+		return aliasCount == Math.min(DEFAULT_ALIAS_COUNT, keyCount) && requiredRatio == DEFAULT_REQUIRED_RATIO
+			? resourceName(environmentCount, keyCount)
+			: resourceName(environmentCount, keyCount, aliasCount, requiredRatio);
+	}
+
+	/**
+	 * The snapshot copy of a generated file - this is deliberately not named with the snapshot suffix, so that
+	 * loading the json by name still parses the json.
+	 *
+	 * @param resourceName - the generated json resource
+	 * @return the name of the snapshot copy
+	 */
+	public static String binaryName(final String resourceName) {
+		return resourceName + ".bin";
+	}
+
+	public static String environmentName(final int index) {
+		return "ENV" + index;
+	}
+
+	public static String keyName(final int index) {
+		return "some.generated.key." + index;
+	}
+
+	public static String aliasName(final int index) {
+		return "generated_alias_" + index;
+	}
+
+	// spreads the required keys evenly - key k is required when the running count of required keys goes up
+	private boolean isRequired(final int index) {
+		return (long) ((index + 1) * requiredRatio) > (long) (index * requiredRatio);
+	}
+
+	public void write(final File file) throws IOException {
+
+		try (final JsonGenerator json = new JsonFactory().createGenerator(file, JsonEncoding.UTF8)) {
+
+			json.writeStartObject();
+
+			json.writeObjectFieldStart("globalSettings");
+			for (int k = 0; k < keyCount; k++) {
+				json.writeStringField(keyName(k), "global.value." + k);
+			}
+			json.writeEndObject();
+
+			// every environment overrides about a tenth of the keys
+			json.writeObjectFieldStart("environmentSettings");
+			for (int e = 0; e < environmentCount; e++) {
+				json.writeObjectFieldStart(environmentName(e));
+				for (int k = e % 10; k < keyCount; k += 10) {
+					json.writeStringField(keyName(k), environmentName(e) + ".value." + k);
+				}
+				json.writeEndObject();
+			}
+			json.writeEndObject();
+
+			json.writeArrayFieldStart("requiredSettings");
+			for (int k = 0; k < keyCount; k++) {
+				if (isRequired(k)) {
+					json.writeString(keyName(k));
+				}
+			}
+			json.writeEndArray();
+
+			json.writeArrayFieldStart("sensitiveSettings");
+			json.writeString(keyName(0));
+			json.writeEndArray();
+
+			json.writeObjectFieldStart("aliases");
+			for (int k = 0; k < aliasCount; k++) {
+				json.writeStringField(keyName(k), aliasName(k));
+			}
+			json.writeEndObject();
+
+			json.writeEndObject();
+
+		}
+
+	}
+
+	private static void writeSnapshot(final File json, final File snapshot) throws IOException {
+		final byte[] content = Files.readAllBytes(json.toPath());
+		try (final OutputStream out = Files.newOutputStream(snapshot.toPath())) {
+			EnvironmentSettingsSnapshot.write(
+				EnvironmentSettings.load(new ByteArrayInputStream(content)),
+				EnvironmentSettingsSnapshot.hash(content),
+				out
+			);
+		}
+		System.out.println("wrote " + snapshot);
+	}
+
+	public static void main(final String[] args) throws IOException {
+
+		final File directory = new File(args[0]);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("unable to create " + directory);
+		}
+
+		final List<ConfigGenerator> generators = new ArrayList<>();
+		for (final int[] size : SIZES) {
+			generators.add(new ConfigGenerator(size[0], size[1]));
+		}
+		for (final String spec : VARIANTS) {
+			generators.add(parse(spec));
+		}
+		for (int i = 1; i < args.length; i++) {
+			generators.add(parse(args[i]));
+		}
+
+		for (final ConfigGenerator generator : generators) {
+			final File file = new File(directory, generator.resourceName());
+			generator.write(file);
+			System.out.println("wrote " + file);
+			writeSnapshot(file, new File(directory, binaryName(file.getName())));
+		}
+
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.elmsoftware.env.benchmark;
+
+import com.elmsoftware.env.SettingProvider;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A local stand-in for a remote store: every call - a single lookup or a bulk one - waits for the latency first, like
+ * a round trip would. The values come from a map.
+ */
+public class LatencySettingProvider implements SettingProvider {
+
+	private final Map<String, String> values;
+	private final long latencyNanos;
+
+	public LatencySettingProvider(final Map<String, String> values, final long latency, final TimeUnit unit) {
+		this.values = values;
+		this.latencyNanos = unit.toNanos(latency);
+	}
+
+	@Override
+	public String getProperty(final String environment, final String key) {
+		roundTrip();
+		return values.get(key);
+	}
+
+	@Override
+	public Map<String, String> getProperties(final String environment, final Collection<String> keys) {
+		roundTrip();
+		final Map<String, String> found = new HashMap<>();
+		for (final String key : keys) {
+			final String value = values.get(key);
+			if (null != value) {
+				found.put(key, value);
+			}
+		}
+		return found;
+	}
+
+	private void roundTrip() {
+		final long end = System.nanoTime() + latencyNanos;
+		for (long remaining = latencyNanos; remaining > 0; remaining = end - System.nanoTime()) {
+			LockSupport.parkNanos(remaining);
+			if (Thread.currentThread().isInterrupted()) {
+				// cancelled (a hedged lookup that isn't needed any more)
+				return;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package com.elmsoftware.env.benchmark;
+
+import com.elmsoftware.env.EnvironmentSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the databind loader with the streaming, environment-selective loader - as loads per second and as time per
+ * load.
+ * <p>
+ * Run with {@code java -jar target/benchmarks.jar LoadBenchmark -prof gc} to see allocation as well as time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadBenchmark {
+
+	@Param({
+		"generated-5x10.json",
+		"generated-5x100.json",
+		"generated-60x1000.json",
+		"generated-60x5000.json",
+		"generated-5x100000.json",
+		"generated-60x1000-a500-r50.json"
+	})
+	public String resourceName;
+
+	@Benchmark
+	public EnvironmentSettings databind() {
+		return EnvironmentSettings.load(resourceName);
+	}
+
+	@Benchmark
+	public EnvironmentSettings selective() {
+		return EnvironmentSettings.load(resourceName, ConfigGenerator.environmentName(1));
+	}
+
+}
@@ -0,0 +1,34 @@
+package com.elmsoftware.env.benchmark;
+
+import com.elmsoftware.env.EnvironmentSettings;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Prints the retained size of the settings produced by each loader - this is not a JMH benchmark, just run it:
+ * {@code java -cp target/benchmarks.jar com.elmsoftware.env.benchmark.LoadFootprint}
+ */
+public class LoadFootprint {
+
+	public static void main(final String[] args) {
+
+		System.out.printf("%-26s %16s %16s%n", "resource", "databind bytes", "selective bytes");
+
+		for (final String resourceName : new String[]{
+			"generated-5x100.json", "generated-60x1000.json", "generated-60x5000.json"
+		}) {
+
+			final long databind = GraphLayout.parseInstance(
+				EnvironmentSettings.load(resourceName)
+			).totalSize();
+
+			final long selective = GraphLayout.parseInstance(
+				EnvironmentSettings.load(resourceName, ConfigGenerator.environmentName(1))
+			).totalSize();
+
+			System.out.printf("%-26s %16d %16d%n", resourceName, databind, selective);
+
+		}
+
+	}
+
+}
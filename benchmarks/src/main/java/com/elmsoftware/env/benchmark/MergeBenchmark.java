@@ -0,0 +1,72 @@
+package com.elmsoftware.env.benchmark;
+
+import com.elmsoftware.env.EnvironmentSettings;
+import com.elmsoftware.env.LayeredSettings;
+import com.elmsoftware.env.SettingsMap;
+import com.elmsoftware.env.settingproviderimpl.NoOpSettingProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of merging one environment of loaded settings - every required key has a value in the file, so the provider
+ * is never asked (see {@link ProviderBenchmark} for that). The files with {@code -r50} in their names have half of
+ * their keys required, and a lot more aliases.
+ * <p>
+ * Run with {@code java -jar target/benchmarks.jar MergeBenchmark -prof gc} to see allocation as well as time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MergeBenchmark {
+
+	@Param({
+		"generated-5x10.json",
+		"generated-60x1000.json",
+		"generated-60x1000-a500-r50.json",
+		"generated-5x100000.json",
+		"generated-5x100000-a10000-r50.json"
+	})
+	public String resourceName;
+
+	private EnvironmentSettings settings;
+	private String environment;
+	private NoOpSettingProvider provider;
+
+	@Setup
+	public void setup() {
+		settings = EnvironmentSettings.load(resourceName);
+		environment = ConfigGenerator.environmentName(1);
+		provider = new NoOpSettingProvider();
+	}
+
+	@Benchmark
+	public Map<String, String> merge() {
+		return settings.merge(environment, provider);
+	}
+
+	@Benchmark
+	public LayeredSettings mergeLayered() {
+		return settings.mergeLayered(environment, provider);
+	}
+
+	@Benchmark
+	public SettingsMap mergeCompact() {
+		return settings.mergeCompact(environment, provider);
+	}
+
+}
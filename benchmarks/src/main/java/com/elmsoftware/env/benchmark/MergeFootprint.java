@@ -0,0 +1,47 @@
+package com.elmsoftware.env.benchmark;
+
+import com.elmsoftware.env.EnvironmentSettings;
+import com.elmsoftware.env.settingproviderimpl.NoOpSettingProvider;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prints the memory held by the results of merging every environment in a settings file, as flat maps and as layered
+ * views - not counting the loaded settings themselves, which are shared by both:
+ * {@code java -cp target/benchmarks.jar com.elmsoftware.env.benchmark.MergeFootprint}
+ */
+public class MergeFootprint {
+
+	public static void main(final String[] args) {
+
+		System.out.printf("%-26s %16s %16s%n", "resource", "merge bytes", "layered bytes");
+
+		for (final String resourceName : new String[]{
+			"generated-5x100.json", "generated-60x1000.json", "generated-60x5000.json"
+		}) {
+
+			final EnvironmentSettings settings = EnvironmentSettings.load(resourceName);
+			final long loaded = GraphLayout.parseInstance(settings).totalSize();
+
+			final List<Map<String, String>> merged = new ArrayList<>();
+			final List<Map<String, String>> layered = new ArrayList<>();
+			for (final String environment : settings.getEnvironmentSettings().keySet()) {
+				merged.add(settings.merge(environment, new NoOpSettingProvider()));
+				layered.add(settings.mergeLayered(environment, new NoOpSettingProvider()));
+			}
+
+			System.out.printf(
+				"%-26s %16d %16d%n",
+				resourceName,
+				GraphLayout.parseInstance(settings, merged).totalSize() - loaded,
+				GraphLayout.parseInstance(settings, layered).totalSize() - loaded
+			);
+
+		}
+
+	}
+
+}
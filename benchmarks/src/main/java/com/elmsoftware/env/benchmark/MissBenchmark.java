@@ -0,0 +1,96 @@
+package com.elmsoftware.env.benchmark;
+
+import com.elmsoftware.env.settingproviderimpl.AwsSsmV2SettingProvider;
+import com.elmsoftware.env.settingproviderimpl.ProviderExceptionHandler;
+import com.elmsoftware.env.settingproviderimpl.SettingNotFoundException;
+import com.elmsoftware.env.settingproviderimpl.SsmThrottling;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.ssm.SsmClient;
+import software.amazon.awssdk.services.ssm.model.GetParametersRequest;
+import software.amazon.awssdk.services.ssm.model.GetParametersResponse;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a miss: a key that the SSM provider doesn't have. The client is an in-memory stub that has no parameters,
+ * so only our side of a miss is measured. {@code formattedException} builds the exception the way a miss used to be
+ * reported (a formatted message and a filled in stack trace) for comparison with {@code stacklessException}, and
+ * {@code reportFailure} is a failed request going through the default exception handler with debug logging off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MissBenchmark {
+
+	private static final List<String> NAMES = Arrays.asList("/test/prefix/missing", "/test/missing", "/global/missing");
+
+	private AwsSsmV2SettingProvider provider;
+	private ProviderExceptionHandler handler;
+	private Exception failure;
+
+	@Setup
+	public void setup() {
+		// the stub can't be throttled, so don't pace requests to it
+		provider = new AwsSsmV2SettingProvider(new EmptySsmClient(), "prefix")
+			.withThrottling(new SsmThrottling().withMaxRate(1_000_000));
+		handler = new ProviderExceptionHandler();
+		failure = new IllegalStateException("request failed");
+	}
+
+	@Benchmark
+	public Object providerMiss() {
+		try {
+			return provider.getProperty("test", "missing");
+		} catch (final SettingNotFoundException e) {
+			return e;
+		}
+	}
+
+	@Benchmark
+	public Object formattedException() {
+		return new RuntimeException(String.format("unable to find parameter using pattern %s", NAMES.get(0)));
+	}
+
+	@Benchmark
+	public Object stacklessException() {
+		return new SettingNotFoundException(NAMES.get(0));
+	}
+
+	@Benchmark
+	public void reportFailure() {
+		handler.accept(new ProviderExceptionHandler.ExceptionInfo(NAMES, failure, false));
+	}
+
+	private static class EmptySsmClient implements SsmClient {
+
+		@Override
+		public GetParametersResponse getParameters(final GetParametersRequest request) {
+			return GetParametersResponse.builder().invalidParameters(request.names()).build();
+		}
+
+		@Override
+		public String serviceName() {
+			return "ssm";
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.elmsoftware.env.benchmark;
+
+import com.elmsoftware.env.EnvironmentSettings;
+import com.elmsoftware.env.settingproviderimpl.ChainingSettingProvider;
+import com.elmsoftware.env.settingproviderimpl.ParallelSettingProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out of a merge whose required settings all have to come from providers: a chain of three local stand-ins - like
+ * environment variables (no latency), a disk cache (100us) and SSM (a few ms) - where the first has none of the keys,
+ * the second has a tenth of them and the last has the rest. Compares the chain asking one provider after the other,
+ * with routing (after the first merge, each key goes straight to its provider), with hedging, and with one lookup per
+ * key on an executor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProviderBenchmark {
+
+	private static final String ENVIRONMENT = ConfigGenerator.environmentName(0);
+
+	@Param({"10", "100"})
+	public int requiredCount;
+
+	@Param({"2", "5"})
+	public int remoteLatencyMillis;
+
+	private EnvironmentSettings settings;
+	private ChainingSettingProvider serial;
+	private ChainingSettingProvider routed;
+	private ChainingSettingProvider hedged;
+	private ExecutorService executor;
+
+	@Setup
+	public void setup() {
+
+		settings = new EnvironmentSettings();
+		final Map<String, String> cached = new HashMap<>();
+		final Map<String, String> remote = new HashMap<>();
+		for (int k = 0; k < requiredCount; k++) {
+			settings.withRequiredSetting(ConfigGenerator.keyName(k));
+			(k % 10 == 0 ? cached : remote).put(ConfigGenerator.keyName(k), "value." + k);
+		}
+
+		serial = chain(cached, remote);
+		routed = chain(cached, remote).withRouting(Duration.ofHours(1));
+		settings.merge(ENVIRONMENT, routed);
+		executor = ParallelSettingProvider.newDefaultExecutor();
+		hedged = chain(cached, remote).withHedging(Duration.ofMillis(1), executor);
+
+	}
+
+	@TearDown
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Benchmark
+	public Map<String, String> serialChain() {
+		return settings.merge(ENVIRONMENT, serial);
+	}
+
+	@Benchmark
+	public Map<String, String> routedChain() {
+		return settings.merge(ENVIRONMENT, routed);
+	}
+
+	@Benchmark
+	public Map<String, String> hedgedChain() {
+		return settings.merge(ENVIRONMENT, hedged);
+	}
+
+	@Benchmark
+	public Map<String, String> lookupPerKey() {
+		return settings.merge(ENVIRONMENT, serial, executor);
+	}
+
+	private ChainingSettingProvider chain(final Map<String, String> cached, final Map<String, String> remote) {
+		return new ChainingSettingProvider(
+			new LatencySettingProvider(new HashMap<>(), 0, TimeUnit.MILLISECONDS),
+			new LatencySettingProvider(cached, 100, TimeUnit.MICROSECONDS),
+			new LatencySettingProvider(remote, remoteLatencyMillis, TimeUnit.MILLISECONDS)
+		);
+	}
+
+}
@@ -0,0 +1,98 @@
+package com.elmsoftware.env.benchmark;
+
+import com.elmsoftware.env.SettingsMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup cost of the merged settings: {@link HashMap} versus {@link SettingsMap} with and without the perfect hash.
+ * Every lookup uses a key instance that is equal to, but not the same as, the stored key - like a key coming from an
+ * annotation or a property placeholder would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SettingsMapBenchmark {
+
+	private static final int LOOKUPS = 1024;
+
+	@Param({"100", "1000", "10000"})
+	public int size;
+
+	private Map<String, String> hashMap;
+	private SettingsMap perfect;
+	private SettingsMap probing;
+	private String[] lookups;
+
+	@Setup
+	public void setup() {
+		hashMap = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			hashMap.put(ConfigGenerator.keyName(i), "value." + i);
+		}
+		perfect = SettingsMap.copyOf(hashMap, true);
+		probing = SettingsMap.copyOf(hashMap, false);
+
+		// mostly hits, some misses
+		final Random random = new Random(42);
+		lookups = new String[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			lookups[i] = new String(ConfigGenerator.keyName(random.nextInt(size + size / 10)));
+			lookups[i].hashCode();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void hashMap(final Blackhole blackhole) {
+		for (final String key : lookups) {
+			blackhole.consume(hashMap.get(key));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void settingsMapPerfect(final Blackhole blackhole) {
+		for (final String key : lookups) {
+			blackhole.consume(perfect.get(key));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void settingsMapProbing(final Blackhole blackhole) {
+		for (final String key : lookups) {
+			blackhole.consume(probing.get(key));
+		}
+	}
+
+	@Benchmark
+	public SettingsMap buildPerfect() {
+		return SettingsMap.copyOf(hashMap, true);
+	}
+
+	@Benchmark
+	public SettingsMap buildProbing() {
+		return SettingsMap.copyOf(hashMap, false);
+	}
+
+}
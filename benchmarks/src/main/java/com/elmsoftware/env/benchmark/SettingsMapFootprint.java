@@ -0,0 +1,46 @@
+package com.elmsoftware.env.benchmark;
+
+import com.elmsoftware.env.SettingsMap;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Prints the bytes used by the map structure itself (not counting the key and value strings, which all of them
+ * share) for each way of holding merged settings:
+ * {@code java -cp target/benchmarks.jar com.elmsoftware.env.benchmark.SettingsMapFootprint}
+ */
+public class SettingsMapFootprint {
+
+	public static void main(final String[] args) {
+
+		System.out.printf("%8s %14s %14s %14s %14s%n", "keys", "HashMap", "Properties", "SettingsMap", "probing");
+
+		for (final int size : new int[]{100, 1000, 10000, 100000}) {
+
+			final Map<String, String> hashMap = new HashMap<>();
+			for (int i = 0; i < size; i++) {
+				hashMap.put(ConfigGenerator.keyName(i).intern(), "value." + i);
+			}
+			final Properties properties = new Properties();
+			properties.putAll(hashMap);
+
+			final long strings = GraphLayout.parseInstance(hashMap.keySet().toArray(), hashMap.values().toArray())
+				.totalSize();
+
+			System.out.printf(
+				"%8d %14d %14d %14d %14d%n",
+				size,
+				GraphLayout.parseInstance(hashMap).totalSize() - strings,
+				GraphLayout.parseInstance(properties).totalSize() - strings,
+				GraphLayout.parseInstance(SettingsMap.copyOf(hashMap, true)).totalSize() - strings,
+				GraphLayout.parseInstance(SettingsMap.copyOf(hashMap, false)).totalSize() - strings
+			);
+
+		}
+
+	}
+
+}
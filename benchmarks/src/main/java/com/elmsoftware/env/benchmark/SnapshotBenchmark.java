@@ -0,0 +1,69 @@
+package com.elmsoftware.env.benchmark;
+
+import com.elmsoftware.env.EnvironmentSettings;
+import com.elmsoftware.env.EnvironmentSettingsSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start: one load per fresh JVM, json (databind) versus the precompiled snapshot. The bytes are read up front
+ * so only the parsing - including class loading and JIT warm up - is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class SnapshotBenchmark {
+
+	@Param({"generated-5x100.json", "generated-60x1000.json"})
+	public String resourceName;
+
+	private byte[] json;
+	private byte[] snapshot;
+
+	@Setup
+	public void setup() throws IOException {
+		json = read(resourceName);
+		snapshot = read(ConfigGenerator.binaryName(resourceName));
+	}
+
+	@Benchmark
+	public EnvironmentSettings json() {
+		return EnvironmentSettings.load(new ByteArrayInputStream(json));
+	}
+
+	@Benchmark
+	public EnvironmentSettings snapshot() throws IOException {
+		return EnvironmentSettingsSnapshot.read(new ByteArrayInputStream(snapshot));
+	}
+
+	private static byte[] read(final String name) throws IOException {
+		try (final InputStream in = SnapshotBenchmark.class.getClassLoader().getResourceAsStream(name)) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.elmsoftware.env.maven;
+
+import com.elmsoftware.env.EnvironmentSettings;
+import com.elmsoftware.env.EnvironmentSettingsSnapshot;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * Loads each json settings file from the build output and writes a binary snapshot next to it, so that
+ * {@link EnvironmentSettings#load(String)} can skip the json parsing at runtime.
+ */
+@Mojo(name = "snapshot", defaultPhase = LifecyclePhase.PROCESS_RESOURCES, threadSafe = true)
+public class SnapshotMojo extends AbstractMojo {
+
+	/**
+	 * Where the (already copied) resources are - the snapshots are written here too.
+	 */
+	@Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+	private File outputDirectory;
+
+	/**
+	 * The json files to snapshot, relative to the output directory - defaults to "environment.json".
+	 */
+	@Parameter
+	private String[] resourceNames;
+
+	@Parameter(property = "jackson-env.snapshot.skip", defaultValue = "false")
+	private boolean skip;
+
+	@Override
+	public void execute() throws MojoExecutionException {
+
+		if (skip) {
+			getLog().info("Skipping settings snapshots");
+			return;
+		}
+
+		final String[] names = null == resourceNames || resourceNames.length == 0
+			? new String[]{"environment.json"}
+			: resourceNames;
+
+		for (final String name : names) {
+			snapshot(name);
+		}
+
+	}
+
+	private void snapshot(final String resourceName) throws MojoExecutionException {
+
+		final File json = new File(outputDirectory, resourceName);
+		final File snapshot = new File(outputDirectory, EnvironmentSettingsSnapshot.snapshotName(resourceName));
+
+		if (!json.isFile()) {
+			getLog().warn("No settings file at " + json + " - no snapshot written");
+			return;
+		}
+
+		try {
+
+			final byte[] content = Files.readAllBytes(json.toPath());
+
+			if (snapshot.isFile()) {
+				try (final InputStream in = Files.newInputStream(snapshot.toPath())) {
+					if (EnvironmentSettingsSnapshot.isCurrent(in, content)) {
+						getLog().info("Snapshot " + snapshot + " is up to date");
+						return;
+					}
+				} catch (final IOException e) {
+					getLog().debug("Unable to read existing snapshot " + snapshot + ", replacing it", e);
+				}
+			}
+
+			final EnvironmentSettings settings = EnvironmentSettings.load(new ByteArrayInputStream(content));
+
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			EnvironmentSettingsSnapshot.write(settings, EnvironmentSettingsSnapshot.hash(content), buffer);
+			try (final OutputStream out = Files.newOutputStream(snapshot.toPath())) {
+				buffer.writeTo(out);
+			}
+
+			getLog().info(String.format(
+				"Wrote snapshot %s (%d bytes, json was %d bytes)",
+				snapshot, buffer.size(), content.length
+			));
+
+		} catch (final IOException | RuntimeException e) {
+			throw new MojoExecutionException("Unable to snapshot " + json + ": " + e.getMessage(), e);
+		}
+
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.elmsoftware.env.maven;
+
+import com.elmsoftware.env.EnvironmentSettings;
+import com.elmsoftware.env.EnvironmentSettingsSnapshot;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Builds snapshots the way the plugin does, and reads them back with the runtime - so the two can't drift apart.
+ */
+public class SnapshotMojoTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File classes;
+	private File json;
+	private File snapshot;
+
+	@Before
+	public void beforeSnapshotMojoTest() throws Exception {
+		// the json is where maven would have copied it - in the class output directory
+		classes = folder.newFolder("classes");
+		json = new File(classes, "environment.json");
+		snapshot = new File(classes, EnvironmentSettingsSnapshot.snapshotName("environment.json"));
+		Files.write(
+			json.toPath(),
+			(
+				"{\n" +
+					"// a comment\n" +
+					"\"globalSettings\": {\"some.key\": \"global.value\", \"a.number\": 123},\n" +
+					"\"environmentSettings\": {\"PROD\": {\"some.key\": \"prod.value\"}},\n" +
+					"\"requiredSettings\": [\"some.key\"],\n" +
+					"\"sensitiveSettings\": [\"some.key\"],\n" +
+					"\"aliases\": {\"some.key\": \"SOME_KEY\"}\n" +
+					"}"
+			).getBytes(StandardCharsets.UTF_8)
+		);
+	}
+
+	@Test
+	public void should_write_a_snapshot_the_runtime_reads() throws Exception {
+
+		// run test
+		mojo().execute();
+
+		// assert results
+		assertTrue(snapshot.isFile());
+		final byte[] content = Files.readAllBytes(json.toPath());
+		try (final InputStream in = Files.newInputStream(snapshot.toPath())) {
+			assertTrue(EnvironmentSettingsSnapshot.isCurrent(in, content));
+		}
+		final EnvironmentSettings read;
+		try (final InputStream in = Files.newInputStream(snapshot.toPath())) {
+			read = EnvironmentSettingsSnapshot.read(in);
+		}
+		final EnvironmentSettings parsed = EnvironmentSettings.load(json.toPath());
+		assertEquals(parsed.merge("PROD"), read.merge("PROD"));
+		assertEquals(parsed.merge("LOCAL"), read.merge("LOCAL"));
+		assertEquals(parsed.getSensitiveSettings(), read.getSensitiveSettings());
+
+	}
+
+	@Test
+	public void should_leave_a_current_snapshot_alone() throws Exception {
+
+		// setup test
+		mojo().execute();
+		final long written = snapshot.lastModified();
+		assertTrue(snapshot.setLastModified(written - 60_000));
+
+		// run test
+		mojo().execute();
+
+		// assert results
+		assertEquals(written - 60_000, snapshot.lastModified());
+
+	}
+
+	private SnapshotMojo mojo() throws Exception {
+		// maven sets the parameters on the fields
+		final SnapshotMojo mojo = new SnapshotMojo();
+		final Field outputDirectory = SnapshotMojo.class.getDeclaredField("outputDirectory");
+		outputDirectory.setAccessible(true);
+		outputDirectory.set(mojo, classes);
+		return mojo;
+	}
+
+}
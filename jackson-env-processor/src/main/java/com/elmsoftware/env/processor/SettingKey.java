@@ -0,0 +1,122 @@
+package com.elmsoftware.env.processor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.lang.model.SourceVersion;
+
+/**
+ * What we know about one key at compile time.
+ */
+class SettingKey {
+
+	private final String name;
+	private String fieldName;
+	private SettingType type;
+	// true if the key is in every merged result (global or required)
+	private boolean always;
+	// true if a value may come from a setting provider, so the json can't tell us its type
+	private boolean provided;
+
+	SettingKey(final String name) {
+		this.name = name;
+	}
+
+	SettingKey observe(final JsonNode value) {
+		final SettingType observed = SettingType.of(value);
+		if (null != observed) {
+			type = null == type ? observed : type.widen(observed);
+		}
+		return this;
+	}
+
+	SettingKey observeProvided() {
+		provided = true;
+		return this;
+	}
+
+	SettingKey always() {
+		always = true;
+		return this;
+	}
+
+	SettingKey copy(final SettingKey source) {
+		type = source.type;
+		always = source.always;
+		provided = source.provided;
+		return this;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	String getFieldName() {
+		return fieldName;
+	}
+
+	void setFieldName(final String fieldName) {
+		this.fieldName = fieldName;
+	}
+
+	SettingType getType() {
+		// provided values and keys that only ever had null values stay strings
+		return null == type || provided ? SettingType.STRING : type;
+	}
+
+	boolean isAlways() {
+		return always;
+	}
+
+	/**
+	 * @return the java type of the field - primitive when the key is always there, boxed (nullable) otherwise
+	 */
+	String getJavaType() {
+		return always ? getType().getPrimitiveName() : getType().getBoxedName();
+	}
+
+	String getConstantName() {
+		return toConstantName(fieldName);
+	}
+
+	String getGetterName() {
+		return (getType() == SettingType.BOOLEAN && always ? "is" : "get")
+			+ Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+	}
+
+	/**
+	 * Turns a key like "some.timeout_millis" into a java name like "someTimeoutMillis".
+	 */
+	static String toFieldName(final String key) {
+		final StringBuilder result = new StringBuilder();
+		boolean upper = false;
+		for (final char c : key.toCharArray()) {
+			if (Character.isLetterOrDigit(c)) {
+				if (result.length() == 0) {
+					result.append(Character.toLowerCase(c));
+				} else {
+					result.append(upper ? Character.toUpperCase(c) : c);
+				}
+				upper = false;
+			} else {
+				upper = true;
+			}
+		}
+		if (result.length() == 0 || !Character.isJavaIdentifierStart(result.charAt(0))) {
+			result.insert(0, "_");
+		}
+		final String fieldName = result.toString();
+		return SourceVersion.isKeyword(fieldName) ? fieldName + "_" : fieldName;
+	}
+
+	static String toConstantName(final String fieldName) {
+		final StringBuilder result = new StringBuilder();
+		for (final char c : fieldName.toCharArray()) {
+			if (Character.isUpperCase(c) && result.length() > 0) {
+				result.append('_');
+			}
+			result.append(Character.toUpperCase(c));
+		}
+		return result.toString();
+	}
+
+}
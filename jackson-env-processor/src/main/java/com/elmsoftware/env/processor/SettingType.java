@@ -0,0 +1,78 @@
+package com.elmsoftware.env.processor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The java type of a generated setting, inferred from the json values seen for the key.
+ */
+enum SettingType {
+
+	BOOLEAN("boolean", "Boolean", "toBoolean"),
+	INT("int", "Integer", "toInt"),
+	LONG("long", "Long", "toLong"),
+	DOUBLE("double", "Double", "toDouble"),
+	STRING("String", "String", "toString");
+
+	private final String primitiveName;
+	private final String boxedName;
+	private final String converter;
+
+	SettingType(final String primitiveName, final String boxedName, final String converter) {
+		this.primitiveName = primitiveName;
+		this.boxedName = boxedName;
+		this.converter = converter;
+	}
+
+	String getPrimitiveName() {
+		return primitiveName;
+	}
+
+	String getBoxedName() {
+		return boxedName;
+	}
+
+	String getConverter() {
+		return converter;
+	}
+
+	/**
+	 * @param value - a json value
+	 * @return the narrowest type for the value, or null for a json null
+	 */
+	static SettingType of(final JsonNode value) {
+		if (value.isNull() || value.isMissingNode()) {
+			return null;
+		} else if (value.isBoolean()) {
+			return BOOLEAN;
+		} else if (value.isInt()) {
+			return INT;
+		} else if (value.isLong()) {
+			return LONG;
+		} else if (value.isFloatingPointNumber()) {
+			return DOUBLE;
+		}
+		return STRING;
+	}
+
+	/**
+	 * @param other - another type seen for the same key (null means no information)
+	 * @return a type that can hold values of both
+	 */
+	SettingType widen(final SettingType other) {
+		if (null == other || other == this) {
+			return this;
+		}
+		if (isNumber() && other.isNumber()) {
+			if (this == DOUBLE || other == DOUBLE) {
+				return DOUBLE;
+			}
+			return LONG;
+		}
+		return STRING;
+	}
+
+	private boolean isNumber() {
+		return this == INT || this == LONG || this == DOUBLE;
+	}
+
+}
@@ -0,0 +1,172 @@
+package com.elmsoftware.env.processor;
+
+import java.util.Collection;
+
+/**
+ * Writes the source for a generated settings class.
+ */
+class SourceWriter {
+
+	private final String packageName;
+	private final String className;
+	private final String resource;
+	private final Collection<SettingKey> keys;
+	private final StringBuilder out = new StringBuilder();
+
+	SourceWriter(
+		final String packageName,
+		final String className,
+		final String resource,
+		final Collection<SettingKey> keys
+	) {
+		this.packageName = packageName;
+		this.className = className;
+		this.resource = resource;
+		this.keys = keys;
+	}
+
+	@Override
+	public String toString() {
+
+		if (out.length() > 0) {
+			return out.toString();
+		}
+
+		if (!packageName.isEmpty()) {
+			line("package " + packageName + ";");
+			line("");
+		}
+		line("import java.util.Map;");
+		line("");
+		line("/**");
+		line(" * Typed settings generated from " + javadoc(resource) + " by the jackson-env-processor - do not edit.");
+		line(" */");
+		line("public final class " + className + " {");
+		line("");
+
+		for (final SettingKey key : keys) {
+			line("\tpublic static final String " + key.getConstantName() + " = " + literal(key.getName()) + ";");
+		}
+		line("");
+
+		for (final SettingKey key : keys) {
+			line("\tprivate final " + key.getJavaType() + " " + key.getFieldName() + ";");
+		}
+		line("");
+
+		line("\tprivate " + className + "(final Map<String, String> settings) {");
+		for (final SettingKey key : keys) {
+			if (key.isAlways()) {
+				line("\t\tthis." + key.getFieldName() + " = " + key.getType().getConverter()
+					+ "(" + key.getConstantName() + ", required(settings, " + key.getConstantName() + "));");
+			} else {
+				line("\t\tthis." + key.getFieldName() + " = null == settings.get(" + key.getConstantName() + ") ? null : "
+					+ key.getType().getConverter() + "(" + key.getConstantName()
+					+ ", settings.get(" + key.getConstantName() + "));");
+			}
+		}
+		line("\t}");
+		line("");
+
+		line("\t/**");
+		line("\t * Converts merged settings (see EnvironmentSettings.merge) - every value is parsed once, here.");
+		line("\t *");
+		line("\t * @param settings - the merged settings");
+		line("\t * @return the typed settings");
+		line("\t * @throws IllegalArgumentException if a setting that is always present is missing, or a value can not be converted");
+		line("\t */");
+		line("\tpublic static " + className + " from(final Map<String, String> settings) {");
+		line("\t\treturn new " + className + "(settings);");
+		line("\t}");
+		line("");
+
+		for (final SettingKey key : keys) {
+			line("\tpublic " + key.getJavaType() + " " + key.getGetterName() + "() {");
+			line("\t\treturn " + key.getFieldName() + ";");
+			line("\t}");
+			line("");
+		}
+
+		line("\tprivate static String required(final Map<String, String> settings, final String key) {");
+		line("\t\tfinal String value = settings.get(key);");
+		line("\t\tif (null == value) {");
+		line("\t\t\tthrow new IllegalArgumentException(\"Missing setting \" + key);");
+		line("\t\t}");
+		line("\t\treturn value;");
+		line("\t}");
+		line("");
+		line("\tprivate static String toString(final String key, final String value) {");
+		line("\t\treturn value;");
+		line("\t}");
+		line("");
+		line("\tprivate static boolean toBoolean(final String key, final String value) {");
+		line("\t\tfinal String trimmed = value.trim();");
+		line("\t\tif (\"true\".equalsIgnoreCase(trimmed)) {");
+		line("\t\t\treturn true;");
+		line("\t\t} else if (\"false\".equalsIgnoreCase(trimmed)) {");
+		line("\t\t\treturn false;");
+		line("\t\t}");
+		line("\t\tthrow new IllegalArgumentException(\"Setting \" + key + \" is not a boolean\");");
+		line("\t}");
+		line("");
+		converter("int", "Integer.parseInt");
+		converter("long", "Long.parseLong");
+		converter("double", "Double.parseDouble");
+		line("}");
+
+		return out.toString();
+
+	}
+
+	private void converter(final String type, final String parse) {
+		line("\tprivate static " + type + " to" + Character.toUpperCase(type.charAt(0)) + type.substring(1)
+			+ "(final String key, final String value) {");
+		line("\t\ttry {");
+		line("\t\t\treturn " + parse + "(value.trim());");
+		line("\t\t} catch (final NumberFormatException e) {");
+		line("\t\t\t// don't include the value - it may be sensitive");
+		line("\t\t\tthrow new IllegalArgumentException(\"Setting \" + key + \" is not a valid " + type + "\");");
+		line("\t\t}");
+		line("\t}");
+		line("");
+	}
+
+	private void line(final String text) {
+		out.append(text).append('\n');
+	}
+
+	static String literal(final String value) {
+		final StringBuilder result = new StringBuilder("\"");
+		for (final char c : value.toCharArray()) {
+			switch (c) {
+				case '"':
+					result.append("\\\"");
+					break;
+				case '\\':
+					result.append("\\\\");
+					break;
+				case '\n':
+					result.append("\\n");
+					break;
+				case '\r':
+					result.append("\\r");
+					break;
+				case '\t':
+					result.append("\\t");
+					break;
+				default:
+					if (c < 0x20 || c > 0x7e) {
+						result.append(String.format("\\u%04x", (int) c));
+					} else {
+						result.append(c);
+					}
+			}
+		}
+		return result.append('"').toString();
+	}
+
+	private static String javadoc(final String text) {
+		return text.replace("*/", "*&#47;").replace("@", "&#64;");
+	}
+
+}
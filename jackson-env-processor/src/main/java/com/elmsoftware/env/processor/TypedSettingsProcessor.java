@@ -0,0 +1,176 @@
+package com.elmsoftware.env.processor;
+
+import com.elmsoftware.env.TypedSettings;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates the typed settings classes requested with {@link TypedSettings}.
+ */
+public class TypedSettingsProcessor extends AbstractProcessor {
+
+	private static final StandardLocation[] RESOURCE_LOCATIONS = {
+		StandardLocation.CLASS_OUTPUT,
+		StandardLocation.SOURCE_PATH,
+		StandardLocation.CLASS_PATH
+	};
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	public TypedSettingsProcessor() {
+		objectMapper.getFactory().enable(JsonParser.Feature.ALLOW_COMMENTS);
+	}
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		return Collections.singleton(TypedSettings.class.getName());
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+
+		for (final Element element : roundEnv.getElementsAnnotatedWith(TypedSettings.class)) {
+
+			final TypedSettings annotation = element.getAnnotation(TypedSettings.class);
+			final PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(element);
+			final String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+
+			if (!SourceVersion.isName(annotation.className()) || annotation.className().contains(".")) {
+				error(element, "'" + annotation.className() + "' is not a valid simple class name");
+				continue;
+			}
+
+			try {
+				final JsonNode root = readResource(annotation.resource());
+				if (null == root) {
+					error(element, "unable to find settings file '" + annotation.resource() + "'");
+					continue;
+				}
+				final Map<String, SettingKey> keys = collectKeys(root);
+				write(element, packageName, annotation.className(), annotation.resource(), keys);
+			} catch (final IOException e) {
+				error(element, "unable to generate " + annotation.className() + ": " + e);
+			}
+
+		}
+
+		return true;
+
+	}
+
+	private JsonNode readResource(final String resource) throws IOException {
+		final Filer filer = processingEnv.getFiler();
+		for (final StandardLocation location : RESOURCE_LOCATIONS) {
+			final InputStream in;
+			try {
+				final FileObject fileObject = filer.getResource(location, "", resource);
+				in = fileObject.openInputStream();
+			} catch (final IOException | IllegalArgumentException e) {
+				// not in this location (or the location isn't configured) - try the next one
+				continue;
+			}
+			try {
+				return objectMapper.readTree(in);
+			} finally {
+				in.close();
+			}
+		}
+		return null;
+	}
+
+	static Map<String, SettingKey> collectKeys(final JsonNode root) {
+
+		// sorted by first appearance - global settings first
+		final Map<String, SettingKey> keys = new LinkedHashMap<>();
+
+		final JsonNode globalSettings = root.path("globalSettings");
+		for (final Iterator<Map.Entry<String, JsonNode>> fields = globalSettings.fields(); fields.hasNext(); ) {
+			final Map.Entry<String, JsonNode> field = fields.next();
+			keys.computeIfAbsent(field.getKey(), SettingKey::new).observe(field.getValue()).always();
+		}
+
+		for (final JsonNode environment : root.path("environmentSettings")) {
+			for (final Iterator<Map.Entry<String, JsonNode>> fields = environment.fields(); fields.hasNext(); ) {
+				final Map.Entry<String, JsonNode> field = fields.next();
+				keys.computeIfAbsent(field.getKey(), SettingKey::new).observe(field.getValue());
+			}
+		}
+
+		// required settings are always there after a merge, but may come from a provider (so we don't know a type)
+		for (final JsonNode required : root.path("requiredSettings")) {
+			final SettingKey key = keys.computeIfAbsent(required.asText(), SettingKey::new);
+			if (!key.isAlways()) {
+				key.observeProvided();
+			}
+			key.always();
+		}
+
+		for (final Iterator<Map.Entry<String, JsonNode>> fields = root.path("aliases").fields(); fields.hasNext(); ) {
+			final Map.Entry<String, JsonNode> field = fields.next();
+			final SettingKey source = keys.computeIfAbsent(field.getKey(), SettingKey::new);
+			keys.computeIfAbsent(field.getValue().asText(), SettingKey::new).copy(source);
+		}
+
+		// give every key a unique java name
+		final Set<String> fieldNames = new HashSet<>();
+		for (final SettingKey key : keys.values()) {
+			String fieldName = SettingKey.toFieldName(key.getName());
+			for (int i = 2; !fieldNames.add(fieldName); i++) {
+				fieldName = SettingKey.toFieldName(key.getName()) + i;
+			}
+			key.setFieldName(fieldName);
+		}
+
+		return keys;
+
+	}
+
+	private void write(
+		final Element element,
+		final String packageName,
+		final String className,
+		final String resource,
+		final Map<String, SettingKey> keys
+	) throws IOException {
+
+		final String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+		final JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(qualifiedName, element);
+
+		try (final Writer writer = sourceFile.openWriter()) {
+			writer.write(new SourceWriter(packageName, className, resource, keys.values()).toString());
+		}
+
+	}
+
+	private void error(final Element element, final String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+}
@@ -0,0 +1,189 @@
+package com.elmsoftware.env.processor;
+
+import com.elmsoftware.env.EnvironmentSettings;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TypedSettingsProcessorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File sources;
+	private File classes;
+
+	@Before
+	public void beforeTypedSettingsProcessorTest() throws Exception {
+		sources = folder.newFolder("sources");
+		classes = folder.newFolder("classes");
+		// the json is where maven would have copied it - in the class output directory
+		try (final InputStream in = getClass().getClassLoader().getResourceAsStream("environment-test.json")) {
+			Files.copy(in, new File(classes, "environment.json").toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	@Test
+	public void should_generate_typed_settings() throws Exception {
+
+		// setup test
+		write("test/App.java",
+			"package test;\n"
+				+ "@com.elmsoftware.env.TypedSettings(className = \"AppSettings\")\n"
+				+ "public class App {\n"
+				+ "}\n"
+		);
+
+		// run test
+		final DiagnosticCollector<JavaFileObject> diagnostics = compile("test/App.java");
+
+		// verify outcome
+		assertTrue(diagnostics.getDiagnostics().toString(), diagnostics.getDiagnostics().isEmpty());
+
+		final Map<String, String> merged = EnvironmentSettings.load("environment-test.json").merge("PROD");
+		try (final URLClassLoader loader = new URLClassLoader(new URL[]{classes.toURI().toURL()})) {
+
+			final Class<?> type = loader.loadClass("test.AppSettings");
+			final Object settings = type.getMethod("from", Map.class).invoke(null, merged);
+
+			assertEquals(true, type.getMethod("isABoolean").invoke(settings));
+			assertEquals(234, type.getMethod("getAnInteger").invoke(settings));
+			assertEquals(int.class, type.getMethod("getAnInteger").getReturnType());
+			assertEquals("default.global.value", type.getMethod("getSomeKey").invoke(settings));
+			assertEquals("env.prod.value", type.getMethod("getEnvKey").invoke(settings));
+			assertEquals(String.class, type.getMethod("getEnvKey").getReturnType());
+			assertEquals(234, type.getMethod("getSomeIntegerPropertyName").invoke(settings));
+			assertEquals("an.integer", type.getField("AN_INTEGER").get(null));
+
+		}
+
+	}
+
+	@Test
+	public void should_leave_missing_optional_settings_null() throws Exception {
+
+		// setup test
+		write("test/App.java",
+			"package test;\n"
+				+ "@com.elmsoftware.env.TypedSettings(className = \"AppSettings\")\n"
+				+ "public class App {\n"
+				+ "}\n"
+		);
+		assertTrue(compile("test/App.java").getDiagnostics().isEmpty());
+
+		final Map<String, String> merged = EnvironmentSettings.load("environment-test.json").merge("LOCAL");
+
+		// run test
+		try (final URLClassLoader loader = new URLClassLoader(new URL[]{classes.toURI().toURL()})) {
+			final Class<?> type = loader.loadClass("test.AppSettings");
+			final Object settings = type.getMethod("from", Map.class).invoke(null, merged);
+
+			// verify outcome
+			assertNull(type.getMethod("getEnvKey").invoke(settings));
+			assertEquals(123, type.getMethod("getAnInteger").invoke(settings));
+		}
+
+	}
+
+	@Test
+	public void should_fail_to_compile_misspelled_setting() throws Exception {
+
+		// setup test
+		write("test/App.java",
+			"package test;\n"
+				+ "@com.elmsoftware.env.TypedSettings(className = \"AppSettings\")\n"
+				+ "public class App {\n"
+				+ "  int timeout(AppSettings settings) { return settings.getAnIntegr(); }\n"
+				+ "}\n"
+		);
+
+		// run test
+		final DiagnosticCollector<JavaFileObject> diagnostics = compile("test/App.java");
+
+		// verify outcome
+		assertFalse(diagnostics.getDiagnostics().isEmpty());
+		assertTrue(diagnostics.getDiagnostics().toString().contains("getAnIntegr"));
+
+	}
+
+	@Test
+	public void should_report_missing_settings_file() throws Exception {
+
+		// setup test
+		write("test/App.java",
+			"package test;\n"
+				+ "@com.elmsoftware.env.TypedSettings(className = \"AppSettings\", resource = \"nope.json\")\n"
+				+ "public class App {\n"
+				+ "}\n"
+		);
+
+		// run test
+		final DiagnosticCollector<JavaFileObject> diagnostics = compile("test/App.java");
+
+		// verify outcome
+		assertTrue(diagnostics.getDiagnostics().toString().contains("unable to find settings file 'nope.json'"));
+
+	}
+
+	@Test
+	public void should_make_java_names_from_keys() {
+		assertEquals("someTimeoutMillis", SettingKey.toFieldName("some.timeout_millis"));
+		assertEquals("_2fa", SettingKey.toFieldName("2fa"));
+		assertEquals("class_", SettingKey.toFieldName("class"));
+		assertEquals("SOME_TIMEOUT_MILLIS", SettingKey.toConstantName("someTimeoutMillis"));
+	}
+
+	@Test
+	public void should_escape_string_literals() {
+		assertEquals("\"a\\\"b\\\\c\\u00e9\"", SourceWriter.literal("a\"b\\cé"));
+	}
+
+	private void write(final String name, final String source) throws Exception {
+		final File file = new File(sources, name);
+		assertTrue(file.getParentFile().mkdirs() || file.getParentFile().isDirectory());
+		Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private DiagnosticCollector<JavaFileObject> compile(final String name) throws Exception {
+		final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		try (final StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+			final List<String> options = Arrays.asList(
+				"-d", classes.getPath(),
+				"-classpath", System.getProperty("java.class.path")
+			);
+			final JavaCompiler.CompilationTask task = compiler.getTask(
+				null,
+				fileManager,
+				diagnostics,
+				options,
+				null,
+				fileManager.getJavaFileObjectsFromFiles(Collections.singletonList(new File(sources, name)))
+			);
+			task.setProcessors(Collections.singletonList(new TypedSettingsProcessor()));
+			task.call();
+		}
+		return diagnostics;
+	}
+
+}
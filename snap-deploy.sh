@@ -1,2 +1,2 @@
 #!/bin/bash
-mvn clean deploy
+mvn -f aggregator-pom.xml clean deploy
@@ -0,0 +1,168 @@
+package com.elmsoftware.env;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * A point in time that settings must be resolved by - so a slow or hung provider can't hold up startup forever.
+ * <p>
+ * One deadline is shared by every step of a resolution: each step uses what is left, and a step that is one of
+ * several can take an even share of it with {@link #share(int)}. Work run with {@link #call(String, Supplier)} is
+ * abandoned (left to finish on a daemon thread) when its time is up.
+ */
+public final class Deadline {
+
+	private static final Deadline NONE = new Deadline(null, Long.MAX_VALUE);
+
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+		final Thread thread = new Thread(runnable, "jackson-env-deadline");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Duration budget;
+	private final long expiresNanos;
+
+	private Deadline(final Duration budget, final long expiresNanos) {
+		this.budget = budget;
+		this.expiresNanos = expiresNanos;
+	}
+
+	/**
+	 * @param budget - how long from now
+	 * @return a deadline that starts now
+	 */
+	public static Deadline after(final Duration budget) {
+		if (budget.isNegative()) {
+			throw new IllegalArgumentException("budget must not be negative, not " + budget);
+		}
+		return new Deadline(budget, System.nanoTime() + budget.toNanos());
+	}
+
+	/**
+	 * @return a deadline that never passes
+	 */
+	public static Deadline none() {
+		return NONE;
+	}
+
+	public boolean isBounded() {
+		return null != budget;
+	}
+
+	/**
+	 * @return the whole budget this deadline started with, or null if it has none
+	 */
+	public Duration getBudget() {
+		return budget;
+	}
+
+	/**
+	 * @return how long is left (zero once it has passed), or null if there is no deadline
+	 */
+	public Duration remaining() {
+		if (null == budget) {
+			return null;
+		}
+		return Duration.ofNanos(Math.max(0, expiresNanos - System.nanoTime()));
+	}
+
+	/**
+	 * @param parts - how many steps are left to share the rest of the budget
+	 * @return an even share of what is left, or null if there is no deadline
+	 */
+	public Duration share(final int parts) {
+		final Duration remaining = remaining();
+		return null == remaining ? null : remaining.dividedBy(Math.max(1, parts));
+	}
+
+	public boolean isExpired() {
+		return null != budget && expiresNanos - System.nanoTime() <= 0;
+	}
+
+	/**
+	 * @param step - what is about to happen, for the error
+	 * @throws DeadlineExceededException if the deadline has passed
+	 */
+	public void check(final String step) {
+		if (isExpired()) {
+			throw new DeadlineExceededException(this, step);
+		}
+	}
+
+	/**
+	 * Runs some work, and waits for it for as long as is left.
+	 *
+	 * @param step - what the work is, for the error
+	 * @param work - the work
+	 * @return what the work returned
+	 * @throws DeadlineExceededException if the deadline passes first
+	 */
+	public <T> T call(final String step, final Supplier<T> work) {
+		return call(step, work, remaining());
+	}
+
+	/**
+	 * Runs some work, and waits for it for no longer than the timeout - usually a {@link #share(int)} of the deadline.
+	 *
+	 * @param step    - what the work is, for the error
+	 * @param work    - the work
+	 * @param timeout - how long to wait (null to wait as long as it takes)
+	 * @return what the work returned
+	 * @throws DeadlineExceededException if the timeout passes first
+	 */
+	public <T> T call(final String step, final Supplier<T> work, final Duration timeout) {
+
+		if (null == timeout) {
+			return work.get();
+		}
+		if (timeout.isZero() || timeout.isNegative()) {
+			throw new DeadlineExceededException(this, "before " + step);
+		}
+
+		final CompletableFuture<T> future = CompletableFuture.supplyAsync(SettingsEvents.handOff(work), EXECUTOR);
+		try {
+			return future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+		} catch (final TimeoutException e) {
+			future.cancel(true);
+			throw new DeadlineExceededException(this, "while " + step);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new RuntimeException(e.getCause().toString());
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e.toString());
+		}
+
+	}
+
+	@Override
+	public String toString() {
+		return null == budget ? "Deadline(none)" : "Deadline(budget=" + budget + ", remaining=" + remaining() + ")";
+	}
+
+	/**
+	 * Thrown when settings could not be resolved within the budget.
+	 */
+	public static class DeadlineExceededException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		public DeadlineExceededException(final Deadline deadline, final String step) {
+			super("The " + deadline.getBudget() + " budget for resolving settings ran out " + step);
+		}
+
+	}
+
+}
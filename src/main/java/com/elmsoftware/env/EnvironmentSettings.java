@@ -1,16 +1,32 @@
 package com.elmsoftware.env;
 
 import com.elmsoftware.env.settingproviderimpl.JvmArgSettingProvider;
+import com.elmsoftware.env.settingproviderimpl.ParallelSettingProvider;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 public class EnvironmentSettings {
 
@@ -20,8 +36,13 @@ public class EnvironmentSettings {
 
 	public static final String ENV_VAR = "com.elmsoftware.env";
 
+	public static final String FILE_PREFIX = "file:";
+
 	private static final Logger log = LoggerFactory.getLogger(EnvironmentSettings.class);
 	private static final Util util = new Util();
+	// more than enough for a snapshot's header, so it can be re-read
+	private static final int SNAPSHOT_HEADER_LIMIT = 1024;
+	private static final JsonFactory STREAMING_FACTORY = new JsonFactory().enable(JsonParser.Feature.ALLOW_COMMENTS);
 
 	private Map<String, String> globalSettings = new HashMap<>();
 	private Map<String, Map<String, String>> environmentSettings = new HashMap<>();
@@ -30,18 +51,204 @@ public class EnvironmentSettings {
 	private List<String> sensitiveSettings = new ArrayList<>();
 	private Map<String, String> aliases = new HashMap<>();
 
+	/**
+	 * Loads settings from the classpath - if a precompiled snapshot of the resource (see
+	 * {@link EnvironmentSettingsSnapshot}) is on the classpath, that is used instead of the json, as long as it was made
+	 * from the json on the classpath.
+	 *
+	 * @param resourceName - the name of the json file on the classpath
+	 * @return the settings, or null if the resource does not exist
+	 */
 	public static EnvironmentSettings load(final String resourceName) {
+		return recordLoad(resourceName, null, () -> loadResource(resourceName));
+	}
+
+	private static EnvironmentSettings loadResource(final String resourceName) {
+
+		final EnvironmentSettings snapshot = loadSnapshot(resourceName, null);
+		if (null != snapshot) {
+			return snapshot;
+		}
+
+		final EnvironmentSettings settings;
+
+		final InputStream inputStream = EnvironmentSettings.class.getClassLoader().getResourceAsStream(resourceName);
+
+		if (null != inputStream) {
+			try {
+				settings = load(inputStream);
+			} finally {
+				util.closeQuietly(inputStream);
+			}
+		} else {
+			settings = null;
+		}
+
+		return settings;
+
+	}
+
+	/**
+	 * Loads settings from a file on the filesystem.
+	 * <p>
+	 * Small files are read through a {@link java.nio.channels.FileChannel}, large ones are memory-mapped. The parsed
+	 * settings are cached for the life of the process: loading the same path again copies them instead of parsing the
+	 * file as long as its modification time, size and content hash have not changed. Each caller gets its own copy, so
+	 * changing one does not change what later loads return.
+	 *
+	 * @param path - the json file
+	 * @return the settings, or null if the file does not exist
+	 */
+	public static EnvironmentSettings load(final Path path) {
+		return recordLoad(path.toString(), null, () -> FileSettingsCache.INSTANCE.load(path));
+	}
+
+	/**
+	 * Loads settings from a "location" - this is what the guice and spring integrations use for the value of the
+	 * "environment.json" system property.
+	 * <p>
+	 * A location that starts with "file:" or is an absolute path is loaded from the filesystem (see
+	 * {@link #load(Path)}), anything else is treated as a classpath resource name (see {@link #load(String)}).
+	 *
+	 * @param location - a classpath resource name or a filesystem location
+	 * @return the settings, or null if nothing exists at that location
+	 */
+	public static EnvironmentSettings loadLocation(final String location) {
 
 		final EnvironmentSettings settings;
 
+		if (location.startsWith(FILE_PREFIX)) {
+			settings = load(Paths.get(location.substring(FILE_PREFIX.length())));
+		} else if (Paths.get(location).isAbsolute()) {
+			settings = load(Paths.get(location));
+		} else {
+			settings = load(location);
+		}
+
+		return settings;
+
+	}
+
+	/**
+	 * Reads json settings from a stream - the stream is not closed.
+	 *
+	 * @param inputStream - the json
+	 * @return the settings
+	 */
+	public static EnvironmentSettings load(final InputStream inputStream) {
+
 		final ObjectMapper objectMapper = new ObjectMapper();
 		objectMapper.getFactory().enable(JsonParser.Feature.ALLOW_COMMENTS);
 
+		try {
+			return objectMapper.readValue(inputStream, EnvironmentSettings.class);
+		} catch (final Exception e) {
+			throw new RuntimeException(e.toString(), e);
+		}
+
+	}
+
+	// records the load as a JFR event (see SettingsEvents)
+	private static EnvironmentSettings recordLoad(
+		final String location,
+		final String environment,
+		final Supplier<EnvironmentSettings> loader
+	) {
+		final SettingsEvents.Span span = SettingsEvents.phase("load", environment, location);
+		try {
+			final EnvironmentSettings settings = loader.get();
+			span.end(null == settings ? SettingsEvents.NOT_FOUND : SettingsEvents.OK);
+			return settings;
+		} catch (final RuntimeException e) {
+			span.end(SettingsEvents.FAILED);
+			throw e;
+		}
+	}
+
+	private static EnvironmentSettings loadSnapshot(final String resourceName, final String environment) {
+
+		final String snapshotName = EnvironmentSettingsSnapshot.snapshotName(resourceName);
+		final InputStream inputStream = EnvironmentSettings.class.getClassLoader().getResourceAsStream(snapshotName);
+
+		if (null == inputStream) {
+			return null;
+		}
+
+		log.debug("Loading settings from snapshot {}", snapshotName);
+		try {
+			final BufferedInputStream snapshot = new BufferedInputStream(inputStream);
+			if (!isCurrent(snapshot, resourceName)) {
+				log.warn(
+					"Snapshot {} was not made from the current {} - using the json instead",
+					snapshotName,
+					resourceName
+				);
+				return null;
+			}
+			return EnvironmentSettingsSnapshot.read(snapshot, environment);
+		} catch (final Exception e) {
+			throw new RuntimeException(e.toString(), e);
+		} finally {
+			util.closeQuietly(inputStream);
+		}
+
+	}
+
+	// true if there is no json to check the snapshot against, or the snapshot was made from it - leaves the snapshot
+	// where it was
+	private static boolean isCurrent(final BufferedInputStream snapshot, final String resourceName) throws IOException {
+
+		final InputStream json = EnvironmentSettings.class.getClassLoader().getResourceAsStream(resourceName);
+		if (null == json) {
+			return true;
+		}
+
+		final byte[] jsonHash;
+		try {
+			jsonHash = EnvironmentSettingsSnapshot.hash(json);
+		} finally {
+			util.closeQuietly(json);
+		}
+
+		// the header is tiny - a magic number, the version and the hash
+		snapshot.mark(SNAPSHOT_HEADER_LIMIT);
+		final byte[] sourceHash = EnvironmentSettingsSnapshot.readSourceHash(snapshot);
+		snapshot.reset();
+
+		return Arrays.equals(sourceHash, jsonHash);
+
+	}
+
+	/**
+	 * Loads only the parts of the resource that are needed to merge a single environment.
+	 * <p>
+	 * This walks the json token stream instead of binding the whole document, and skips the entries under
+	 * "environmentSettings" for every environment except the one requested - for files with many environments this
+	 * saves both parse time and the memory needed to keep the unused environments around. A snapshot of the resource
+	 * is used instead of the json if there is one, and is read the same way.
+	 *
+	 * @param resourceName - the name of the json file on the classpath
+	 * @param environment  - the only environment to keep
+	 * @return the settings (with at most one environment), or null if the resource does not exist
+	 */
+	public static EnvironmentSettings load(final String resourceName, final String environment) {
+		return recordLoad(resourceName, environment, () -> loadEnvironment(resourceName, environment));
+	}
+
+	private static EnvironmentSettings loadEnvironment(final String resourceName, final String environment) {
+
+		final EnvironmentSettings snapshot = loadSnapshot(resourceName, environment);
+		if (null != snapshot) {
+			return snapshot;
+		}
+
+		final EnvironmentSettings settings;
+
 		final InputStream inputStream = EnvironmentSettings.class.getClassLoader().getResourceAsStream(resourceName);
 
 		if (null != inputStream) {
-			try {
-				settings = objectMapper.readValue(inputStream, EnvironmentSettings.class);
+			try (final JsonParser parser = STREAMING_FACTORY.createParser(inputStream)) {
+				settings = readSelective(parser, environment);
 			} catch (final Exception e) {
 				throw new RuntimeException(e.toString(), e);
 			} finally {
@@ -55,6 +262,100 @@ public class EnvironmentSettings {
 
 	}
 
+	private static EnvironmentSettings readSelective(
+		final JsonParser parser,
+		final String environment
+	) throws IOException {
+
+		final EnvironmentSettings settings = new EnvironmentSettings();
+
+		expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			final String fieldName = parser.currentName();
+			parser.nextToken();
+			switch (fieldName) {
+				case "globalSettings":
+					readStringMap(parser, settings.globalSettings);
+					break;
+				case "environmentSettings":
+					expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+					while (parser.nextToken() == JsonToken.FIELD_NAME) {
+						final String name = parser.currentName();
+						parser.nextToken();
+						if (name.equals(environment)) {
+							final Map<String, String> environmentValues = new HashMap<>();
+							readStringMap(parser, environmentValues);
+							settings.environmentSettings.put(name, environmentValues);
+						} else {
+							log.trace("skipping settings for environment {}", name);
+							parser.skipChildren();
+						}
+					}
+					break;
+				case "requiredSettings":
+					readStringList(parser, settings.requiredSettings);
+					break;
+				case "sensitiveSettings":
+					readStringList(parser, settings.sensitiveSettings);
+					break;
+				case "aliases":
+					readStringMap(parser, settings.aliases);
+					break;
+				default:
+					throw new JsonParseException(parser, "Unrecognized field \"" + fieldName + "\"");
+			}
+		}
+
+		return settings;
+
+	}
+
+	private static void readStringMap(final JsonParser parser, final Map<String, String> target) throws IOException {
+		expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			final String key = parser.currentName();
+			target.put(key, readScalar(parser, parser.nextToken()));
+		}
+	}
+
+	private static void readStringList(final JsonParser parser, final List<String> target) throws IOException {
+		expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+		JsonToken token;
+		while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+			target.add(readScalar(parser, token));
+		}
+	}
+
+	private static String readScalar(final JsonParser parser, final JsonToken token) throws IOException {
+		if (null == token || token.isStructStart()) {
+			throw new JsonParseException(parser, "Expected a scalar value but found " + token);
+		}
+		return token == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+	}
+
+	private static void expect(
+		final JsonParser parser,
+		final JsonToken actual,
+		final JsonToken expected
+	) throws IOException {
+		if (actual != expected) {
+			throw new JsonParseException(parser, "Expected " + expected + " but found " + actual);
+		}
+	}
+
+	// a deep copy - for handing out settings that are cached
+	EnvironmentSettings copy() {
+		final EnvironmentSettings copy = new EnvironmentSettings();
+		copy.globalSettings.putAll(globalSettings);
+		for (final Map.Entry<String, Map<String, String>> entry : environmentSettings.entrySet()) {
+			copy.environmentSettings.put(entry.getKey(), new HashMap<>(entry.getValue()));
+		}
+		copy.requiredSettings.addAll(requiredSettings);
+		copy.sensitiveSettings.addAll(sensitiveSettings);
+		copy.aliases.putAll(aliases);
+		return copy;
+	}
+
 	public EnvironmentSettings withRequiredSetting(final String key) {
 		requiredSettings.add(key);
 		return this;
@@ -103,17 +404,68 @@ public class EnvironmentSettings {
 		final String environment,
 		final SettingProvider settingProvider
 	) {
+		return mergeLayered(environment, settingProvider).flatten();
+	}
+
+	/**
+	 * Same as {@link #merge(String, SettingProvider)}, but looks up the missing required settings all at once, one
+	 * {@code getProperty} call per setting on the executor - use this with a provider that can only look up one
+	 * setting at a time. {@link ParallelSettingProvider#newDefaultExecutor()} uses virtual threads where it can.
+	 *
+	 * @param environment     - the environment
+	 * @param settingProvider - setting provider
+	 * @param executor        - runs the lookups
+	 * @return A map of name / value pairs
+	 */
+	public Map<String, String> merge(
+		final String environment,
+		final SettingProvider settingProvider,
+		final Executor executor
+	) {
+		return merge(environment, new ParallelSettingProvider(settingProvider, executor));
+	}
+
+	/**
+	 * Same as {@link #merge(String, SettingProvider, Executor)}, but settings that haven't been found by the deadline
+	 * are reported as missing.
+	 *
+	 * @param environment     - the environment
+	 * @param settingProvider - setting provider
+	 * @param executor        - runs the lookups
+	 * @param deadline        - how long to wait for all of the lookups
+	 * @return A map of name / value pairs
+	 */
+	public Map<String, String> merge(
+		final String environment,
+		final SettingProvider settingProvider,
+		final Executor executor,
+		final Duration deadline
+	) {
+		return merge(environment, new ParallelSettingProvider(settingProvider, executor, deadline));
+	}
+
+	/**
+	 * Same as {@link #merge(String, SettingProvider)}, but returns a {@link LayeredSettings} view that shares the
+	 * global and environment settings instead of copying them - use this when merging many environments from the same
+	 * settings. Do not change these settings while the view is in use.
+	 *
+	 * @param environment     - the environment
+	 * @param settingProvider - optional setting provider
+	 * @return A read-only view of the name / value pairs
+	 */
+	public LayeredSettings mergeLayered(
+		final String environment,
+		final SettingProvider settingProvider
+	) {
 
-		// our merged set of values
 		log.debug("Adding global values to merged results: {}", globalSettings.keySet());
-		final Map<String, String> mergedResults = new HashMap<>(globalSettings);
 
 		final Map<String, String> environmentValues = environmentSettings.get(environment);
 		if (null != environmentValues) {
 			log.debug("Adding environment values to merged results: {}", environmentValues.keySet());
 			log.debug("Checking for duplicates in environment values");
 			for (final String key : environmentValues.keySet()) {
-				final String globalValue = mergedResults.get(key);
+				final String globalValue = globalSettings.get(key);
 				if (null != globalValue) {
 					if (environmentValues.get(key).equals(globalValue)) {
 						log.warn(
@@ -123,15 +475,26 @@ public class EnvironmentSettings {
 					}
 				}
 			}
-			mergedResults.putAll(environmentValues);
 		}
 
 		log.debug("Verifying that the required properties are present: {}", requiredSettings);
+		final Set<String> missingKeys = new LinkedHashSet<>();
+		for (final String key : requiredSettings) {
+			if (!globalSettings.containsKey(key) && (null == environmentValues || !environmentValues.containsKey(key))) {
+				missingKeys.add(key);
+			}
+		}
+
+		// check the setting provider for all of them at once
+		final Map<String, String> providedProperties = missingKeys.isEmpty()
+			? Collections.<String, String>emptyMap()
+			: resolve(environment, settingProvider, missingKeys, sensitiveSettings);
+
+		final Map<String, String> provided = new HashMap<>();
 		final StringBuilder missingSettings = new StringBuilder();
 		for (final String key : requiredSettings) {
-			if (!mergedResults.containsKey(key)) {
-				// check the setting provider for the setting
-				final String providedProperty = settingProvider.getProperty(environment, key);
+			if (missingKeys.contains(key) && !provided.containsKey(key)) {
+				final String providedProperty = providedProperties.get(key);
 				if (!util.isBlank(providedProperty)) {
 					log.debug(
 						"Config property {} received from {} as '{}'",
@@ -139,7 +502,7 @@ public class EnvironmentSettings {
 						settingProvider,
 						protectedValue(key, providedProperty)
 					);
-					mergedResults.put(key, providedProperty);
+					provided.put(key, providedProperty);
 				} else {
 					// ok, it's not here
 					if (missingSettings.length() > 0) {
@@ -155,10 +518,14 @@ public class EnvironmentSettings {
 		}
 
 		log.debug("Checking VM options for configuration value replacements");
-		for (final String key : mergedResults.keySet()) {
+		final SettingsEvents.Span overrideSpan = SettingsEvents.phase("JVM overrides", environment, null);
+		final Map<String, String> overrides = new HashMap<>();
+		final LayeredSettings base = new LayeredSettings(globalSettings, environmentValues, provided, null);
+		for (final Map.Entry<String, String> entry : base.entrySet()) {
+			final String key = entry.getKey();
 			final String property = System.getProperties().getProperty(key);
 			if (null != property) {
-				final String oldValue = mergedResults.get(key);
+				final String oldValue = entry.getValue();
 				if (!oldValue.equals(property)) {
 					log.info(
 						"Replacing config property {} (old value: '{}') with VM property value '{}'",
@@ -166,13 +533,18 @@ public class EnvironmentSettings {
 						protectedValue(key, oldValue),
 						protectedValue(key, property)
 					);
-					mergedResults.put(key, property);
+					overrides.put(key, property);
 				}
 			}
 		}
 
-		// apply aliases
+		overrideSpan.end(SettingsEvents.OK, overrides.size() + " overridden");
+
+		final LayeredSettings mergedResults = new LayeredSettings(globalSettings, environmentValues, provided, overrides);
+
+		// apply aliases - they go in the override layer, so aliases of aliases see earlier results
 		log.info("applying aliases for {}", aliases.keySet());
+		final SettingsEvents.Span aliasSpan = SettingsEvents.phase("aliases", environment, aliases.size() + " aliases");
 		aliases.keySet().forEach(key -> {
 			log.debug(
 				"setting property '{}' to '{}' (an alias of property '{}')",
@@ -180,13 +552,60 @@ public class EnvironmentSettings {
 				protectedValue(key, mergedResults.get(key)),
 				key
 			);
-			mergedResults.put(aliases.get(key), mergedResults.get(key));
+			overrides.put(aliases.get(key), mergedResults.get(key));
 		});
+		aliasSpan.end(SettingsEvents.OK);
 
 		return mergedResults;
 
 	}
 
+	// asks the provider for the missing required settings - recorded as JFR events (see SettingsEvents)
+	private static Map<String, String> resolve(
+		final String environment,
+		final SettingProvider settingProvider,
+		final Set<String> missingKeys,
+		final Collection<String> sensitiveKeys
+	) {
+		final SettingsEvents.Span span = SettingsEvents.phase(
+			"resolve required settings",
+			environment,
+			missingKeys.size() + " keys from " + settingProvider.getClass().getName()
+		);
+		// the provider's own lookup events mask the same keys
+		final SettingsEvents.Scope masking = SettingsEvents.masking(sensitiveKeys);
+		try {
+			final Map<String, SettingsEvents.Span> lookups = SettingsEvents.lookups(environment, missingKeys, settingProvider);
+			try {
+				final Map<String, String> provided = settingProvider.getProperties(environment, missingKeys);
+				SettingsEvents.endLookups(lookups, provided);
+				span.end(SettingsEvents.OK);
+				return provided;
+			} catch (final RuntimeException e) {
+				SettingsEvents.endLookups(lookups, SettingsEvents.FAILED);
+				span.end(SettingsEvents.FAILED);
+				throw e;
+			}
+		} finally {
+			masking.close();
+		}
+	}
+
+	/**
+	 * Same as {@link #merge(String, SettingProvider)}, but returns the results as an immutable {@link SettingsMap} -
+	 * use this for settings that are kept for the life of the process.
+	 *
+	 * @param environment     - the environment
+	 * @param settingProvider - optional setting provider
+	 * @return An immutable map of name / value pairs
+	 */
+	public SettingsMap mergeCompact(
+		final String environment,
+		final SettingProvider settingProvider
+	) {
+		return SettingsMap.copyOf(mergeLayered(environment, settingProvider));
+	}
+
 	private String protectedValue(final String key, final String value) {
 		final String result;
 		if (sensitiveSettings.contains(key)) {
@@ -1,5 +1,7 @@
 package com.elmsoftware.env;
 
+import com.elmsoftware.env.settingproviderimpl.ChainingSettingProvider;
+import com.elmsoftware.env.settingproviderimpl.DeadlineSettingProvider;
 import com.elmsoftware.env.settingproviderimpl.JvmArgSettingProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,15 +10,31 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
 import org.springframework.core.env.PropertiesPropertySource;
+import org.springframework.core.env.PropertySource;
 
+import java.time.Duration;
+import java.util.Collections;
 import java.util.Optional;
 import java.util.Properties;
-import java.util.function.Supplier;
 
+/**
+ * Loads the settings into spring's environment.
+ * <p>
+ * To bound how long that can take, set the "environment.deadline" JVM property to a duration (like "PT10S"). The
+ * deadline covers finding the environment, loading the file, the provider lookups and post-processing; if a provider
+ * runs out of time, its keys fall back as described in {@link DeadlineSettingProvider}. Supply one as the provider to
+ * set last-known-good or default values - otherwise there are none: the required settings are looked up in a single
+ * bulk lookup, so nothing has been remembered yet, and if it runs out of time every key falls back (and fails) at
+ * once. For last-known-good values that survive a restart, give it a persistent source, like a
+ * {@link com.elmsoftware.env.settingproviderimpl.DiskCachingSettingProvider}.
+ */
 @Configuration
 public class EnvironmentSettingsConfig {
 
+	public static final String DEADLINE_PROPERTY = "environment.deadline";
+
 	private static final Logger log = LoggerFactory.getLogger(EnvironmentSettingsConfig.class);
 
 	private final ConfigurableEnvironment configurableEnvironment;
@@ -43,44 +61,104 @@ public class EnvironmentSettingsConfig {
 			log.info("no setting provided supplied - using default jvm arg provider");
 			return new JvmArgSettingProvider();
 		});
-		final SettingPostProcessor postProcessor = optionalSettingPostProcessor.orElseGet(new Supplier<SettingPostProcessor>() {
-			@Override
-			public SettingPostProcessor get() {
-				return new SettingPostProcessor() {
-					// default behavior is adequate for most cases
-				};
-			}
-		});
+
+		final Deadline deadline = startDeadline();
+		final SettingProvider boundedSettingProvider = bound(settingProvider, deadline);
 
 		// figure out the environment name
-		final String environment = util.determineEnvironment(EnvironmentSettings.ENV_VAR);
+		final String environment = deadline.call(
+				"finding the environment",
+				() -> util.determineEnvironment(EnvironmentSettings.ENV_VAR)
+		);
 		log.trace("using environment name '{}'", environment);
 
-		// figure out the name of the json file to use - the default is "environment.json"
+		// figure out the name of the json file to use - the default is "environment.json" (on the classpath)
 		final String resourceName = System.getProperty("environment.json", "environment.json");
 		log.trace("using resource name '{}'", resourceName);
 
 		log.debug("Loading environment {} from resource {}", environment, resourceName);
-		final EnvironmentSettings settings = EnvironmentSettings.load(resourceName);
+		final EnvironmentSettings settings = deadline.call(
+				"loading " + resourceName,
+				() -> EnvironmentSettings.loadLocation(resourceName)
+		);
 		log.trace("loaded settings: {}", settings);
 
 		// merge the global and env-specific properties
-		final Properties properties = new Properties();
-		properties.putAll(settings.merge(environment, settingProvider));
-		log.trace("merged settings: {}", properties);
-
-		final Properties processed = postProcessor.process(properties);
+		final SettingsMap merged = settings.mergeCompact(environment, boundedSettingProvider);
+		log.trace("merged settings: {}", merged);
+
+		final String propertySourceName = resourceName + "/" + environment;
+		final PropertySource<?> propertySource;
+		if (optionalSettingPostProcessor.isPresent()) {
+			// post processors work with properties, so they get a copy
+			final Properties properties = new Properties();
+			properties.putAll(merged);
+			final SettingsEvents.Span span = SettingsEvents.phase(
+					"post-process",
+					environment,
+					optionalSettingPostProcessor.get().getClass().getName()
+			);
+			final Properties processed;
+			try {
+				processed = deadline.call(
+						"post-processing settings",
+						() -> optionalSettingPostProcessor.get().process(properties)
+				);
+			} catch (final RuntimeException e) {
+				span.end(SettingsEvents.FAILED);
+				throw e;
+			}
+			span.end(SettingsEvents.OK);
+			propertySource = new PropertiesPropertySource(propertySourceName, processed);
+		} else {
+			// nothing to post process - spring can read the merged settings as they are
+			propertySource = new MapPropertySource(
+					propertySourceName,
+					Collections.<String, Object>unmodifiableMap(merged)
+			);
+		}
 
 		// add the property source to spring's environment
-		configurableEnvironment.getPropertySources().addLast(
-				new PropertiesPropertySource(
-						resourceName + "/" + environment,
-						processed
-				)
-		);
+		configurableEnvironment.getPropertySources().addLast(propertySource);
+
+		if (deadline.isBounded()) {
+			log.info("Resolved settings with {} of the {} budget left", deadline.remaining(), deadline.getBudget());
+		}
+		if (boundedSettingProvider instanceof DeadlineSettingProvider
+				&& !((DeadlineSettingProvider) boundedSettingProvider).getFallbacks().isEmpty()) {
+			log.warn(
+					"Settings that ran out of time and used fallback values: {}",
+					((DeadlineSettingProvider) boundedSettingProvider).getFallbacks()
+			);
+		}
 
 		return settings;
 
 	}
 
+	private Deadline startDeadline() {
+		final String budget = System.getProperty(DEADLINE_PROPERTY);
+		if (null == budget || budget.trim().isEmpty()) {
+			return Deadline.none();
+		}
+		log.debug("resolving settings within {}", budget);
+		return Deadline.after(Duration.parse(budget.trim()));
+	}
+
+	private SettingProvider bound(final SettingProvider settingProvider, final Deadline deadline) {
+		if (!deadline.isBounded()) {
+			return settingProvider;
+		}
+		if (settingProvider instanceof DeadlineSettingProvider) {
+			// it has its own deadline (and fallbacks)
+			return settingProvider;
+		}
+		if (settingProvider instanceof ChainingSettingProvider) {
+			// give each provider in the chain its share, so one slow provider doesn't use up the others' time - through
+			// a copy, since the chain belongs to the application (and other threads may be using it)
+			return new DeadlineSettingProvider(((ChainingSettingProvider) settingProvider).boundedBy(deadline), deadline);
+		}
+		return new DeadlineSettingProvider(settingProvider, deadline);
+	}
+
 }
@@ -43,8 +43,8 @@ public class EnvironmentSettingsModule implements Module {
 		final String resourceName = System.getProperty("environment.json", "environment.json");
 
 		log.debug("Loading environment {} using resource {}", environment, resourceName);
-		final EnvironmentSettings settings = EnvironmentSettings.load(resourceName);
-		final Map<String, String> properties = settings.merge(environment, settingProvider);
+		final EnvironmentSettings settings = EnvironmentSettings.loadLocation(resourceName);
+		final Map<String, String> properties = settings.mergeCompact(environment, settingProvider);
 
 		Names.bindProperties(binder, properties);
 		configure(binder, properties);
@@ -0,0 +1,247 @@
+package com.elmsoftware.env;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact, length-prefixed binary form of an {@link EnvironmentSettings} instance.
+ * <p>
+ * Snapshots are written at build time (see the jackson-env-maven-plugin) next to the json file they were made from,
+ * using the same name plus {@link #SUFFIX}. When one is on the classpath, {@link EnvironmentSettings#load(String)}
+ * reads it instead of parsing the json.
+ * <p>
+ * The layout is: magic, format version, the SHA-256 of the source json, then the global settings, the environments
+ * (each prefixed with its length in bytes so unwanted environments can be skipped), the required settings, the
+ * sensitive settings and the aliases. Strings are written as a length followed by UTF-8 bytes, with -1 for null.
+ */
+public class EnvironmentSettingsSnapshot {
+
+	public static final String SUFFIX = ".snapshot";
+
+	private static final int MAGIC = 0x4A454E56; // "JENV"
+	private static final short VERSION = 1;
+	private static final String HASH_ALGORITHM = "SHA-256";
+
+	private EnvironmentSettingsSnapshot() {
+		// static methods only
+	}
+
+	public static String snapshotName(final String resourceName) {
+		return resourceName + SUFFIX;
+	}
+
+	public static byte[] hash(final byte[] content) {
+		return digest().digest(content);
+	}
+
+	public static byte[] hash(final ByteBuffer content) {
+		final MessageDigest digest = digest();
+		digest.update(content);
+		return digest.digest();
+	}
+
+	/**
+	 * @param content - the content to hash (read to the end, but not closed)
+	 * @return the SHA-256 of the content
+	 * @throws IOException if the content can not be read
+	 */
+	public static byte[] hash(final InputStream content) throws IOException {
+		final MessageDigest digest = digest();
+		final byte[] buffer = new byte[8192];
+		int read;
+		while ((read = content.read(buffer)) != -1) {
+			digest.update(buffer, 0, read);
+		}
+		return digest.digest();
+	}
+
+	private static MessageDigest digest() {
+		try {
+			return MessageDigest.getInstance(HASH_ALGORITHM);
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(HASH_ALGORITHM + " is not available", e);
+		}
+	}
+
+	public static void write(
+		final EnvironmentSettings settings,
+		final byte[] sourceHash,
+		final OutputStream outputStream
+	) throws IOException {
+
+		final DataOutputStream out = new DataOutputStream(outputStream);
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeShort(sourceHash.length);
+		out.write(sourceHash);
+
+		writeMap(out, settings.getGlobalSettings());
+
+		out.writeInt(settings.getEnvironmentSettings().size());
+		for (final Map.Entry<String, Map<String, String>> environment : settings.getEnvironmentSettings().entrySet()) {
+			writeString(out, environment.getKey());
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			writeMap(new DataOutputStream(buffer), environment.getValue());
+			out.writeInt(buffer.size());
+			buffer.writeTo(out);
+		}
+
+		writeList(out, settings.getRequiredSettings());
+		writeList(out, settings.getSensitiveSettings());
+		writeMap(out, settings.getAliases());
+
+		out.flush();
+
+	}
+
+	/**
+	 * Reads the hash of the json the snapshot was made from - this only reads the header.
+	 *
+	 * @param inputStream - the snapshot
+	 * @return the SHA-256 of the source json
+	 * @throws IOException if the stream is not a snapshot
+	 */
+	public static byte[] readSourceHash(final InputStream inputStream) throws IOException {
+		return readHeader(new DataInputStream(inputStream));
+	}
+
+	public static EnvironmentSettings read(final InputStream inputStream) throws IOException {
+		return read(inputStream, null);
+	}
+
+	/**
+	 * Reads a snapshot, keeping only one environment.
+	 *
+	 * @param inputStream - the snapshot
+	 * @param environment - the environment to keep, or null to keep all of them
+	 * @return the settings
+	 * @throws IOException if the stream is not a snapshot
+	 */
+	public static EnvironmentSettings read(final InputStream inputStream, final String environment) throws IOException {
+
+		final DataInputStream in = new DataInputStream(inputStream);
+		readHeader(in);
+
+		final EnvironmentSettings settings = new EnvironmentSettings();
+		readMap(in, settings.getGlobalSettings());
+
+		final int environmentCount = in.readInt();
+		for (int i = 0; i < environmentCount; i++) {
+			final String name = readString(in);
+			final int length = in.readInt();
+			if (null == environment || environment.equals(name)) {
+				final Map<String, String> values = new HashMap<>();
+				readMap(in, values);
+				settings.getEnvironmentSettings().put(name, values);
+			} else {
+				skipFully(in, length);
+			}
+		}
+
+		readList(in, settings.getRequiredSettings());
+		readList(in, settings.getSensitiveSettings());
+		readMap(in, settings.getAliases());
+
+		return settings;
+
+	}
+
+	/**
+	 * Checks to see if a snapshot was made from some json content.
+	 *
+	 * @param snapshot - the snapshot
+	 * @param json     - the json content
+	 * @return true if the hashes match
+	 * @throws IOException if the snapshot can not be read
+	 */
+	public static boolean isCurrent(final InputStream snapshot, final byte[] json) throws IOException {
+		return Arrays.equals(readSourceHash(snapshot), hash(json));
+	}
+
+	private static byte[] readHeader(final DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("not an environment settings snapshot");
+		}
+		final short version = in.readShort();
+		if (version != VERSION) {
+			throw new IOException("unsupported snapshot version " + version);
+		}
+		final byte[] sourceHash = new byte[in.readShort()];
+		in.readFully(sourceHash);
+		return sourceHash;
+	}
+
+	private static void skipFully(final DataInputStream in, final int length) throws IOException {
+		int remaining = length;
+		while (remaining > 0) {
+			final int skipped = in.skipBytes(remaining);
+			if (skipped <= 0) {
+				throw new EOFException("snapshot is truncated");
+			}
+			remaining -= skipped;
+		}
+	}
+
+	private static void writeString(final DataOutputStream out, final String value) throws IOException {
+		if (null == value) {
+			out.writeInt(-1);
+		} else {
+			final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(final DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeMap(final DataOutputStream out, final Map<String, String> map) throws IOException {
+		out.writeInt(map.size());
+		for (final Map.Entry<String, String> entry : map.entrySet()) {
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue());
+		}
+	}
+
+	private static void readMap(final DataInputStream in, final Map<String, String> map) throws IOException {
+		final int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			map.put(readString(in), readString(in));
+		}
+	}
+
+	private static void writeList(final DataOutputStream out, final List<String> list) throws IOException {
+		out.writeInt(list.size());
+		for (final String value : list) {
+			writeString(out, value);
+		}
+	}
+
+	private static void readList(final DataInputStream in, final List<String> list) throws IOException {
+		final int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			list.add(readString(in));
+		}
+	}
+
+}
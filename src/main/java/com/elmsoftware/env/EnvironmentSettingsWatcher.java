@@ -0,0 +1,226 @@
+package com.elmsoftware.env;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Watches a settings file and re-merges it when it changes.
+ * <p>
+ * The merged settings are kept as an immutable map that is replaced atomically, so readers never lock and always see
+ * one consistent version. Bursts of file events are debounced, and the re-parse and re-merge happen on a background
+ * thread - never on the thread that reads the settings. Listeners are told only about the keys whose merged value
+ * changed.
+ * <p>
+ * This is meant for non-structural settings (timeouts, thresholds, etc.) - anything that was already handed to guice
+ * or spring keeps the value it had at startup.
+ */
+public class EnvironmentSettingsWatcher implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(EnvironmentSettingsWatcher.class);
+
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 250;
+
+	private final Path file;
+	private final String environment;
+	private final SettingProvider settingProvider;
+	private final long debounceMillis;
+
+	private final AtomicReference<Map<String, String>> current = new AtomicReference<>(Collections.emptyMap());
+	private final List<SettingsChangeListener> listeners = new CopyOnWriteArrayList<>();
+	private final ScheduledExecutorService executor;
+
+	private WatchService watchService;
+	private ScheduledFuture<?> pendingReload;
+
+	public EnvironmentSettingsWatcher(
+		final Path file,
+		final String environment,
+		final SettingProvider settingProvider
+	) {
+		this(file, environment, settingProvider, DEFAULT_DEBOUNCE_MILLIS);
+	}
+
+	public EnvironmentSettingsWatcher(
+		final Path file,
+		final String environment,
+		final SettingProvider settingProvider,
+		final long debounceMillis
+	) {
+		this.file = file.toAbsolutePath().normalize();
+		this.environment = environment;
+		this.settingProvider = settingProvider;
+		this.debounceMillis = debounceMillis;
+		this.executor = Executors.newScheduledThreadPool(2, runnable -> {
+			final Thread thread = new Thread(runnable, "jackson-env-watcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Loads and merges the file (on the calling thread, so the settings are ready when this returns), then starts
+	 * watching it.
+	 *
+	 * @return this watcher
+	 * @throws IOException if the directory can not be watched
+	 */
+	public EnvironmentSettingsWatcher start() throws IOException {
+
+		if (!reload()) {
+			throw new IllegalStateException("Unable to load settings from " + file);
+		}
+
+		watchService = FileSystems.getDefault().newWatchService();
+		file.getParent().register(
+			watchService,
+			StandardWatchEventKinds.ENTRY_CREATE,
+			StandardWatchEventKinds.ENTRY_MODIFY
+		);
+		executor.execute(this::watch);
+		log.info("Watching {} for changes to environment {}", file, environment);
+
+		return this;
+
+	}
+
+	public EnvironmentSettingsWatcher addListener(final SettingsChangeListener listener) {
+		listeners.add(listener);
+		return this;
+	}
+
+	public void removeListener(final SettingsChangeListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return the current merged settings - this is immutable and never changes; a reload replaces it
+	 */
+	public Map<String, String> getSettings() {
+		return current.get();
+	}
+
+	public String get(final String key) {
+		return current.get().get(key);
+	}
+
+	/**
+	 * Re-parses and re-merges the file now, and publishes any changes.
+	 *
+	 * @return true if the settings were loaded, false if the reload failed (the previous settings are kept)
+	 */
+	public synchronized boolean reload() {
+
+		final Map<String, String> merged;
+		try {
+			final EnvironmentSettings settings = EnvironmentSettings.load(file);
+			if (null == settings) {
+				log.warn("Settings file {} is missing - keeping the current settings", file);
+				return false;
+			}
+			merged = Collections.unmodifiableMap(settings.merge(environment, settingProvider));
+		} catch (final RuntimeException e) {
+			log.warn("Unable to reload settings from {} - keeping the current settings: {}", file, e.toString());
+			return false;
+		}
+
+		final Map<String, String> previous = current.getAndSet(merged);
+		final Map<String, String> changed = changes(previous, merged);
+
+		if (!changed.isEmpty()) {
+			log.info("Settings changed for keys {}", changed.keySet());
+			final Map<String, String> published = Collections.unmodifiableMap(changed);
+			for (final SettingsChangeListener listener : listeners) {
+				try {
+					listener.settingsChanged(published);
+				} catch (final RuntimeException e) {
+					log.warn("Settings change listener {} failed", listener, e);
+				}
+			}
+		}
+
+		return true;
+
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+		if (null != watchService) {
+			try {
+				watchService.close();
+			} catch (final IOException e) {
+				log.warn("Unable to close watch service: {}", e.toString());
+			}
+		}
+	}
+
+	static Map<String, String> changes(final Map<String, String> previous, final Map<String, String> next) {
+		final Map<String, String> changed = new HashMap<>();
+		final Set<String> keys = new HashSet<>(previous.keySet());
+		keys.addAll(next.keySet());
+		for (final String key : keys) {
+			final String value = next.get(key);
+			if (!Objects.equals(previous.get(key), value)) {
+				changed.put(key, value);
+			}
+		}
+		return changed;
+	}
+
+	private void watch() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				final WatchKey key = watchService.take();
+				boolean relevant = false;
+				for (final WatchEvent<?> event : key.pollEvents()) {
+					final Object context = event.context();
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW
+						|| (context instanceof Path && file.getFileName().equals(context))) {
+						relevant = true;
+					}
+				}
+				if (relevant) {
+					scheduleReload();
+				}
+				if (!key.reset()) {
+					log.warn("Directory {} can no longer be watched", file.getParent());
+					return;
+				}
+			}
+		} catch (final InterruptedException | ClosedWatchServiceException e) {
+			log.debug("Stopped watching {}", file);
+		}
+	}
+
+	private synchronized void scheduleReload() {
+		// each event pushes the reload back, so a burst of writes results in a single reload
+		if (null != pendingReload) {
+			pendingReload.cancel(false);
+		}
+		pendingReload = executor.schedule(this::reload, debounceMillis, TimeUnit.MILLISECONDS);
+	}
+
+}
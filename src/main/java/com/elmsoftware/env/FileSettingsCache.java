@@ -0,0 +1,141 @@
+package com.elmsoftware.env;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reads settings files from the filesystem and remembers what it parsed.
+ * <p>
+ * Entries are keyed by the normalized path, and are only reused when the modification time, the size and the hash of
+ * the content all still match - so an unchanged file is read and hashed, but not parsed again. The cached settings are
+ * never handed out: every load returns a copy, so one caller's changes don't leak into the next load.
+ */
+class FileSettingsCache {
+
+	private static final Logger log = LoggerFactory.getLogger(FileSettingsCache.class);
+
+	// files at least this big are memory-mapped instead of read into the heap
+	static final long MAPPED_THRESHOLD = 1024 * 1024;
+
+	static final FileSettingsCache INSTANCE = new FileSettingsCache();
+
+	private final ConcurrentMap<Path, Entry> entries = new ConcurrentHashMap<>();
+
+	EnvironmentSettings load(final Path path) {
+
+		final Path key = path.toAbsolutePath().normalize();
+
+		try (final FileChannel channel = FileChannel.open(key, StandardOpenOption.READ)) {
+
+			final BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+			final long modified = attributes.lastModifiedTime().toMillis();
+			final long size = channel.size();
+
+			final ByteBuffer content = read(channel, size);
+			final byte[] hash = EnvironmentSettingsSnapshot.hash(content.duplicate());
+
+			final Entry cached = entries.get(key);
+			if (null != cached && cached.matches(modified, size, hash)) {
+				log.debug("Settings file {} is unchanged - using cached settings", key);
+				return cached.settings.copy();
+			}
+
+			log.debug("Parsing settings file {} ({} bytes)", key, size);
+			final EnvironmentSettings settings = EnvironmentSettings.load(new ByteBufferInputStream(content));
+			entries.put(key, new Entry(modified, size, hash, settings));
+			return settings.copy();
+
+		} catch (final NoSuchFileException e) {
+			log.debug("Settings file {} does not exist", key);
+			return null;
+		} catch (final IOException e) {
+			throw new RuntimeException(e.toString(), e);
+		}
+
+	}
+
+	void clear() {
+		entries.clear();
+	}
+
+	private static ByteBuffer read(final FileChannel channel, final long size) throws IOException {
+
+		if (size >= MAPPED_THRESHOLD) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+
+		final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+		while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+			// keep reading until it's full
+		}
+		// cast so this still links against the java 8 Buffer api
+		((Buffer) buffer).flip();
+		return buffer;
+
+	}
+
+	private static class Entry {
+
+		private final long modified;
+		private final long size;
+		private final byte[] hash;
+		private final EnvironmentSettings settings;
+
+		private Entry(final long modified, final long size, final byte[] hash, final EnvironmentSettings settings) {
+			this.modified = modified;
+			this.size = size;
+			this.hash = hash;
+			this.settings = settings;
+		}
+
+		private boolean matches(final long modified, final long size, final byte[] hash) {
+			return this.modified == modified && this.size == size && Arrays.equals(this.hash, hash);
+		}
+
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(final byte[] bytes, final int offset, final int length) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			final int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+
+	}
+
+}
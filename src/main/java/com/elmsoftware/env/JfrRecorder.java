@@ -0,0 +1,109 @@
+package com.elmsoftware.env;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The JFR side of {@link SettingsEvents} - this is the only class that uses {@code jdk.jfr}, and it is only loaded if
+ * the JVM has it.
+ */
+class JfrRecorder implements SettingsEvents.Recorder {
+
+	@Override
+	public SettingsEvents.Span phase(final String phase, final String environment, final String detail) {
+		final PhaseEvent event = new PhaseEvent();
+		if (!event.isEnabled()) {
+			return SettingsEvents.notRecorded();
+		}
+		event.phase = phase;
+		event.environment = environment;
+		event.detail = detail;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public SettingsEvents.Span lookup(final String environment, final String key, final String provider) {
+		final LookupEvent event = new LookupEvent();
+		if (!event.isEnabled()) {
+			return SettingsEvents.notRecorded();
+		}
+		event.environment = environment;
+		event.key = key;
+		event.provider = provider;
+		event.begin();
+		return event;
+	}
+
+	@Name("com.elmsoftware.env.Phase")
+	@Label("Settings Phase")
+	@Category("Settings")
+	@Description("A phase of resolving settings")
+	static class PhaseEvent extends Event implements SettingsEvents.Span {
+
+		@Label("Phase")
+		String phase;
+
+		@Label("Environment")
+		String environment;
+
+		@Label("Detail")
+		String detail;
+
+		@Label("Outcome")
+		String outcome;
+
+		@Override
+		public void end(final String outcome) {
+			this.outcome = outcome;
+			commit();
+		}
+
+		@Override
+		public void end(final String outcome, final String detail) {
+			this.detail = detail;
+			end(outcome);
+		}
+
+	}
+
+	@Name("com.elmsoftware.env.Lookup")
+	@Label("Settings Lookup")
+	@Category("Settings")
+	@Description("A setting provider looking up a key")
+	static class LookupEvent extends Event implements SettingsEvents.Span {
+
+		@Label("Environment")
+		String environment;
+
+		@Label("Key")
+		String key;
+
+		@Label("Provider")
+		String provider;
+
+		@Label("Candidate")
+		@Description("The name the value was found under, or looked for first")
+		String candidate;
+
+		@Label("Outcome")
+		String outcome;
+
+		@Override
+		public void end(final String outcome) {
+			this.outcome = outcome;
+			commit();
+		}
+
+		@Override
+		public void end(final String outcome, final String candidate) {
+			this.candidate = candidate;
+			end(outcome);
+		}
+
+	}
+
+}
@@ -0,0 +1,188 @@
+package com.elmsoftware.env;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only view of merged settings made of four layers - global, environment, provider and overrides - where a
+ * key in a higher layer hides the same key in the layers below it.
+ * <p>
+ * The global and environment layers are the maps held by {@link EnvironmentSettings}, shared with every other view
+ * made from the same settings rather than copied. The provider layer only holds the required settings that came from
+ * a {@link SettingProvider}, and the override layer only holds the JVM property overrides and aliases - so each view
+ * costs about as much as its overrides. Changing the {@link EnvironmentSettings} after a merge is not supported.
+ * <p>
+ * Use {@link #flatten()} when a plain, mutable map is needed.
+ */
+public final class LayeredSettings extends AbstractMap<String, String> {
+
+	private final Map<String, String> global;
+	private final Map<String, String> environment;
+	private final Map<String, String> provided;
+	private final Map<String, String> overrides;
+
+	// the layers, top first
+	private final List<Map<String, String>> layers;
+
+	private int size = -1;
+	private Set<Entry<String, String>> entrySet;
+
+	LayeredSettings(
+		final Map<String, String> global,
+		final Map<String, String> environment,
+		final Map<String, String> provided,
+		final Map<String, String> overrides
+	) {
+		this.global = null == global ? Collections.<String, String>emptyMap() : global;
+		this.environment = null == environment ? Collections.<String, String>emptyMap() : environment;
+		this.provided = null == provided ? Collections.<String, String>emptyMap() : provided;
+		this.overrides = null == overrides ? Collections.<String, String>emptyMap() : overrides;
+		this.layers = Arrays.asList(this.overrides, this.provided, this.environment, this.global);
+	}
+
+	/**
+	 * Copy-on-write: returns a new view that shares the global, environment and provider layers with this one, with a
+	 * copy of the override layer that also has this setting in it.
+	 *
+	 * @param key   - the setting
+	 * @param value - the value to use
+	 * @return a new view - this one is not changed
+	 */
+	public LayeredSettings withOverride(final String key, final String value) {
+		final Map<String, String> copy = new HashMap<>(overrides);
+		copy.put(key, value);
+		return new LayeredSettings(global, environment, provided, copy);
+	}
+
+	/**
+	 * @return a new, mutable map with the same settings as this view
+	 */
+	public Map<String, String> flatten() {
+		final Map<String, String> flat = new HashMap<>((int) (size() / 0.75f) + 1);
+		for (int i = layers.size() - 1; i >= 0; i--) {
+			flat.putAll(layers.get(i));
+		}
+		return flat;
+	}
+
+	public Map<String, String> getOverrides() {
+		return Collections.unmodifiableMap(overrides);
+	}
+
+	public Map<String, String> getProvided() {
+		return Collections.unmodifiableMap(provided);
+	}
+
+	@Override
+	public String get(final Object key) {
+		final Map<String, String> layer = layerOf(key);
+		return null == layer ? null : layer.get(key);
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		return null != layerOf(key);
+	}
+
+	@Override
+	public int size() {
+		if (size < 0) {
+			int count = 0;
+			for (int i = 0; i < layers.size(); i++) {
+				for (final String key : layers.get(i).keySet()) {
+					if (!hidden(key, i)) {
+						count++;
+					}
+				}
+			}
+			size = count;
+		}
+		return size;
+	}
+
+	@Override
+	public Set<Entry<String, String>> entrySet() {
+		if (null == entrySet) {
+			entrySet = new EntrySet();
+		}
+		return entrySet;
+	}
+
+	private Map<String, String> layerOf(final Object key) {
+		for (final Map<String, String> layer : layers) {
+			if (layer.containsKey(key)) {
+				return layer;
+			}
+		}
+		return null;
+	}
+
+	// true if a layer above this one has the key
+	private boolean hidden(final String key, final int layer) {
+		for (int i = 0; i < layer; i++) {
+			if (layers.get(i).containsKey(key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private final class EntrySet extends AbstractSet<Entry<String, String>> {
+
+		@Override
+		public int size() {
+			return LayeredSettings.this.size();
+		}
+
+		@Override
+		public Iterator<Entry<String, String>> iterator() {
+			return new Iterator<Entry<String, String>>() {
+
+				private int layer = 0;
+				private Iterator<Entry<String, String>> current = layers.get(0).entrySet().iterator();
+				private Entry<String, String> next = advance();
+
+				private Entry<String, String> advance() {
+					while (true) {
+						while (current.hasNext()) {
+							final Entry<String, String> entry = current.next();
+							if (!hidden(entry.getKey(), layer)) {
+								return entry;
+							}
+						}
+						if (++layer == layers.size()) {
+							return null;
+						}
+						current = layers.get(layer).entrySet().iterator();
+					}
+				}
+
+				@Override
+				public boolean hasNext() {
+					return null != next;
+				}
+
+				@Override
+				public Entry<String, String> next() {
+					if (null == next) {
+						throw new NoSuchElementException();
+					}
+					final Entry<String, String> entry = new SimpleImmutableEntry<>(next);
+					next = advance();
+					return entry;
+				}
+
+			};
+		}
+
+	}
+
+}
@@ -1,7 +1,32 @@
 package com.elmsoftware.env;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 public interface SettingProvider {
 
 	String getProperty(String environment, String key);
 
+	/**
+	 * Looks up several settings at once - {@link EnvironmentSettings#merge(String, SettingProvider)} uses this to
+	 * resolve all of the missing required settings in one call. Providers that talk to a remote store should override
+	 * it to fetch the keys in as few round trips as they can; this default calls {@link #getProperty(String, String)}
+	 * once per key.
+	 *
+	 * @param environment - the environment
+	 * @param keys        - the settings to look up
+	 * @return the settings that were found - keys that were not found are left out
+	 */
+	default Map<String, String> getProperties(final String environment, final Collection<String> keys) {
+		final Map<String, String> values = new HashMap<>();
+		for (final String key : keys) {
+			final String value = getProperty(environment, key);
+			if (null != value) {
+				values.put(key, value);
+			}
+		}
+		return values;
+	}
+
 }
@@ -0,0 +1,14 @@
+package com.elmsoftware.env;
+
+import java.util.Map;
+
+public interface SettingsChangeListener {
+
+	/**
+	 * Called after a new set of merged settings has been swapped in.
+	 *
+	 * @param changed - only the keys whose merged value changed, with their new values (null if the key was removed)
+	 */
+	void settingsChanged(Map<String, String> changed);
+
+}
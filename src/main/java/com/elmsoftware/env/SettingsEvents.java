@@ -0,0 +1,313 @@
+package com.elmsoftware.env;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * JDK Flight Recorder events for resolving settings - a phase event ("com.elmsoftware.env.Phase") for finding the
+ * environment, loading, resolving the required settings, the JVM override scan, applying aliases and post-processing,
+ * and a lookup event ("com.elmsoftware.env.Lookup") for each key a provider is asked for. Both have a duration, so a
+ * recording shows where startup time went:
+ * <pre>
+ *     java -XX:StartFlightRecording:filename=startup.jfr ...
+ *     jfr print --events com.elmsoftware.env.Phase,com.elmsoftware.env.Lookup startup.jfr
+ * </pre>
+ * The events are only created while a recording has them enabled. On a JVM without the {@code jdk.jfr} module, this
+ * does nothing. While an {@link EnvironmentSettings} resolves settings, the keys it lists as sensitive are masked in the
+ * events - and so is the key's part of the candidate names (SSM parameter names, say) that are looked up for them.
+ * Those keys only apply to the thread doing the resolving (and to work it hands off with {@link #handOff(Supplier)}),
+ * so one set of settings doesn't mask keys for another.
+ */
+public final class SettingsEvents {
+
+	public static final String OK = "ok";
+	public static final String FOUND = "found";
+	public static final String NOT_FOUND = "not found";
+	public static final String SKIPPED = "skipped";
+	public static final String FAILED = "failed";
+
+	/**
+	 * An event that has started - end it once the work is done.
+	 */
+	public interface Span {
+
+		void end(String outcome);
+
+		/**
+		 * @param outcome - how it went
+		 * @param detail  - for a lookup, the name the value was found under (or looked for first)
+		 */
+		void end(String outcome, String detail);
+
+	}
+
+	/**
+	 * Keys being masked on this thread - close it to stop.
+	 */
+	interface Scope extends AutoCloseable {
+
+		@Override
+		void close();
+
+	}
+
+	/**
+	 * Makes the events - only loaded if the JVM has JFR.
+	 */
+	interface Recorder {
+
+		Span phase(String phase, String environment, String detail);
+
+		Span lookup(String environment, String key, String provider);
+
+	}
+
+	private static final Logger log = LoggerFactory.getLogger(SettingsEvents.class);
+
+	private static final Span NOT_RECORDED = new Span() {
+		@Override
+		public void end(final String outcome) {
+		}
+
+		@Override
+		public void end(final String outcome, final String detail) {
+		}
+	};
+
+	private static final Scope NO_SCOPE = () -> {
+	};
+
+	private static final ThreadLocal<Set<String>> sensitiveKeys = new ThreadLocal<>();
+	private static final Recorder recorder = createRecorder();
+
+	private SettingsEvents() {
+	}
+
+	/**
+	 * @return true if this JVM has JFR (whether or not it is recording)
+	 */
+	public static boolean isAvailable() {
+		return null != recorder;
+	}
+
+	/**
+	 * @param phase       - what is being done
+	 * @param environment - the environment, if it is known yet
+	 * @param detail      - what it is being done to (a resource name, say)
+	 * @return the started event
+	 */
+	public static Span phase(final String phase, final String environment, final String detail) {
+		return null == recorder ? NOT_RECORDED : recorder.phase(phase, environment, detail);
+	}
+
+	/**
+	 * @param environment - the environment
+	 * @param key         - the key being looked up (masked if it is sensitive)
+	 * @param provider    - the provider being asked
+	 * @return the started event
+	 */
+	public static Span lookup(final String environment, final String key, final Object provider) {
+		return null == recorder
+			? NOT_RECORDED
+			: masked(key, recorder.lookup(environment, mask(key), providerName(provider)));
+	}
+
+	/**
+	 * Starts a lookup event for each key of a bulk lookup.
+	 *
+	 * @param environment - the environment
+	 * @param keys        - the keys being looked up
+	 * @param provider    - the provider being asked
+	 * @return the started events, by key - empty if nothing is being recorded
+	 */
+	public static Map<String, Span> lookups(
+		final String environment,
+		final Collection<String> keys,
+		final Object provider
+	) {
+		if (null == recorder) {
+			return Collections.emptyMap();
+		}
+		final Map<String, Span> spans = new LinkedHashMap<>();
+		final String providerName = providerName(provider);
+		for (final String key : keys) {
+			final Span span = recorder.lookup(environment, mask(key), providerName);
+			if (NOT_RECORDED != span) {
+				spans.put(key, masked(key, span));
+			}
+		}
+		return spans;
+	}
+
+	/**
+	 * Ends the lookup events of a bulk lookup - each key is found or not found.
+	 *
+	 * @param spans - from {@link #lookups(String, Collection, Object)}
+	 * @param found - what the lookup returned (null if it was skipped)
+	 */
+	public static void endLookups(final Map<String, Span> spans, final Map<String, ?> found) {
+		for (final Map.Entry<String, Span> entry : spans.entrySet()) {
+			entry.getValue().end(
+				null == found ? SKIPPED : null == found.get(entry.getKey()) ? NOT_FOUND : FOUND
+			);
+		}
+	}
+
+	/**
+	 * Ends the lookup events of a bulk lookup with the same outcome.
+	 *
+	 * @param spans   - from {@link #lookups(String, Collection, Object)}
+	 * @param outcome - how it went
+	 */
+	public static void endLookups(final Map<String, Span> spans, final String outcome) {
+		for (final Span span : spans.values()) {
+			span.end(outcome);
+		}
+	}
+
+	/**
+	 * Masks keys in the lookup events started on this thread until the scope is closed - {@link EnvironmentSettings}
+	 * masks its sensitive settings while it resolves them.
+	 *
+	 * @param keys - sensitive keys
+	 * @return the scope - close it when done
+	 */
+	static Scope masking(final Collection<String> keys) {
+		if (null == recorder || keys.isEmpty()) {
+			return NO_SCOPE;
+		}
+		final Set<String> previous = sensitiveKeys.get();
+		final Set<String> masked = new HashSet<>(keys);
+		if (null != previous) {
+			masked.addAll(previous);
+		}
+		sensitiveKeys.set(masked);
+		return () -> restore(previous);
+	}
+
+	/**
+	 * For work handed off to another thread - it masks the same keys as the thread that handed it off.
+	 *
+	 * @param work - the work
+	 * @return the work, masking this thread's sensitive keys while it runs
+	 */
+	public static <T> Supplier<T> handOff(final Supplier<T> work) {
+		final Set<String> keys = sensitiveKeys.get();
+		if (null == keys) {
+			return work;
+		}
+		return () -> {
+			final Set<String> previous = sensitiveKeys.get();
+			sensitiveKeys.set(keys);
+			try {
+				return work.get();
+			} finally {
+				restore(previous);
+			}
+		};
+	}
+
+	/**
+	 * Same as {@link #handOff(Supplier)}, for a {@link Runnable}.
+	 */
+	public static Runnable handOff(final Runnable work) {
+		if (null == sensitiveKeys.get()) {
+			return work;
+		}
+		final Supplier<Void> masked = handOff(() -> {
+			work.run();
+			return null;
+		});
+		return masked::get;
+	}
+
+	// for the recorder, when the event isn't enabled
+	static Span notRecorded() {
+		return NOT_RECORDED;
+	}
+
+	/**
+	 * @param key       - the key being looked up
+	 * @param candidate - a name the key was looked for under (an SSM parameter name, say)
+	 * @return the candidate, with the key masked in it if the key is sensitive (all of it, if the key isn't in it)
+	 */
+	public static String mask(final String key, final String candidate) {
+		return isSensitive(key) ? maskCandidate(key, candidate) : candidate;
+	}
+
+	private static String mask(final String key) {
+		return isSensitive(key) ? stars(key) : key;
+	}
+
+	private static boolean isSensitive(final String key) {
+		final Set<String> keys = sensitiveKeys.get();
+		return null != keys && keys.contains(key);
+	}
+
+	private static String maskCandidate(final String key, final String candidate) {
+		if (null == candidate) {
+			return null;
+		}
+		return candidate.contains(key) ? candidate.replace(key, stars(key)) : stars(candidate);
+	}
+
+	private static void restore(final Set<String> previous) {
+		if (null == previous) {
+			sensitiveKeys.remove();
+		} else {
+			sensitiveKeys.set(previous);
+		}
+	}
+
+	private static String stars(final String value) {
+		//noinspection ReplaceAllDot
+		return value.replaceAll(".", "*");
+	}
+
+	// a lookup of a sensitive key masks the candidate it ends with, too - even if it ends on another thread
+	private static Span masked(final String key, final Span span) {
+		if (NOT_RECORDED == span || !isSensitive(key)) {
+			return span;
+		}
+		return new Span() {
+			@Override
+			public void end(final String outcome) {
+				span.end(outcome);
+			}
+
+			@Override
+			public void end(final String outcome, final String candidate) {
+				span.end(outcome, maskCandidate(key, candidate));
+			}
+		};
+	}
+
+	private static String providerName(final Object provider) {
+		return null == provider ? null : provider.getClass().getName();
+	}
+
+	// only touch the jfr classes if they are there (java 8 builds before 8u262 don't have them)
+	private static Recorder createRecorder() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return (Recorder) Class.forName(SettingsEvents.class.getPackage().getName() + ".JfrRecorder")
+				.getDeclaredConstructor()
+				.newInstance();
+		} catch (final ClassNotFoundException e) {
+			log.debug("JFR is not available - settings events will not be recorded");
+			return null;
+		} catch (final ReflectiveOperationException | LinkageError e) {
+			log.warn("unable to set up settings events: {}", e.toString());
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,317 @@
+package com.elmsoftware.env;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable, array-backed map of merged settings.
+ * <p>
+ * Keys and values live in two parallel arrays - there are no entry objects - and keys are interned, so the same key
+ * in several maps is one string. Lookups use a perfect hash (hash-and-displace: keys are grouped into small buckets,
+ * and each bucket gets a displacement that sends all of its keys to free slots) that is computed when the map is
+ * built, so a lookup is one bucket read and one slot compare. If no perfect hash is found quickly (or it is not
+ * wanted), the map falls back to open addressing with linear probing.
+ * <p>
+ * Null keys are not allowed; null values are.
+ */
+public final class SettingsMap extends AbstractMap<String, String> {
+
+	private static final SettingsMap EMPTY = new SettingsMap(new String[1], new String[1], 0, null);
+
+	// keys per bucket of the perfect hash, on average
+	private static final int BUCKET_SIZE = 4;
+	// give up on the perfect hash if a bucket needs more attempts than this
+	private static final int MAX_DISPLACEMENT = 1 << 16;
+	private static final int GOLDEN = 0x9E3779B9;
+
+	private final String[] keys;
+	private final String[] values;
+	private final int size;
+	// one per bucket when the table uses a perfect hash, null when it uses linear probing
+	private final int[] displacements;
+
+	private Set<Entry<String, String>> entrySet;
+
+	private SettingsMap(final String[] keys, final String[] values, final int size, final int[] displacements) {
+		this.keys = keys;
+		this.values = values;
+		this.size = size;
+		this.displacements = displacements;
+	}
+
+	public static SettingsMap copyOf(final Map<String, String> map) {
+		return copyOf(map, true);
+	}
+
+	/**
+	 * @param map         - the settings to copy
+	 * @param perfectHash - true to look for a perfect hash (more work now, one probe per lookup later)
+	 * @return an immutable copy of the settings
+	 */
+	public static SettingsMap copyOf(final Map<String, String> map, final boolean perfectHash) {
+
+		if (map instanceof SettingsMap) {
+			return (SettingsMap) map;
+		}
+
+		final int size = map.size();
+		if (size == 0) {
+			return EMPTY;
+		}
+
+		final String[] entryKeys = new String[size];
+		final String[] entryValues = new String[size];
+		int i = 0;
+		for (final Entry<String, String> entry : map.entrySet()) {
+			entryKeys[i] = Objects.requireNonNull(entry.getKey(), "null keys are not allowed").intern();
+			entryValues[i] = entry.getValue();
+			i++;
+		}
+
+		if (perfectHash) {
+			final SettingsMap perfect = buildPerfect(entryKeys, entryValues);
+			if (null != perfect) {
+				return perfect;
+			}
+		}
+
+		return buildProbing(entryKeys, entryValues);
+
+	}
+
+	public boolean isPerfectHash() {
+		return null != displacements;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public String get(final Object key) {
+		final int slot = indexOf(key);
+		return slot < 0 ? null : values[slot];
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public void forEach(final BiConsumer<? super String, ? super String> action) {
+		for (int i = 0; i < keys.length; i++) {
+			if (null != keys[i]) {
+				action.accept(keys[i], values[i]);
+			}
+		}
+	}
+
+	@Override
+	public Set<Entry<String, String>> entrySet() {
+		if (null == entrySet) {
+			entrySet = new EntrySet();
+		}
+		return entrySet;
+	}
+
+	private int indexOf(final Object key) {
+
+		if (!(key instanceof String) || size == 0) {
+			return -1;
+		}
+
+		final int hash = mix(key.hashCode());
+
+		if (null != displacements) {
+			final int slot = reduce(mix(hash + displacements[reduce(hash, displacements.length)] * GOLDEN), keys.length);
+			final String candidate = keys[slot];
+			return null != candidate && (candidate == key || candidate.equals(key)) ? slot : -1;
+		}
+
+		final int mask = keys.length - 1;
+		for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			final String candidate = keys[slot];
+			if (null == candidate) {
+				return -1;
+			}
+			if (candidate == key || candidate.equals(key)) {
+				return slot;
+			}
+		}
+
+	}
+
+	private static SettingsMap buildProbing(final String[] entryKeys, final String[] entryValues) {
+
+		// keep the load factor at or below one half
+		final int capacity = Integer.highestOneBit(Math.max(2, entryKeys.length * 2 - 1)) << 1;
+		final int mask = capacity - 1;
+		final String[] keys = new String[capacity];
+		final String[] values = new String[capacity];
+
+		for (int i = 0; i < entryKeys.length; i++) {
+			int slot = mix(entryKeys[i].hashCode()) & mask;
+			while (null != keys[slot]) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = entryKeys[i];
+			values[slot] = entryValues[i];
+		}
+
+		return new SettingsMap(keys, values, entryKeys.length, null);
+
+	}
+
+	private static SettingsMap buildPerfect(final String[] entryKeys, final String[] entryValues) {
+
+		final int size = entryKeys.length;
+		final int capacity = size + (size >> 3) + 1;
+		final int bucketCount = (size + BUCKET_SIZE - 1) / BUCKET_SIZE;
+
+		final int[] hashes = new int[size];
+		final List<List<Integer>> buckets = new ArrayList<>(bucketCount);
+		for (int b = 0; b < bucketCount; b++) {
+			buckets.add(new ArrayList<>(BUCKET_SIZE * 2));
+		}
+		for (int i = 0; i < size; i++) {
+			hashes[i] = mix(entryKeys[i].hashCode());
+			buckets.get(reduce(hashes[i], bucketCount)).add(i);
+		}
+
+		// place the biggest buckets first, while there is the most room
+		final Integer[] order = new Integer[bucketCount];
+		for (int b = 0; b < bucketCount; b++) {
+			order[b] = b;
+		}
+		Arrays.sort(order, (a, b) -> buckets.get(b).size() - buckets.get(a).size());
+
+		final String[] keys = new String[capacity];
+		final String[] values = new String[capacity];
+		final int[] displacements = new int[bucketCount];
+		final int[] slots = new int[size];
+
+		for (final int b : order) {
+
+			final List<Integer> bucket = buckets.get(b);
+			if (bucket.isEmpty()) {
+				break;
+			}
+
+			boolean placed = false;
+			for (int d = 0; d < MAX_DISPLACEMENT && !placed; d++) {
+				placed = true;
+				for (int k = 0; k < bucket.size() && placed; k++) {
+					final int slot = reduce(mix(hashes[bucket.get(k)] + d * GOLDEN), capacity);
+					if (null != keys[slot]) {
+						placed = false;
+					}
+					for (int j = 0; j < k && placed; j++) {
+						if (slots[j] == slot) {
+							placed = false;
+						}
+					}
+					slots[k] = slot;
+				}
+				if (placed) {
+					displacements[b] = d;
+					for (int k = 0; k < bucket.size(); k++) {
+						keys[slots[k]] = entryKeys[bucket.get(k)];
+						values[slots[k]] = entryValues[bucket.get(k)];
+					}
+				}
+			}
+
+			if (!placed) {
+				return null;
+			}
+
+		}
+
+		return new SettingsMap(keys, values, size, displacements);
+
+	}
+
+	private static int mix(final int hash) {
+		// murmur3 finalizer - spreads the bits of String.hashCode() across the whole int
+		int h = hash;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private static int reduce(final int hash, final int range) {
+		// maps a hash onto [0, range) without a division
+		return (int) (((hash & 0xFFFFFFFFL) * range) >>> 32);
+	}
+
+	private final class EntrySet extends AbstractSet<Entry<String, String>> {
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean contains(final Object o) {
+			if (!(o instanceof Entry)) {
+				return false;
+			}
+			final Entry<?, ?> entry = (Entry<?, ?>) o;
+			final int slot = indexOf(entry.getKey());
+			return slot >= 0 && Objects.equals(values[slot], entry.getValue());
+		}
+
+		@Override
+		public Iterator<Entry<String, String>> iterator() {
+			return new Iterator<Entry<String, String>>() {
+
+				private int next = advance(0);
+
+				private int advance(final int from) {
+					int slot = from;
+					while (slot < keys.length && null == keys[slot]) {
+						slot++;
+					}
+					return slot;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return next < keys.length;
+				}
+
+				@Override
+				public Entry<String, String> next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					final Entry<String, String> entry = new SimpleImmutableEntry<>(keys[next], values[next]);
+					next = advance(next + 1);
+					return entry;
+				}
+
+			};
+		}
+
+	}
+
+}
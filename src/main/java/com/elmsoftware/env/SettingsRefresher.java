@@ -0,0 +1,262 @@
+package com.elmsoftware.env;
+
+import com.elmsoftware.env.settingproviderimpl.MapSettingProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the settings that came from a {@link SettingProvider} up to date - so a rotated credential doesn't need a
+ * restart.
+ * <p>
+ * The settings are merged once when this starts (with the provider's versioned lookup, if it has one, so each value
+ * is remembered with the version it came with), and the keys the provider supplied are remembered. Those keys are
+ * looked up again (in one bulk call) on a background thread before the TTL runs out - somewhere between
+ * {@code (1 - jitter) * ttl} and {@code ttl} after the last refresh, picked at random each time so a fleet of
+ * processes doesn't poll in step. If the provider is a {@link VersionedSettingProvider}, a value whose version hasn't
+ * changed is left alone; otherwise values are compared. When something did change, the settings are merged again
+ * (so aliases and JVM overrides still apply) and swapped in atomically, and listeners are told about the keys whose
+ * merged value changed.
+ * <p>
+ * Readers never block - {@link #getSettings()} just returns the current immutable settings. A refresh that fails
+ * keeps the current settings and tries again at the next interval.
+ */
+public class SettingsRefresher implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(SettingsRefresher.class);
+
+	public static final double DEFAULT_JITTER = 0.2;
+
+	private final EnvironmentSettings settings;
+	private final String environment;
+	private final SettingProvider settingProvider;
+	private final long ttlMillis;
+
+	private final AtomicReference<LayeredSettings> current = new AtomicReference<>();
+	private final List<SettingsChangeListener> listeners = new CopyOnWriteArrayList<>();
+	private final ScheduledExecutorService executor;
+
+	private double jitter = DEFAULT_JITTER;
+	private Map<String, Long> versions = Collections.emptyMap();
+
+	public SettingsRefresher(
+		final EnvironmentSettings settings,
+		final String environment,
+		final SettingProvider settingProvider,
+		final Duration ttl
+	) {
+		this.settings = settings;
+		this.environment = environment;
+		this.settingProvider = settingProvider;
+		this.ttlMillis = ttl.toMillis();
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "jackson-env-refresher");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @param jitter - the fraction of the TTL (0 to 1) to randomly take off each refresh interval
+	 * @return this refresher
+	 */
+	public SettingsRefresher withJitter(final double jitter) {
+		if (jitter < 0 || jitter > 1) {
+			throw new IllegalArgumentException("jitter must be between 0 and 1, not " + jitter);
+		}
+		this.jitter = jitter;
+		return this;
+	}
+
+	/**
+	 * Merges the settings (on the calling thread, so they are ready when this returns), then schedules the first
+	 * refresh.
+	 *
+	 * @return this refresher
+	 */
+	public SettingsRefresher start() {
+		final LayeredSettings merged;
+		if (settingProvider instanceof VersionedSettingProvider) {
+			// the values and their versions come from the same lookup - so a value rotated while this starts is still
+			// a change to the next refresh
+			final VersionCapturingProvider capturing = new VersionCapturingProvider((VersionedSettingProvider) settingProvider);
+			merged = settings.mergeLayered(environment, capturing);
+			versions = versionsOf(capturing.found);
+		} else {
+			merged = settings.mergeLayered(environment, settingProvider);
+		}
+		current.set(merged);
+		log.info("Refreshing provided settings {} for environment {}", merged.getProvided().keySet(), environment);
+		scheduleRefresh();
+		return this;
+	}
+
+	public SettingsRefresher addListener(final SettingsChangeListener listener) {
+		listeners.add(listener);
+		return this;
+	}
+
+	public void removeListener(final SettingsChangeListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return the current merged settings - this is immutable and never changes; a refresh replaces it
+	 */
+	public Map<String, String> getSettings() {
+		return current.get();
+	}
+
+	public String get(final String key) {
+		return current.get().get(key);
+	}
+
+	/**
+	 * Looks up the provided settings again now, and publishes any changes.
+	 *
+	 * @return true if the provider was asked, false if the refresh failed (the current settings are kept)
+	 */
+	public synchronized boolean refresh() {
+
+		final LayeredSettings previous = current.get();
+		final Map<String, String> provided = previous.getProvided();
+		if (provided.isEmpty()) {
+			return true;
+		}
+
+		final Map<String, String> refreshed = new HashMap<>(provided);
+		final SettingsEvents.Scope masking = SettingsEvents.masking(settings.getSensitiveSettings());
+		try {
+			if (settingProvider instanceof VersionedSettingProvider) {
+				final Map<String, VersionedSettingProvider.VersionedValue> found =
+					((VersionedSettingProvider) settingProvider).getVersionedProperties(environment, provided.keySet());
+				for (final Map.Entry<String, VersionedSettingProvider.VersionedValue> entry : found.entrySet()) {
+					if (!Objects.equals(versions.get(entry.getKey()), entry.getValue().getVersion())) {
+						refreshed.put(entry.getKey(), entry.getValue().getValue());
+					}
+				}
+				final Map<String, Long> updated = new HashMap<>(versions);
+				updated.putAll(versionsOf(found));
+				versions = updated;
+			} else {
+				// a key the provider no longer has keeps its last value
+				refreshed.putAll(settingProvider.getProperties(environment, provided.keySet()));
+			}
+		} catch (final RuntimeException e) {
+			log.warn("Unable to refresh provided settings - keeping the current settings: {}", e.toString());
+			return false;
+		} finally {
+			masking.close();
+		}
+
+		refreshed.values().removeIf(Objects::isNull);
+		if (refreshed.equals(provided)) {
+			log.debug("Provided settings for environment {} are unchanged", environment);
+			return true;
+		}
+
+		final LayeredSettings next;
+		try {
+			next = settings.mergeLayered(environment, new MapSettingProvider(refreshed));
+		} catch (final RuntimeException e) {
+			log.warn("Unable to merge refreshed settings - keeping the current settings: {}", e.toString());
+			return false;
+		}
+		current.set(next);
+
+		final Map<String, String> changed = EnvironmentSettingsWatcher.changes(previous, next);
+		if (!changed.isEmpty()) {
+			log.info("Settings changed for keys {}", changed.keySet());
+			final Map<String, String> published = Collections.unmodifiableMap(changed);
+			for (final SettingsChangeListener listener : listeners) {
+				try {
+					listener.settingsChanged(published);
+				} catch (final RuntimeException e) {
+					log.warn("Settings change listener {} failed", listener, e);
+				}
+			}
+		}
+
+		return true;
+
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return how long to wait before the next refresh - a random point in the last {@code jitter} of the TTL
+	 */
+	long nextDelayMillis() {
+		final long jitterMillis = (long) (ttlMillis * jitter);
+		return ttlMillis - (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+	}
+
+	private void scheduleRefresh() {
+		if (!executor.isShutdown()) {
+			executor.schedule(() -> {
+				try {
+					refresh();
+				} finally {
+					scheduleRefresh();
+				}
+			}, nextDelayMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Looks up values with their versions, and keeps the versions.
+	 */
+	private static final class VersionCapturingProvider implements SettingProvider {
+
+		private final VersionedSettingProvider settingProvider;
+		private final Map<String, VersionedSettingProvider.VersionedValue> found = new HashMap<>();
+
+		private VersionCapturingProvider(final VersionedSettingProvider settingProvider) {
+			this.settingProvider = settingProvider;
+		}
+
+		@Override
+		public String getProperty(final String environment, final String key) {
+			return getProperties(environment, Collections.singletonList(key)).get(key);
+		}
+
+		@Override
+		public Map<String, String> getProperties(final String environment, final Collection<String> keys) {
+			final Map<String, VersionedSettingProvider.VersionedValue> versioned =
+				settingProvider.getVersionedProperties(environment, keys);
+			found.putAll(versioned);
+			final Map<String, String> values = new HashMap<>();
+			for (final Map.Entry<String, VersionedSettingProvider.VersionedValue> entry : versioned.entrySet()) {
+				values.put(entry.getKey(), entry.getValue().getValue());
+			}
+			return values;
+		}
+
+	}
+
+	private static Map<String, Long> versionsOf(final Map<String, VersionedSettingProvider.VersionedValue> values) {
+		final Map<String, Long> versions = new HashMap<>();
+		for (final Map.Entry<String, VersionedSettingProvider.VersionedValue> entry : values.entrySet()) {
+			versions.put(entry.getKey(), entry.getValue().getVersion());
+		}
+		return versions;
+	}
+
+}
@@ -0,0 +1,40 @@
+package com.elmsoftware.env;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Asks the jackson-env-processor annotation processor to generate a typed settings class from a json settings file.
+ * <p>
+ * The generated class goes in the same package as the annotated type. It has one final field and one getter per key
+ * (typed from the values in the json - boolean, int, long, double or String), constants for the key names, and a
+ * {@code from(Map)} factory that converts the result of {@link EnvironmentSettings#merge(String)} once. Reading a
+ * setting after that is a plain field read, and a misspelled key is a compile error.
+ * <p>
+ * For example:
+ * <pre>
+ * &#64;TypedSettings(className = "AppSettings")
+ * public class MyApplication { ... }
+ *
+ * final AppSettings settings = AppSettings.from(EnvironmentSettings.load("environment.json").merge("PROD"));
+ * final int timeout = settings.getSomeTimeout();
+ * </pre>
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface TypedSettings {
+
+	/**
+	 * @return the simple name of the class to generate
+	 */
+	String className();
+
+	/**
+	 * @return the json file to read - it is looked up in the class output directory (where maven has already copied
+	 * the resources), then on the source path and the class path
+	 */
+	String resource() default "environment.json";
+
+}
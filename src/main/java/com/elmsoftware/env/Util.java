@@ -44,6 +44,8 @@ public class Util {
 	 */
 	public String determineEnvironment(final String systemVariableName) {
 
+		final SettingsEvents.Span span = SettingsEvents.phase("determine environment", null, systemVariableName);
+
 		// this is the alternate name to use
 		final String systemEnvironmentVariableName = System.getProperty(systemVariableName);
 		log.trace("alternate variable name is {} (from {})", systemEnvironmentVariableName, systemVariableName);
@@ -64,6 +66,7 @@ public class Util {
 
 		log.trace("environment name is {}", environmentName);
 
+		span.end(SettingsEvents.OK, finalName);
 		return finalName;
 
 	}
@@ -0,0 +1,65 @@
+package com.elmsoftware.env;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A {@link SettingProvider} for a store that keeps a version number with each value (like AWS SSM) - used by
+ * {@link SettingsRefresher} so a value that has not changed is recognized by its version alone.
+ */
+public interface VersionedSettingProvider extends SettingProvider {
+
+	/**
+	 * Looks up the current value and version of each key - this always asks the store, even if the provider would
+	 * otherwise answer from memory.
+	 *
+	 * @param environment - the environment
+	 * @param keys        - the settings to look up
+	 * @return the settings that were found - keys that were not found are left out
+	 */
+	Map<String, VersionedValue> getVersionedProperties(String environment, Collection<String> keys);
+
+	final class VersionedValue {
+
+		private final String value;
+		private final long version;
+
+		public VersionedValue(final String value, final long version) {
+			this.value = value;
+			this.version = version;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		public long getVersion() {
+			return version;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof VersionedValue)) {
+				return false;
+			}
+			final VersionedValue other = (VersionedValue) o;
+			return version == other.version && Objects.equals(value, other.value);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Objects.hashCode(value) + Long.hashCode(version);
+		}
+
+		@Override
+		public String toString() {
+			return "VersionedValue(version=" + version + ")";
+		}
+
+	}
+
+}
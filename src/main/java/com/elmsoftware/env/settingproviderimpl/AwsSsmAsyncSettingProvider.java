@@ -0,0 +1,212 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import com.elmsoftware.env.SettingProvider;
+import com.elmsoftware.env.SettingsEvents;
+import com.elmsoftware.env.VersionedSettingProvider;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.services.ssm.SsmAsyncClient;
+import software.amazon.awssdk.services.ssm.model.GetParametersRequest;
+import software.amazon.awssdk.services.ssm.model.GetParametersResponse;
+import software.amazon.awssdk.services.ssm.model.Parameter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * A non-blocking version of {@link AwsSsmV2SettingProvider} built on the {@link SsmAsyncClient}.
+ * <p>
+ * The candidate names of all of the requested keys are packed into GetParameters requests (up to 10 names each), and
+ * those requests are all sent at once - up to the in-flight limit - without holding a thread while they run. The
+ * most specific name found still wins: /{env}/{prefix}/{key}, then /{env}/{key}, then /global/{key}.
+ * <p>
+ * The {@link SettingProvider} methods block until the lookups are done, so this can be used with
+ * {@link com.elmsoftware.env.EnvironmentSettings#merge(String, SettingProvider)} too.
+ */
+@Slf4j
+public class AwsSsmAsyncSettingProvider implements VersionedSettingProvider {
+
+	public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+
+	private final SsmAsyncClient ssmClient;
+	private final String prefix;
+	private final Consumer<ProviderExceptionHandler.ExceptionInfo> exceptionHandler;
+
+	private InFlightLimiter limiter = new InFlightLimiter(DEFAULT_MAX_IN_FLIGHT);
+
+	public AwsSsmAsyncSettingProvider(
+			final SsmAsyncClient ssmClient,
+			final String prefix
+	) {
+		this.ssmClient = ssmClient;
+		this.prefix = prefix;
+		this.exceptionHandler = new ProviderExceptionHandler();
+	}
+
+	public AwsSsmAsyncSettingProvider(
+			final SsmAsyncClient ssmClient,
+			final String prefix,
+			final Consumer<ProviderExceptionHandler.ExceptionInfo> exceptionHandler
+	) {
+		this.ssmClient = ssmClient;
+		this.prefix = prefix;
+		this.exceptionHandler = exceptionHandler;
+	}
+
+	/**
+	 * @param maxInFlight - the most GetParameters requests to have running at once
+	 * @return this provider
+	 */
+	public AwsSsmAsyncSettingProvider withMaxInFlight(final int maxInFlight) {
+		this.limiter = new InFlightLimiter(maxInFlight);
+		return this;
+	}
+
+	/**
+	 * @return the value of the most specific parameter found - the future fails if there isn't one
+	 */
+	public CompletableFuture<String> getPropertyAsync(final String environment, final String key) {
+
+		log.info("looking for property {} in environment {}", key, environment);
+
+		final SettingsEvents.Span span = SettingsEvents.lookup(environment, key, this);
+		final List<String> names = SsmParameterNames.candidates(environment, prefix, key);
+		return getParameters(names).whenComplete((found, e) -> {
+			if (null != e) {
+				span.end(SettingsEvents.FAILED, names.get(0));
+			}
+		}).thenApply(found -> {
+			final Parameter parameter = SsmParameterNames.mostSpecific(names, found);
+			if (null == parameter) {
+				span.end(SettingsEvents.NOT_FOUND, names.get(0));
+				throw new SettingNotFoundException(names.get(0));
+			}
+			span.end(SettingsEvents.FOUND, parameter.name());
+			return parameter.value();
+		});
+
+	}
+
+	/**
+	 * @return the most specific value found for each key - keys that are not found are left out
+	 */
+	public CompletableFuture<Map<String, String>> getPropertiesAsync(
+		final String environment,
+		final Collection<String> keys
+	) {
+
+		log.info("looking for properties {} in environment {}", keys, environment);
+
+		return getVersionedPropertiesAsync(environment, keys).thenApply(found -> {
+			final Map<String, String> values = new HashMap<>();
+			for (final Map.Entry<String, VersionedValue> entry : found.entrySet()) {
+				values.put(entry.getKey(), entry.getValue().getValue());
+			}
+			return values;
+		});
+
+	}
+
+	/**
+	 * @return the value and version of the most specific parameter found for each key - keys that are not found are
+	 * left out
+	 */
+	public CompletableFuture<Map<String, VersionedValue>> getVersionedPropertiesAsync(
+		final String environment,
+		final Collection<String> keys
+	) {
+
+		final List<String> requested = new ArrayList<>(keys);
+		return getParameters(SsmParameterNames.allCandidates(environment, prefix, requested)).thenApply(found -> {
+			final Map<String, VersionedValue> values = new HashMap<>();
+			for (final String key : requested) {
+				final Parameter parameter = SsmParameterNames.mostSpecific(
+					SsmParameterNames.candidates(environment, prefix, key),
+					found
+				);
+				if (null != parameter) {
+					values.put(
+						key,
+						new VersionedValue(parameter.value(), null == parameter.version() ? 0 : parameter.version())
+					);
+				}
+			}
+			return values;
+		});
+
+	}
+
+	@Override
+	public String getProperty(final String environment, final String key) {
+		return Futures.join(getPropertyAsync(environment, key));
+	}
+
+	@Override
+	public Map<String, String> getProperties(final String environment, final Collection<String> keys) {
+		return Futures.join(getPropertiesAsync(environment, keys));
+	}
+
+	@Override
+	public Map<String, VersionedValue> getVersionedProperties(final String environment, final Collection<String> keys) {
+		return Futures.join(getVersionedPropertiesAsync(environment, keys));
+	}
+
+	private CompletableFuture<Map<String, Parameter>> getParameters(final Collection<String> names) {
+
+		final List<CompletableFuture<Map<String, Parameter>>> requests = new ArrayList<>();
+		for (final List<String> request : SsmParameterNames.requests(names)) {
+			requests.add(getParameters(request));
+		}
+
+		return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+			final Map<String, Parameter> found = new HashMap<>();
+			for (final CompletableFuture<Map<String, Parameter>> request : requests) {
+				found.putAll(request.join());
+			}
+			return found;
+		});
+
+	}
+
+	private CompletableFuture<Map<String, Parameter>> getParameters(final List<String> request) {
+
+		log.debug("looking for parameters {}", request);
+
+		return limiter.submit(() -> ssmClient.getParameters(buildGetParametersRequest(request)))
+			.handle((response, throwable) -> {
+				if (null != throwable) {
+					final Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+					exceptionHandler.accept(new ProviderExceptionHandler.ExceptionInfo(
+						request,
+						cause instanceof Exception ? (Exception) cause : new RuntimeException(cause),
+						cause instanceof AwsServiceException && ((AwsServiceException) cause).isThrottlingException()
+					));
+					return Collections.<String, Parameter>emptyMap();
+				}
+				final Map<String, Parameter> found = new HashMap<>();
+				for (final Parameter parameter : response.parameters()) {
+					log.info("found parameter as {}", parameter.name());
+					found.put(parameter.name(), parameter);
+				}
+				if (!response.invalidParameters().isEmpty()) {
+					log.debug("parameters not found: {}", response.invalidParameters());
+				}
+				return found;
+			});
+
+	}
+
+	private GetParametersRequest buildGetParametersRequest(final List<String> names) {
+		return GetParametersRequest.builder()
+			.names(names)
+			.withDecryption(true).build();
+	}
+
+}
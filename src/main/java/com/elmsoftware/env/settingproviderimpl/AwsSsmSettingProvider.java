@@ -1,20 +1,37 @@
 package com.elmsoftware.env.settingproviderimpl;
 
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.services.simplesystemsmanagement.AWSSimpleSystemsManagement;
-import com.amazonaws.services.simplesystemsmanagement.model.GetParameterRequest;
-import com.amazonaws.services.simplesystemsmanagement.model.GetParameterResult;
-import com.elmsoftware.env.SettingProvider;
+import com.amazonaws.services.simplesystemsmanagement.model.GetParametersByPathRequest;
+import com.amazonaws.services.simplesystemsmanagement.model.GetParametersByPathResult;
+import com.amazonaws.services.simplesystemsmanagement.model.GetParametersRequest;
+import com.amazonaws.services.simplesystemsmanagement.model.GetParametersResult;
+import com.amazonaws.services.simplesystemsmanagement.model.Parameter;
+import com.elmsoftware.env.SettingsEvents;
+import com.elmsoftware.env.VersionedSettingProvider;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
 
 @Slf4j
-public class AwsSsmSettingProvider implements SettingProvider {
+public class AwsSsmSettingProvider implements VersionedSettingProvider {
 
 	private final AWSSimpleSystemsManagement awsSsm;
 	private final String prefix;
 	private final Consumer<ProviderExceptionHandler.ExceptionInfo> exceptionHandler;
 
+	// indexes of every parameter under the searched paths, by environment - only used in prefetch mode
+	private final ConcurrentMap<String, Map<String, Parameter>> prefetched = new ConcurrentHashMap<>();
+	private volatile boolean prefetch;
+	private SsmThrottling throttling = SsmThrottling.shared();
+
 	public AwsSsmSettingProvider(
 			final AWSSimpleSystemsManagement awsSsm,
 			final String prefix
@@ -34,45 +51,215 @@ public class AwsSsmSettingProvider implements SettingProvider {
 		this.exceptionHandler = exceptionHandler;
 	}
 
+	/**
+	 * Turns on prefetch mode: the first lookup for an environment reads every parameter under /{env}/{prefix} (and
+	 * the ones directly under /{env} and /global) with paginated GetParametersByPath requests, and every later lookup
+	 * for that environment is served from memory - except for keys with a slash in them, which are looked up under
+	 * /{env} and /global with GetParameters. If a path can not be read, lookups fall back to GetParameters (and the
+	 * prefetch is tried again next time).
+	 *
+	 * @return this provider
+	 */
+	public AwsSsmSettingProvider withPrefetch() {
+		this.prefetch = true;
+		return this;
+	}
+
+	/**
+	 * @param throttling - paces requests and retries throttled ones (the default is shared by every provider)
+	 * @return this provider
+	 */
+	public AwsSsmSettingProvider withThrottling(final SsmThrottling throttling) {
+		this.throttling = throttling;
+		return this;
+	}
+
 	@Override
 	public String getProperty(final String environment, final String key) {
 
 		log.info("looking for property {} in environment {}", key, environment);
 
-		final GetParameterResult parameter = getParameter(
-				buildName(environment, prefix, key),
-				buildName(environment, key),
-				buildName("global", key)
+		final SettingsEvents.Span span = SettingsEvents.lookup(environment, key, this);
+		final List<String> names = SsmParameterNames.candidates(environment, prefix, key);
+		final Parameter parameter;
+		try {
+			parameter = SsmParameterNames.mostSpecific(names, find(environment, names));
+		} catch (final RuntimeException e) {
+			span.end(SettingsEvents.FAILED, names.get(0));
+			throw e;
+		}
+
+		if (null == parameter) {
+			span.end(SettingsEvents.NOT_FOUND, names.get(0));
+			throw new SettingNotFoundException(names.get(0));
+		}
+
+		span.end(SettingsEvents.FOUND, parameter.getName());
+		return parameter.getValue();
+
+	}
+
+	/**
+	 * Looks for all of the candidate names of all of the keys with as few GetParameters requests as possible - keys
+	 * that are not found are left out.
+	 */
+	@Override
+	public Map<String, String> getProperties(final String environment, final Collection<String> keys) {
+
+		log.info("looking for properties {} in environment {}", keys, environment);
+
+		final Map<String, SettingsEvents.Span> spans = SettingsEvents.lookups(environment, keys, this);
+		final Map<String, Parameter> found;
+		try {
+			found = find(environment, SsmParameterNames.allCandidates(environment, prefix, keys));
+		} catch (final RuntimeException e) {
+			SettingsEvents.endLookups(spans, SettingsEvents.FAILED);
+			throw e;
+		}
+
+		final Map<String, String> values = new HashMap<>();
+		for (final String key : keys) {
+			final List<String> names = SsmParameterNames.candidates(environment, prefix, key);
+			final Parameter parameter = SsmParameterNames.mostSpecific(names, found);
+			if (null != parameter) {
+				values.put(key, parameter.getValue());
+			}
+			final SettingsEvents.Span span = spans.get(key);
+			if (null != span) {
+				span.end(
+					null == parameter ? SettingsEvents.NOT_FOUND : SettingsEvents.FOUND,
+					null == parameter ? names.get(0) : parameter.getName()
+				);
+			}
+		}
+		return values;
+
+	}
+
+	/**
+	 * Always sends GetParameters requests, even in prefetch mode - and updates the prefetched parameters with what it
+	 * finds.
+	 */
+	@Override
+	public Map<String, VersionedValue> getVersionedProperties(final String environment, final Collection<String> keys) {
+
+		final Map<String, Parameter> found = getParameters(SsmParameterNames.allCandidates(environment, prefix, keys));
+
+		if (prefetch) {
+			SsmParameterNames.updatePrefetched(prefetched, environment, found);
+		}
+
+		final Map<String, VersionedValue> values = new HashMap<>();
+		for (final String key : keys) {
+			final Parameter parameter = SsmParameterNames.mostSpecific(
+				SsmParameterNames.candidates(environment, prefix, key),
+				found
+			);
+			if (null != parameter) {
+				values.put(key, new VersionedValue(parameter.getValue(), null == parameter.getVersion() ? 0 : parameter.getVersion()));
+			}
+		}
+		return values;
+
+	}
+
+	private Map<String, Parameter> find(final String environment, final Collection<String> names) {
+		if (!prefetch) {
+			return getParameters(names);
+		}
+		return SsmParameterNames.prefetched(
+			prefetched,
+			environment,
+			prefix,
+			names,
+			this::getParametersByPath,
+			this::getParameters
 		);
+	}
+
+	private Map<String, Parameter> getParameters(final Collection<String> names) {
+
+		final Map<String, Parameter> found = new HashMap<>();
 
-		return parameter.getParameter().getValue();
+		for (final List<String> request : SsmParameterNames.requests(names)) {
+			try {
+				log.debug("looking for parameters {}", request);
+				final GetParametersResult result = throttling.call(
+					String.join(", ", request),
+					() -> awsSsm.getParameters(buildGetParametersRequest(request)),
+					this::isThrottled
+				);
+				for (final Parameter parameter : result.getParameters()) {
+					log.info("found parameter as {}", parameter.getName());
+					found.put(parameter.getName(), parameter);
+				}
+				if (!result.getInvalidParameters().isEmpty()) {
+					log.debug("parameters not found: {}", result.getInvalidParameters());
+				}
+			} catch (final Exception e) {
+				exceptionHandler.accept(new ProviderExceptionHandler.ExceptionInfo(
+					request,
+					e,
+					isThrottled(e)
+				));
+			}
+		}
+
+		return found;
 
 	}
 
-	private GetParameterResult getParameter(final String... names) {
-		for (final String name : names) {
+	private Map<String, Parameter> getParametersByPath(final String environment) {
+
+		final Map<String, Parameter> index = new HashMap<>();
+
+		for (final SsmParameterNames.PathScan scan : SsmParameterNames.paths(environment, prefix)) {
+			final String path = scan.path;
 			try {
-				log.debug("looking for parameter {}", name);
-				final GetParameterResult parameter = awsSsm.getParameter(buildGetParameterRequest(name));
-				log.info("found parameter as {}", name);
-				return parameter;
+				log.debug("prefetching parameters under {}", path);
+				String nextToken = null;
+				do {
+					final String token = nextToken;
+					final GetParametersByPathResult result = throttling.call(
+						path,
+						() -> awsSsm.getParametersByPath(buildGetParametersByPathRequest(scan, token)),
+						this::isThrottled
+					);
+					for (final Parameter parameter : result.getParameters()) {
+						index.put(parameter.getName(), parameter);
+					}
+					nextToken = result.getNextToken();
+				} while (null != nextToken);
 			} catch (final Exception e) {
-				exceptionHandler.accept(new ProviderExceptionHandler.ExceptionInfo(name, e));
+				exceptionHandler.accept(new ProviderExceptionHandler.ExceptionInfo(path, e, isThrottled(e)));
+				return null;
 			}
 		}
 
-		throw new RuntimeException(String.format("unable to find parameter using pattern %s", names[0]));
+		log.info("prefetched {} parameters for environment {}", index.size(), environment);
+		return index;
 
 	}
 
-	private GetParameterRequest buildGetParameterRequest(final String name) {
-		return new GetParameterRequest()
-			.withName(name)
-			.withWithDecryption(true);
+	private boolean isThrottled(final Exception e) {
+		return e instanceof AmazonServiceException && RetryUtils.isThrottlingException((AmazonServiceException) e);
+	}
+
+	private GetParametersByPathRequest buildGetParametersByPathRequest(
+		final SsmParameterNames.PathScan scan,
+		final String nextToken
+	) {
+		return new GetParametersByPathRequest()
+			.withPath(scan.path)
+			.withRecursive(scan.recursive)
+			.withWithDecryption(true)
+			.withNextToken(nextToken);
 	}
 
-	private String buildName(final String... part) {
-		return "/" + String.join("/", part).toLowerCase();
+	private GetParametersRequest buildGetParametersRequest(final List<String> names) {
+		return new GetParametersRequest()
+			.withNames(names)
+			.withWithDecryption(true);
 	}
 
 }
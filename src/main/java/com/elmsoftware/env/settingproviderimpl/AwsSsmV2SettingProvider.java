@@ -1,21 +1,36 @@
 package com.elmsoftware.env.settingproviderimpl;
 
-import com.elmsoftware.env.SettingProvider;
+import com.elmsoftware.env.SettingsEvents;
+import com.elmsoftware.env.VersionedSettingProvider;
 import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.services.ssm.SsmClient;
-import software.amazon.awssdk.services.ssm.model.GetParameterRequest;
-import software.amazon.awssdk.services.ssm.model.GetParameterResponse;
+import software.amazon.awssdk.services.ssm.model.GetParametersByPathRequest;
+import software.amazon.awssdk.services.ssm.model.GetParametersByPathResponse;
+import software.amazon.awssdk.services.ssm.model.GetParametersRequest;
+import software.amazon.awssdk.services.ssm.model.GetParametersResponse;
 import software.amazon.awssdk.services.ssm.model.Parameter;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
 
 @Slf4j
-public class AwsSsmV2SettingProvider implements SettingProvider {
+public class AwsSsmV2SettingProvider implements VersionedSettingProvider {
 
 	private final SsmClient ssmClient;
 	private final String prefix;
 	private final Consumer<ProviderExceptionHandler.ExceptionInfo> exceptionHandler;
 
+	// indexes of every parameter under the searched paths, by environment - only used in prefetch mode
+	private final ConcurrentMap<String, Map<String, Parameter>> prefetched = new ConcurrentHashMap<>();
+	private volatile boolean prefetch;
+	private SsmThrottling throttling = SsmThrottling.shared();
+
 	public AwsSsmV2SettingProvider(
 			final SsmClient ssmClient,
 			final String prefix
@@ -35,45 +50,215 @@ public class AwsSsmV2SettingProvider implements SettingProvider {
 		this.exceptionHandler = exceptionHandler;
 	}
 
+	/**
+	 * Turns on prefetch mode: the first lookup for an environment reads every parameter under /{env}/{prefix} (and
+	 * the ones directly under /{env} and /global) with paginated GetParametersByPath requests, and every later lookup
+	 * for that environment is served from memory - except for keys with a slash in them, which are looked up under
+	 * /{env} and /global with GetParameters. If a path can not be read, lookups fall back to GetParameters (and the
+	 * prefetch is tried again next time).
+	 *
+	 * @return this provider
+	 */
+	public AwsSsmV2SettingProvider withPrefetch() {
+		this.prefetch = true;
+		return this;
+	}
+
+	/**
+	 * @param throttling - paces requests and retries throttled ones (the default is shared by every provider)
+	 * @return this provider
+	 */
+	public AwsSsmV2SettingProvider withThrottling(final SsmThrottling throttling) {
+		this.throttling = throttling;
+		return this;
+	}
+
 	@Override
 	public String getProperty(final String environment, final String key) {
 
 		log.info("looking for property {} in environment {}", key, environment);
 
-		final Parameter parameter = getParameter(
-				buildName(environment, prefix, key),
-				buildName(environment, key),
-				buildName("global", key)
-		);
+		final SettingsEvents.Span span = SettingsEvents.lookup(environment, key, this);
+		final List<String> names = SsmParameterNames.candidates(environment, prefix, key);
+		final Parameter parameter;
+		try {
+			parameter = SsmParameterNames.mostSpecific(names, find(environment, names));
+		} catch (final RuntimeException e) {
+			span.end(SettingsEvents.FAILED, names.get(0));
+			throw e;
+		}
 
+		if (null == parameter) {
+			span.end(SettingsEvents.NOT_FOUND, names.get(0));
+			throw new SettingNotFoundException(names.get(0));
+		}
+
+		span.end(SettingsEvents.FOUND, parameter.name());
 		return parameter.value();
 
 	}
 
-	private Parameter getParameter(final String... names) {
-		for (final String name : names) {
+	/**
+	 * Looks for all of the candidate names of all of the keys with as few GetParameters requests as possible - keys
+	 * that are not found are left out.
+	 */
+	@Override
+	public Map<String, String> getProperties(final String environment, final Collection<String> keys) {
+
+		log.info("looking for properties {} in environment {}", keys, environment);
+
+		final Map<String, SettingsEvents.Span> spans = SettingsEvents.lookups(environment, keys, this);
+		final Map<String, Parameter> found;
+		try {
+			found = find(environment, SsmParameterNames.allCandidates(environment, prefix, keys));
+		} catch (final RuntimeException e) {
+			SettingsEvents.endLookups(spans, SettingsEvents.FAILED);
+			throw e;
+		}
+
+		final Map<String, String> values = new HashMap<>();
+		for (final String key : keys) {
+			final List<String> names = SsmParameterNames.candidates(environment, prefix, key);
+			final Parameter parameter = SsmParameterNames.mostSpecific(names, found);
+			if (null != parameter) {
+				values.put(key, parameter.value());
+			}
+			final SettingsEvents.Span span = spans.get(key);
+			if (null != span) {
+				span.end(
+					null == parameter ? SettingsEvents.NOT_FOUND : SettingsEvents.FOUND,
+					null == parameter ? names.get(0) : parameter.name()
+				);
+			}
+		}
+		return values;
+
+	}
+
+	/**
+	 * Always sends GetParameters requests, even in prefetch mode - and updates the prefetched parameters with what it
+	 * finds.
+	 */
+	@Override
+	public Map<String, VersionedValue> getVersionedProperties(final String environment, final Collection<String> keys) {
+
+		final Map<String, Parameter> found = getParameters(SsmParameterNames.allCandidates(environment, prefix, keys));
+
+		if (prefetch) {
+			SsmParameterNames.updatePrefetched(prefetched, environment, found);
+		}
+
+		final Map<String, VersionedValue> values = new HashMap<>();
+		for (final String key : keys) {
+			final Parameter parameter = SsmParameterNames.mostSpecific(
+				SsmParameterNames.candidates(environment, prefix, key),
+				found
+			);
+			if (null != parameter) {
+				values.put(key, new VersionedValue(parameter.value(), null == parameter.version() ? 0 : parameter.version()));
+			}
+		}
+		return values;
+
+	}
+
+	private Map<String, Parameter> find(final String environment, final Collection<String> names) {
+		if (!prefetch) {
+			return getParameters(names);
+		}
+		return SsmParameterNames.prefetched(
+			prefetched,
+			environment,
+			prefix,
+			names,
+			this::getParametersByPath,
+			this::getParameters
+		);
+	}
+
+	private Map<String, Parameter> getParameters(final Collection<String> names) {
+
+		final Map<String, Parameter> found = new HashMap<>();
+
+		for (final List<String> request : SsmParameterNames.requests(names)) {
 			try {
-				log.debug("looking for parameter {}", name);
-				final GetParameterResponse response = ssmClient.getParameter(buildGetParameterRequest(name));
-				log.info("found parameter as {}", name);
-				return response.parameter();
+				log.debug("looking for parameters {}", request);
+				final GetParametersResponse response = throttling.call(
+					String.join(", ", request),
+					() -> ssmClient.getParameters(buildGetParametersRequest(request)),
+					this::isThrottled
+				);
+				for (final Parameter parameter : response.parameters()) {
+					log.info("found parameter as {}", parameter.name());
+					found.put(parameter.name(), parameter);
+				}
+				if (!response.invalidParameters().isEmpty()) {
+					log.debug("parameters not found: {}", response.invalidParameters());
+				}
 			} catch (final Exception e) {
-				exceptionHandler.accept(new ProviderExceptionHandler.ExceptionInfo(name, e));
+				exceptionHandler.accept(new ProviderExceptionHandler.ExceptionInfo(
+					request,
+					e,
+					isThrottled(e)
+				));
 			}
 		}
 
-		throw new RuntimeException(String.format("unable to find parameter using pattern %s", names[0]));
+		return found;
 
 	}
 
-	private GetParameterRequest buildGetParameterRequest(final String name) {
-		return GetParameterRequest.builder()
-			.name(name)
-			.withDecryption(true).build();
+	private Map<String, Parameter> getParametersByPath(final String environment) {
+
+		final Map<String, Parameter> index = new HashMap<>();
+
+		for (final SsmParameterNames.PathScan scan : SsmParameterNames.paths(environment, prefix)) {
+			final String path = scan.path;
+			try {
+				log.debug("prefetching parameters under {}", path);
+				String nextToken = null;
+				do {
+					final String token = nextToken;
+					final GetParametersByPathResponse response = throttling.call(
+						path,
+						() -> ssmClient.getParametersByPath(buildGetParametersByPathRequest(scan, token)),
+						this::isThrottled
+					);
+					for (final Parameter parameter : response.parameters()) {
+						index.put(parameter.name(), parameter);
+					}
+					nextToken = response.nextToken();
+				} while (null != nextToken);
+			} catch (final Exception e) {
+				exceptionHandler.accept(new ProviderExceptionHandler.ExceptionInfo(path, e, isThrottled(e)));
+				return null;
+			}
+		}
+
+		log.info("prefetched {} parameters for environment {}", index.size(), environment);
+		return index;
+
 	}
 
-	private String buildName(final String... part) {
-		return "/" + String.join("/", part).toLowerCase();
+	private boolean isThrottled(final Exception e) {
+		return e instanceof AwsServiceException && ((AwsServiceException) e).isThrottlingException();
+	}
+
+	private GetParametersByPathRequest buildGetParametersByPathRequest(
+		final SsmParameterNames.PathScan scan,
+		final String nextToken
+	) {
+		return GetParametersByPathRequest.builder()
+			.path(scan.path)
+			.recursive(scan.recursive)
+			.withDecryption(true)
+			.nextToken(nextToken).build();
+	}
+
+	private GetParametersRequest buildGetParametersRequest(final List<String> names) {
+		return GetParametersRequest.builder()
+			.names(names)
+			.withDecryption(true).build();
 	}
 
 }
@@ -0,0 +1,261 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import com.elmsoftware.env.SettingProvider;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers what another provider returned, by environment and key.
+ * <p>
+ * Values that were found are kept for the TTL; misses (a null, or a {@link SettingNotFoundException} from the
+ * provider) are kept for the negative TTL - a cached not-found is thrown again (as a new exception) on later lookups,
+ * and left out of bulk lookups like any other miss. Any other exception is a failure, not a miss: it is thrown to the
+ * caller and not cached, so the next lookup asks the provider again. Reads never lock. When the cache grows past
+ * its maximum size, the least recently used entries (and any that have expired) are evicted, down to 90% of the
+ * maximum - so eviction is done in batches, on the thread that added the entry.
+ */
+@Slf4j
+public class CachingSettingProvider implements SettingProvider {
+
+	public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+	public static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofSeconds(30);
+	public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+	private final SettingProvider settingProvider;
+	private final ConcurrentMap<SettingKey, Entry> entries = new ConcurrentHashMap<>();
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	private long ttlNanos = DEFAULT_TTL.toNanos();
+	private long negativeTtlNanos = DEFAULT_NEGATIVE_TTL.toNanos();
+	private int maximumSize = DEFAULT_MAXIMUM_SIZE;
+	private LongSupplier ticker = System::nanoTime;
+
+	public CachingSettingProvider(final SettingProvider settingProvider) {
+		this.settingProvider = settingProvider;
+	}
+
+	public CachingSettingProvider withTtl(final Duration ttl) {
+		this.ttlNanos = ttl.toNanos();
+		return this;
+	}
+
+	/**
+	 * @param negativeTtl - how long to remember that a setting was not found (zero to not remember misses at all)
+	 * @return this provider
+	 */
+	public CachingSettingProvider withNegativeTtl(final Duration negativeTtl) {
+		this.negativeTtlNanos = negativeTtl.toNanos();
+		return this;
+	}
+
+	public CachingSettingProvider withMaximumSize(final int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("maximumSize must be at least 1, not " + maximumSize);
+		}
+		this.maximumSize = maximumSize;
+		return this;
+	}
+
+	// for tests - a source of nanoseconds
+	CachingSettingProvider withTicker(final LongSupplier ticker) {
+		this.ticker = ticker;
+		return this;
+	}
+
+	@Override
+	public String getProperty(final String environment, final String key) {
+
+		final long now = ticker.getAsLong();
+		final Entry cached = lookup(new SettingKey(environment, key), now);
+		if (null != cached) {
+			return cached.value();
+		}
+
+		misses.increment();
+		try {
+			final String value = settingProvider.getProperty(environment, key);
+			store(new SettingKey(environment, key), new Entry(value, null, now, expiry(now, value)));
+			return value;
+		} catch (final SettingNotFoundException e) {
+			store(new SettingKey(environment, key), new Entry(null, e.getPattern(), now, now + negativeTtlNanos));
+			throw e;
+		}
+
+	}
+
+	/**
+	 * Answers what it can from the cache, and asks the wrapped provider for the rest in one call.
+	 */
+	@Override
+	public Map<String, String> getProperties(final String environment, final Collection<String> keys) {
+
+		final long now = ticker.getAsLong();
+		final Map<String, String> values = new HashMap<>();
+		final Set<String> uncached = new LinkedHashSet<>();
+
+		for (final String key : keys) {
+			final Entry cached = lookup(new SettingKey(environment, key), now);
+			if (null == cached) {
+				uncached.add(key);
+			} else if (null != cached.value) {
+				values.put(key, cached.value);
+			}
+		}
+
+		if (!uncached.isEmpty()) {
+			misses.add(uncached.size());
+			final Map<String, String> found = settingProvider.getProperties(environment, uncached);
+			for (final String key : uncached) {
+				final String value = found.get(key);
+				store(new SettingKey(environment, key), new Entry(value, null, now, expiry(now, value)));
+				if (null != value) {
+					values.put(key, value);
+				}
+			}
+		}
+
+		return values;
+
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public void invalidateAll() {
+		entries.clear();
+	}
+
+	private Entry lookup(final SettingKey key, final long now) {
+		final Entry entry = entries.get(key);
+		if (null == entry || now - entry.expires >= 0) {
+			return null;
+		}
+		entry.lastAccess = now;
+		hits.increment();
+		return entry;
+	}
+
+	private long expiry(final long now, final String value) {
+		return now + (null == value ? negativeTtlNanos : ttlNanos);
+	}
+
+	private void store(final SettingKey key, final Entry entry) {
+
+		if (entry.expires - entry.lastAccess <= 0) {
+			// a zero ttl - don't cache it
+			entries.remove(key);
+			return;
+		}
+
+		entries.put(key, entry);
+
+		// if another thread is already evicting, it will check the size again when it is done
+		while (entries.size() > maximumSize && evictionLock.tryLock()) {
+			try {
+				evict();
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+
+	}
+
+	private void evict() {
+
+		final long now = ticker.getAsLong();
+		final int target = Math.max(0, maximumSize - Math.max(1, maximumSize / 10));
+
+		final List<Candidate> candidates = new ArrayList<>(entries.size());
+		for (final Map.Entry<SettingKey, Entry> entry : entries.entrySet()) {
+			if (now - entry.getValue().expires >= 0) {
+				if (entries.remove(entry.getKey(), entry.getValue())) {
+					evictions.increment();
+				}
+			} else {
+				candidates.add(new Candidate(entry.getKey(), entry.getValue(), now));
+			}
+		}
+
+		if (entries.size() > target) {
+			// least recently used first - by a copy of the access time, because readers keep changing it
+			candidates.sort((a, b) -> Long.compare(b.idle, a.idle));
+			for (int i = 0; i < candidates.size() && entries.size() > target; i++) {
+				if (entries.remove(candidates.get(i).key, candidates.get(i).entry)) {
+					evictions.increment();
+				}
+			}
+		}
+
+		log.debug("evicted cached settings down to {} entries", entries.size());
+
+	}
+
+	private static final class Candidate {
+
+		private final SettingKey key;
+		private final Entry entry;
+		private final long idle;
+
+		private Candidate(final SettingKey key, final Entry entry, final long now) {
+			this.key = key;
+			this.entry = entry;
+			this.idle = now - entry.lastAccess;
+		}
+
+	}
+
+	private static final class Entry {
+
+		private final String value;
+		// the pattern of a cached SettingNotFoundException
+		private final String notFound;
+		private final long expires;
+		private volatile long lastAccess;
+
+		private Entry(final String value, final String notFound, final long lastAccess, final long expires) {
+			this.value = value;
+			this.notFound = notFound;
+			this.lastAccess = lastAccess;
+			this.expires = expires;
+		}
+
+		private String value() {
+			if (null != notFound) {
+				throw new SettingNotFoundException(notFound);
+			}
+			return value;
+		}
+
+	}
+
+}
@@ -1,30 +1,643 @@
 package com.elmsoftware.env.settingproviderimpl;
 
+import com.elmsoftware.env.Deadline;
 import com.elmsoftware.env.SettingProvider;
+import com.elmsoftware.env.SettingsEvents;
+import lombok.extern.slf4j.Slf4j;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+@Slf4j
 public class ChainingSettingProvider implements SettingProvider {
 
+	public static final Duration DEFAULT_ROUTE_TTL = Duration.ofMinutes(1);
+
 	private final SettingProvider[] settingProviderArray;
 
+	private Deadline deadline = Deadline.none();
+	// one per provider, or null for none
+	private CircuitBreaker[] circuitBreakers;
+	// null unless hedging
+	private Executor hedgingExecutor;
+	private long hedgeDelayNanos;
+	// environment/key to the provider that last answered, or null unless routing
+	private ConcurrentMap<String, Route> routes;
+	private long routeTtlNanos;
+	private final LongAdder routeHits;
+	private final LongAdder routeMisses;
+
 	public ChainingSettingProvider(final SettingProvider... settingProviderArray) {
 		this.settingProviderArray = settingProviderArray;
+		this.routeHits = new LongAdder();
+		this.routeMisses = new LongAdder();
+	}
+
+	// a copy that shares the providers, breakers, hedging, routes and counts of another chain
+	private ChainingSettingProvider(final ChainingSettingProvider chain, final Deadline deadline) {
+		this.settingProviderArray = chain.settingProviderArray;
+		this.deadline = deadline;
+		this.circuitBreakers = chain.circuitBreakers;
+		this.hedgingExecutor = chain.hedgingExecutor;
+		this.hedgeDelayNanos = chain.hedgeDelayNanos;
+		this.routes = chain.routes;
+		this.routeTtlNanos = chain.routeTtlNanos;
+		this.routeHits = chain.routeHits;
+		this.routeMisses = chain.routeMisses;
+	}
+
+	/**
+	 * Each provider gets an even share of what is left of the deadline (so a provider that finishes early leaves more
+	 * for the ones after it) - one that doesn't answer in time is skipped.
+	 *
+	 * @param deadline - when lookups must be done by
+	 * @return this provider
+	 */
+	public ChainingSettingProvider withDeadline(final Deadline deadline) {
+		this.deadline = deadline;
+		return this;
+	}
+
+	/**
+	 * Same as {@link #withDeadline(Deadline)}, but leaves this chain as it is - the lookups made through the returned
+	 * chain share out the deadline, and everything else (the providers, their circuit breakers, hedging and routes) is
+	 * shared with this one. Use this to bound one piece of work with a chain other threads are using.
+	 *
+	 * @param deadline - when lookups through the returned chain must be done by
+	 * @return a chain with the deadline
+	 */
+	public ChainingSettingProvider boundedBy(final Deadline deadline) {
+		return new ChainingSettingProvider(this, deadline);
+	}
+
+	/**
+	 * @return when lookups must be done by - {@link Deadline#none()} unless one was set
+	 */
+	public Deadline getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * Puts a {@link CircuitBreaker} (with the default settings) in front of each provider.
+	 *
+	 * @return this provider
+	 */
+	public ChainingSettingProvider withCircuitBreakers() {
+		return withCircuitBreakers(CircuitBreaker::new);
+	}
+
+	/**
+	 * Puts a circuit breaker in front of each provider - a provider whose breaker is open is skipped without being
+	 * asked. With breakers, a provider that throws is skipped too (and the failure is counted), instead of the
+	 * exception ending the lookup.
+	 *
+	 * @param circuitBreakerFactory - makes a breaker, given a name for the provider
+	 * @return this provider
+	 */
+	public ChainingSettingProvider withCircuitBreakers(final Function<String, CircuitBreaker> circuitBreakerFactory) {
+		final CircuitBreaker[] breakers = new CircuitBreaker[settingProviderArray.length];
+		for (int i = 0; i < settingProviderArray.length; i++) {
+			breakers[i] = circuitBreakerFactory.apply(settingProviderArray[i].getClass().getSimpleName() + "#" + i);
+		}
+		this.circuitBreakers = breakers;
+		return this;
+	}
+
+	/**
+	 * Hedges lookups: the first provider is asked right away, and if it hasn't answered after the delay the next one
+	 * is asked too (and so on) - with no delay, every provider is asked at once. The answer is still the one from the
+	 * highest priority provider that has the setting, and lookups that are no longer needed are cancelled (their
+	 * threads are interrupted). A bulk lookup asks every provider for all of the keys.
+	 *
+	 * @param delay - how long to wait for a provider before also asking the next one
+	 * @return this provider
+	 */
+	public ChainingSettingProvider withHedging(final Duration delay) {
+		return withHedging(delay, ParallelSettingProvider.newDefaultExecutor());
+	}
+
+	/**
+	 * Same as {@link #withHedging(Duration)}, with the lookups run on the given executor.
+	 *
+	 * @param delay    - how long to wait for a provider before also asking the next one
+	 * @param executor - runs the lookups
+	 * @return this provider
+	 */
+	public ChainingSettingProvider withHedging(final Duration delay, final Executor executor) {
+		if (delay.isNegative()) {
+			throw new IllegalArgumentException("delay must not be negative, not " + delay);
+		}
+		this.hedgeDelayNanos = delay.toNanos();
+		this.hedgingExecutor = executor;
+		return this;
+	}
+
+	/**
+	 * Remembers routes with the {@link #DEFAULT_ROUTE_TTL}.
+	 *
+	 * @return this provider
+	 * @see #withRouting(Duration)
+	 */
+	public ChainingSettingProvider withRouting() {
+		return withRouting(DEFAULT_ROUTE_TTL);
+	}
+
+	/**
+	 * Remembers which provider answered each key, and asks that provider first next time - so the providers before it
+	 * aren't asked again for a key they don't have. If it no longer has the key, the route is dropped and the rest of
+	 * the chain is asked; if the route is older than the ttl, the whole chain is asked again (so a provider earlier in
+	 * the chain that gains the key takes over within the ttl).
+	 *
+	 * @param routeTtl - how long to trust a route before asking the whole chain again
+	 * @return this provider
+	 */
+	public ChainingSettingProvider withRouting(final Duration routeTtl) {
+		this.routeTtlNanos = routeTtl.toNanos();
+		this.routes = new ConcurrentHashMap<>();
+		return this;
+	}
+
+	/**
+	 * @return how many keys were answered by the provider they were routed to
+	 */
+	public long getRouteHitCount() {
+		return routeHits.sum();
+	}
+
+	/**
+	 * @return how many keys had no (current) route, or whose provider no longer had them - so the chain was asked
+	 */
+	public long getRouteMissCount() {
+		return routeMisses.sum();
+	}
+
+	/**
+	 * @return the share of the routed lookups that were hits
+	 */
+	public double getRouteHitRate() {
+		final long hits = routeHits.sum();
+		final long total = hits + routeMisses.sum();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * @return the circuit breakers, in the same order as the providers (empty if there are none)
+	 */
+	public List<CircuitBreaker> getCircuitBreakers() {
+		return null == circuitBreakers
+			? Collections.<CircuitBreaker>emptyList()
+			: Collections.unmodifiableList(Arrays.asList(circuitBreakers));
 	}
 
 	@Override
 	public String getProperty(final String environment, final String key) {
 
-		for (final SettingProvider settingProvider : settingProviderArray) {
+		// the provider the key was routed to - if it doesn't have the key any more, it isn't asked again
+		int asked = -1;
 
-			final String value = settingProvider.getProperty(environment, key);
+		if (null != routes) {
+			final Route route = routes.get(routeKey(environment, key));
+			if (null != route && route.isFresh()) {
+				asked = route.index;
+				final SettingProvider settingProvider = settingProviderArray[route.index];
+				final String value = askRouted(
+					settingProvider,
+					route.index,
+					environment,
+					Collections.singletonList(key),
+					() -> settingProvider.getProperty(environment, key)
+				);
+				if (null != value) {
+					routeHits.increment();
+					return value;
+				}
+			}
+			if (null != route) {
+				forget(environment, key);
+			}
+			routeMisses.increment();
+		}
+
+		final int routedTo = asked;
+
+		if (null != hedgingExecutor) {
+			final List<String> answer = new ArrayList<>(1);
+			hedged(
+				environment,
+				index -> index == routedTo ? Collections.<String>emptyList() : Collections.singletonList(key),
+				index -> settingProviderArray[index].getProperty(environment, key),
+				(index, value) -> {
+					if (null == value) {
+						return false;
+					}
+					answer.add(value);
+					route(environment, key, index);
+					return true;
+				}
+			);
+			if (answer.isEmpty()) {
+				forget(environment, key);
+				return null;
+			}
+			return answer.get(0);
+		}
+
+		for (int i = 0; i < settingProviderArray.length; i++) {
+
+			if (i == routedTo) {
+				continue;
+			}
+
+			final SettingProvider settingProvider = settingProviderArray[i];
+			final String value = ask(
+				settingProvider,
+				i,
+				environment,
+				Collections.singletonList(key),
+				() -> settingProvider.getProperty(environment, key)
+			);
 
 			if (null != value) {
+				route(environment, key, i);
 				return value;
 			}
 
 		}
 
+		forget(environment, key);
 		return null;
 
 	}
 
+	/**
+	 * Asks each provider in turn for the keys that are still missing - so each provider gets (at most) one call, or two
+	 * with routing (one for the keys routed to it, then one for the keys that are still missing - less the ones it was
+	 * just asked for).
+	 */
+	@Override
+	public Map<String, String> getProperties(final String environment, final Collection<String> keys) {
+
+		final Map<String, String> values = new HashMap<>();
+		final Set<String> remaining = new LinkedHashSet<>(keys);
+		final Map<Integer, Set<String>> asked = null == routes
+			? Collections.<Integer, Set<String>>emptyMap()
+			: askRoutedProviders(environment, remaining, values);
+
+		if (remaining.isEmpty()) {
+			return values;
+		}
+
+		if (null != hedgingExecutor) {
+			final List<List<String>> requested = new ArrayList<>(settingProviderArray.length);
+			for (int i = 0; i < settingProviderArray.length; i++) {
+				requested.add(unasked(remaining, asked.get(i)));
+			}
+			hedged(
+				environment,
+				requested::get,
+				index -> settingProviderArray[index].getProperties(environment, requested.get(index)),
+				(index, found) -> {
+					if (null != found) {
+						take(environment, index, found, remaining, values);
+					}
+					return remaining.isEmpty();
+				}
+			);
+			forget(environment, remaining);
+			return values;
+		}
+
+		for (int i = 0; i < settingProviderArray.length; i++) {
+
+			if (remaining.isEmpty()) {
+				break;
+			}
+
+			final List<String> requested = unasked(remaining, asked.get(i));
+			if (requested.isEmpty()) {
+				continue;
+			}
+
+			final SettingProvider settingProvider = settingProviderArray[i];
+			final Map<String, String> found = ask(
+				settingProvider,
+				i,
+				environment,
+				requested,
+				() -> settingProvider.getProperties(environment, requested)
+			);
+			if (null != found) {
+				take(environment, i, found, remaining, values);
+			}
+
+		}
+
+		forget(environment, remaining);
+		return values;
+
+	}
+
+	// asks each routed provider (once) for the keys routed to it - the keys it answers are taken out of remaining, and
+	// the routes of the keys it doesn't are dropped; returns the keys each provider was asked for
+	private Map<Integer, Set<String>> askRoutedProviders(
+		final String environment,
+		final Set<String> remaining,
+		final Map<String, String> values
+	) {
+
+		final Map<Integer, List<String>> routed = new TreeMap<>();
+		final Map<Integer, Set<String>> asked = new HashMap<>();
+		for (final String key : remaining) {
+			final Route route = routes.get(routeKey(environment, key));
+			if (null != route && route.isFresh()) {
+				routed.computeIfAbsent(route.index, index -> new ArrayList<>()).add(key);
+				asked.computeIfAbsent(route.index, index -> new HashSet<>()).add(key);
+			} else if (null != route) {
+				forget(environment, key);
+			}
+		}
+
+		for (final Map.Entry<Integer, List<String>> entry : routed.entrySet()) {
+			final SettingProvider settingProvider = settingProviderArray[entry.getKey()];
+			final Map<String, String> found = askRouted(
+				settingProvider,
+				entry.getKey(),
+				environment,
+				entry.getValue(),
+				() -> settingProvider.getProperties(environment, entry.getValue())
+			);
+			for (final String key : entry.getValue()) {
+				final String value = null == found ? null : found.get(key);
+				if (null != value) {
+					values.put(key, value);
+					remaining.remove(key);
+					routeHits.increment();
+				} else {
+					forget(environment, key);
+				}
+			}
+		}
+
+		routeMisses.add(remaining.size());
+		return asked;
+
+	}
+
+	// the keys a provider hasn't been asked for yet
+	private static List<String> unasked(final Collection<String> keys, final Set<String> asked) {
+		final List<String> requested = new ArrayList<>(keys);
+		if (null != asked) {
+			requested.removeAll(asked);
+		}
+		return requested;
+	}
+
+	// a routed provider that doesn't have the key any more is a route miss - the whole chain is asked instead
+	private <T> T askRouted(
+		final SettingProvider settingProvider,
+		final int index,
+		final String environment,
+		final Collection<String> keys,
+		final Supplier<T> lookup
+	) {
+		try {
+			return ask(settingProvider, index, environment, keys, lookup);
+		} catch (final SettingNotFoundException e) {
+			log.debug("{} no longer has {} - asking the whole chain", settingProvider, keys);
+			return null;
+		}
+	}
+
+	private void take(
+		final String environment,
+		final int index,
+		final Map<String, String> found,
+		final Set<String> remaining,
+		final Map<String, String> values
+	) {
+		for (final Map.Entry<String, String> entry : found.entrySet()) {
+			if (null != entry.getValue() && remaining.remove(entry.getKey())) {
+				values.put(entry.getKey(), entry.getValue());
+				route(environment, entry.getKey(), index);
+			}
+		}
+	}
+
+	private void route(final String environment, final String key, final int index) {
+		if (null != routes) {
+			routes.put(routeKey(environment, key), new Route(index, System.nanoTime() + routeTtlNanos));
+		}
+	}
+
+	private void forget(final String environment, final String key) {
+		if (null != routes) {
+			routes.remove(routeKey(environment, key));
+		}
+	}
+
+	private void forget(final String environment, final Collection<String> keys) {
+		for (final String key : keys) {
+			forget(environment, key);
+		}
+	}
+
+	private static String routeKey(final String environment, final String key) {
+		return environment + "/" + key;
+	}
+
+	/**
+	 * Runs one lookup per provider with hedging, and hands the results over in provider order until the answer is
+	 * complete - then cancels the lookups that are still running.
+	 *
+	 * @param environment - the environment
+	 * @param keys        - the keys to look up from the provider at an index - a provider with none is skipped
+	 * @param lookup      - looks something up from the provider at an index
+	 * @param complete    - takes the index and the next result (null if the provider was skipped), and returns true if
+	 *                    that's enough
+	 */
+	private <T> void hedged(
+		final String environment,
+		final IntFunction<? extends Collection<String>> keys,
+		final IntFunction<T> lookup,
+		final BiPredicate<Integer, T> complete
+	) {
+
+		final BlockingQueue<Integer> finished = new LinkedBlockingQueue<>();
+		final List<FutureTask<T>> started = new ArrayList<>(settingProviderArray.length);
+		int handedOver = 0;
+		long nextStart = System.nanoTime();
+
+		try {
+			while (handedOver < settingProviderArray.length) {
+
+				// start the next provider once the delay is up - or right away if everything started so far is done
+				if (started.size() < settingProviderArray.length
+					&& (started.size() == handedOver || System.nanoTime() - nextStart >= 0)) {
+					final int index = started.size();
+					final Collection<String> requested = keys.apply(index);
+					final FutureTask<T> task = new FutureTask<T>(
+						() -> requested.isEmpty()
+							? null
+							: ask(settingProviderArray[index], index, environment, requested, () -> lookup.apply(index))
+					) {
+						@Override
+						protected void done() {
+							finished.add(index);
+						}
+					};
+					started.add(task);
+					if (requested.isEmpty()) {
+						// nothing to ask this one - it's done, and doesn't hold up the next one
+						task.run();
+						continue;
+					}
+					hedgingExecutor.execute(SettingsEvents.handOff(task));
+					nextStart = System.nanoTime() + hedgeDelayNanos;
+					continue;
+				}
+
+				// a lower priority answer has to wait until every higher priority provider is done
+				if (started.get(handedOver).isDone()) {
+					if (complete.test(handedOver, Futures.get(started.get(handedOver)))) {
+						return;
+					}
+					handedOver++;
+					continue;
+				}
+
+				if (started.size() < settingProviderArray.length) {
+					finished.poll(nextStart - System.nanoTime(), TimeUnit.NANOSECONDS);
+				} else {
+					finished.take();
+				}
+
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e.toString());
+		} finally {
+			for (int i = handedOver + 1; i < started.size(); i++) {
+				if (started.get(i).cancel(true)) {
+					log.debug("cancelled the lookup from {}", settingProviderArray[i]);
+				}
+			}
+		}
+
+	}
+
+	// null if the provider was skipped, failed, ran out of time or (with breakers) threw a not-found - each key is
+	// recorded as a JFR lookup event
+	private <T> T ask(
+		final SettingProvider settingProvider,
+		final int index,
+		final String environment,
+		final Collection<String> keys,
+		final Supplier<T> lookup
+	) {
+
+		final Map<String, SettingsEvents.Span> spans = SettingsEvents.lookups(environment, keys, settingProvider);
+
+		final CircuitBreaker breaker = null == circuitBreakers ? null : circuitBreakers[index];
+		if (null != breaker && !breaker.tryAcquire()) {
+			log.debug("skipping {} - {}", settingProvider, breaker);
+			SettingsEvents.endLookups(spans, SettingsEvents.SKIPPED);
+			return null;
+		}
+
+		try {
+			final T result = deadline.call(
+				"asking " + settingProvider,
+				lookup,
+				deadline.share(settingProviderArray.length - index)
+			);
+			if (null != breaker) {
+				breaker.onSuccess();
+			}
+			record(spans, result);
+			return result;
+		} catch (final Deadline.DeadlineExceededException e) {
+			if (null != breaker) {
+				breaker.onFailure();
+			}
+			log.warn("skipping {} - {}", settingProvider, e.getMessage());
+			SettingsEvents.endLookups(spans, SettingsEvents.SKIPPED);
+			return null;
+		} catch (final SettingNotFoundException e) {
+			// an ordinary miss - the provider answered, it just doesn't have the key
+			SettingsEvents.endLookups(spans, SettingsEvents.NOT_FOUND);
+			if (null == breaker) {
+				throw e;
+			}
+			breaker.onSuccess();
+			return null;
+		} catch (final RuntimeException e) {
+			if (null == breaker || !Thread.currentThread().isInterrupted()) {
+				SettingsEvents.endLookups(spans, SettingsEvents.FAILED);
+			} else {
+				SettingsEvents.endLookups(spans, SettingsEvents.SKIPPED);
+			}
+			if (null == breaker) {
+				throw e;
+			}
+			if (Thread.currentThread().isInterrupted()) {
+				// a hedged lookup that was cancelled - that's not the provider's fault, and if it was the probe, the
+				// next call should probe instead
+				breaker.onIgnored();
+				return null;
+			}
+			breaker.onFailure();
+			log.warn("skipping {} - {}", settingProvider, e.toString());
+			return null;
+		}
+
+	}
+
+	// a bulk lookup returns a map, a single one returns the value (or null)
+	@SuppressWarnings("unchecked")
+	private static void record(final Map<String, SettingsEvents.Span> spans, final Object result) {
+		if (result instanceof Map) {
+			SettingsEvents.endLookups(spans, (Map<String, ?>) result);
+		} else {
+			SettingsEvents.endLookups(spans, null == result ? SettingsEvents.NOT_FOUND : SettingsEvents.FOUND);
+		}
+	}
+
+	private static final class Route {
+
+		private final int index;
+		private final long expiresAt;
+
+		private Route(final int index, final long expiresAt) {
+			this.index = index;
+			this.expiresAt = expiresAt;
+		}
+
+		private boolean isFresh() {
+			return System.nanoTime() - expiresAt < 0;
+		}
+
+	}
+
 }
@@ -0,0 +1,250 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calls to something that keeps failing, and lets one call through now and then to see if it has recovered.
+ * <p>
+ * While CLOSED, the outcomes of the last {@code windowSize} calls are kept; once there have been at least
+ * {@code minimumCalls} of them and the share that failed reaches the failure rate threshold, the breaker OPENs. While
+ * open, calls are refused (a volatile read and a clock read - no lock) until the open duration has passed. Then it is
+ * HALF_OPEN: one probe call is let through - if it works the breaker closes (with an empty window), if not it opens
+ * again.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED,
+		OPEN,
+		HALF_OPEN
+	}
+
+	/**
+	 * Told about every state change - on the thread whose call caused it.
+	 */
+	public interface Listener {
+		void stateChanged(CircuitBreaker breaker, State from, State to);
+	}
+
+	public static final int DEFAULT_WINDOW_SIZE = 20;
+	public static final int DEFAULT_MINIMUM_CALLS = 10;
+	public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+	public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+
+	private final String name;
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+	private int windowSize = DEFAULT_WINDOW_SIZE;
+	private int minimumCalls = DEFAULT_MINIMUM_CALLS;
+	private double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+	private long openNanos = DEFAULT_OPEN_DURATION.toNanos();
+	private LongSupplier ticker = System::nanoTime;
+
+	private volatile State state = State.CLOSED;
+	private volatile long openedAt;
+
+	// the sliding window - a ring of outcomes, guarded by this
+	private boolean[] outcomes = new boolean[DEFAULT_WINDOW_SIZE];
+	private int next;
+	private int calls;
+	private int failures;
+	private boolean probing;
+
+	public CircuitBreaker(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param windowSize   - how many of the latest calls to count
+	 * @param minimumCalls - how many calls there must be before the failure rate counts
+	 * @return this breaker
+	 */
+	public synchronized CircuitBreaker withWindow(final int windowSize, final int minimumCalls) {
+		if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+			throw new IllegalArgumentException("invalid window: " + minimumCalls + " of " + windowSize + " calls");
+		}
+		this.windowSize = windowSize;
+		this.minimumCalls = minimumCalls;
+		resetWindow();
+		return this;
+	}
+
+	/**
+	 * @param failureRateThreshold - the share of calls (more than 0, up to 1) that must fail to open the breaker
+	 * @return this breaker
+	 */
+	public CircuitBreaker withFailureRateThreshold(final double failureRateThreshold) {
+		if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+			throw new IllegalArgumentException("failureRateThreshold must be more than 0 and at most 1, not " + failureRateThreshold);
+		}
+		this.failureRateThreshold = failureRateThreshold;
+		return this;
+	}
+
+	/**
+	 * @param openDuration - how long to refuse calls before letting a probe through
+	 * @return this breaker
+	 */
+	public CircuitBreaker withOpenDuration(final Duration openDuration) {
+		this.openNanos = openDuration.toNanos();
+		return this;
+	}
+
+	public CircuitBreaker withListener(final Listener listener) {
+		listeners.add(listener);
+		return this;
+	}
+
+	// for tests - a source of nanoseconds
+	CircuitBreaker withTicker(final LongSupplier ticker) {
+		this.ticker = ticker;
+		return this;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return the share of the calls in the window that failed
+	 */
+	public synchronized double getFailureRate() {
+		return calls == 0 ? 0 : (double) failures / calls;
+	}
+
+	/**
+	 * Asks to make a call - if this returns true, report how it went with {@link #onSuccess()} or
+	 * {@link #onFailure()}, or with {@link #onIgnored()} if the call was abandoned before it could tell.
+	 *
+	 * @return true if the call may go ahead
+	 */
+	public boolean tryAcquire() {
+		final State current = state;
+		if (current == State.CLOSED) {
+			return true;
+		}
+		if (current == State.OPEN && ticker.getAsLong() - openedAt < openNanos) {
+			return false;
+		}
+		return tryProbe();
+	}
+
+	public void onSuccess() {
+		State from = null;
+		synchronized (this) {
+			if (state == State.CLOSED) {
+				record(false);
+			} else if (state == State.HALF_OPEN) {
+				probing = false;
+				resetWindow();
+				from = transition(State.CLOSED);
+			}
+		}
+		notifyListeners(from, State.CLOSED);
+	}
+
+	public void onFailure() {
+		State from = null;
+		synchronized (this) {
+			if (state == State.CLOSED) {
+				record(true);
+				if (calls >= minimumCalls && (double) failures / calls >= failureRateThreshold) {
+					from = open();
+				}
+			} else if (state == State.HALF_OPEN) {
+				probing = false;
+				from = open();
+			}
+		}
+		notifyListeners(from, State.OPEN);
+	}
+
+	/**
+	 * For a call that was let through but didn't finish (it was cancelled, say) - it doesn't count either way, but if it
+	 * was the probe, another call may probe instead.
+	 */
+	public synchronized void onIgnored() {
+		if (state == State.HALF_OPEN) {
+			probing = false;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CircuitBreaker(" + name + ", " + state + ")";
+	}
+
+	private boolean tryProbe() {
+		State from = null;
+		final boolean permitted;
+		synchronized (this) {
+			if (state == State.OPEN && ticker.getAsLong() - openedAt >= openNanos) {
+				from = transition(State.HALF_OPEN);
+			}
+			permitted = state == State.CLOSED || (state == State.HALF_OPEN && !probing);
+			if (state == State.HALF_OPEN && permitted) {
+				probing = true;
+			}
+		}
+		notifyListeners(from, State.HALF_OPEN);
+		return permitted;
+	}
+
+	private State open() {
+		openedAt = ticker.getAsLong();
+		return transition(State.OPEN);
+	}
+
+	private State transition(final State to) {
+		final State from = state;
+		state = to;
+		log.info("circuit breaker {} went from {} to {}", name, from, to);
+		return from;
+	}
+
+	private void record(final boolean failed) {
+		if (calls == windowSize) {
+			if (outcomes[next]) {
+				failures--;
+			}
+		} else {
+			calls++;
+		}
+		outcomes[next] = failed;
+		if (failed) {
+			failures++;
+		}
+		next = (next + 1) % windowSize;
+	}
+
+	private void resetWindow() {
+		outcomes = new boolean[windowSize];
+		next = 0;
+		calls = 0;
+		failures = 0;
+	}
+
+	private void notifyListeners(final State from, final State to) {
+		if (null == from) {
+			return;
+		}
+		for (final Listener listener : listeners) {
+			try {
+				listener.stateChanged(this, from, to);
+			} catch (final RuntimeException e) {
+				log.warn("circuit breaker listener {} failed", listener, e);
+			}
+		}
+	}
+
+}
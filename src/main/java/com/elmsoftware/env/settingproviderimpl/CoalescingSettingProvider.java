@@ -0,0 +1,127 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import com.elmsoftware.env.SettingProvider;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets concurrent lookups of the same setting share one call to another provider.
+ * <p>
+ * The first thread to ask for an environment and key makes the call; threads that ask for the same thing while that
+ * call is running wait for it, and get its value - or its exception. Nothing is kept once the call is done, so this
+ * is not a cache (see {@link CachingSettingProvider} for that) - it only stops a burst of identical lookups, like
+ * several contexts merging at the same time, from turning into a burst of identical requests.
+ */
+@Slf4j
+public class CoalescingSettingProvider implements SettingProvider {
+
+	private final SettingProvider settingProvider;
+	private final ConcurrentMap<SettingKey, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+	private final LongAdder coalesced = new LongAdder();
+
+	public CoalescingSettingProvider(final SettingProvider settingProvider) {
+		this.settingProvider = settingProvider;
+	}
+
+	@Override
+	public String getProperty(final String environment, final String key) {
+
+		final SettingKey settingKey = new SettingKey(environment, key);
+		final CompletableFuture<String> lookup = new CompletableFuture<>();
+		final CompletableFuture<String> existing = inFlight.putIfAbsent(settingKey, lookup);
+		if (null != existing) {
+			coalesced.increment();
+			log.debug("waiting for the lookup of {} already in flight", key);
+			return Futures.join(existing);
+		}
+
+		try {
+			final String value = settingProvider.getProperty(environment, key);
+			lookup.complete(value);
+			return value;
+		} catch (final RuntimeException | Error e) {
+			lookup.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(settingKey, lookup);
+		}
+
+	}
+
+	/**
+	 * Waits for the keys that are already being looked up, and asks the wrapped provider for the rest in one call.
+	 */
+	@Override
+	public Map<String, String> getProperties(final String environment, final Collection<String> keys) {
+
+		final Map<String, CompletableFuture<String>> owned = new LinkedHashMap<>();
+		final Map<String, CompletableFuture<String>> joined = new HashMap<>();
+
+		for (final String key : keys) {
+			if (owned.containsKey(key) || joined.containsKey(key)) {
+				continue;
+			}
+			final SettingKey settingKey = new SettingKey(environment, key);
+			final CompletableFuture<String> lookup = new CompletableFuture<>();
+			final CompletableFuture<String> existing = inFlight.putIfAbsent(settingKey, lookup);
+			if (null == existing) {
+				owned.put(key, lookup);
+			} else {
+				coalesced.increment();
+				joined.put(key, existing);
+			}
+		}
+
+		final Map<String, String> values = new HashMap<>();
+
+		// finish our own lookups before waiting on anyone else's, so two bulk lookups can't wait on each other
+		if (!owned.isEmpty()) {
+			try {
+				final Map<String, String> found = settingProvider.getProperties(environment, owned.keySet());
+				for (final Map.Entry<String, CompletableFuture<String>> entry : owned.entrySet()) {
+					final String value = found.get(entry.getKey());
+					entry.getValue().complete(value);
+					if (null != value) {
+						values.put(entry.getKey(), value);
+					}
+				}
+			} catch (final RuntimeException | Error e) {
+				for (final CompletableFuture<String> lookup : owned.values()) {
+					lookup.completeExceptionally(e);
+				}
+				throw e;
+			} finally {
+				for (final Map.Entry<String, CompletableFuture<String>> entry : owned.entrySet()) {
+					inFlight.remove(new SettingKey(environment, entry.getKey()), entry.getValue());
+				}
+			}
+		}
+
+		for (final Map.Entry<String, CompletableFuture<String>> entry : joined.entrySet()) {
+			final String value = Futures.join(entry.getValue());
+			if (null != value) {
+				values.put(entry.getKey(), value);
+			}
+		}
+
+		return values;
+
+	}
+
+	/**
+	 * @return how many lookups waited for one that was already in flight, instead of calling the wrapped provider
+	 */
+	public long getCoalescedCount() {
+		return coalesced.sum();
+	}
+
+}
@@ -0,0 +1,141 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import com.elmsoftware.env.Deadline;
+import com.elmsoftware.env.SettingProvider;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives another provider whatever is left of a {@link Deadline}, and falls back when it runs out.
+ * <p>
+ * A key that isn't found in time gets, in order: its last-known-good value (the last value this provider returned for
+ * it, or one from the last-known-good provider), then its default. If a key has neither, the lookup fails fast with a
+ * {@link Deadline.DeadlineExceededException}. Every fallback is logged as a warning, and kept in
+ * {@link #getFallbacks()} so it can be reported.
+ * <p>
+ * The values this provider returned are only remembered in memory, by this instance - a new one (like the one made
+ * for each startup) has none, and a bulk lookup that runs out of time falls back for all of its keys at once. Use
+ * {@link #withLastKnownGood(SettingProvider)} with a persistent source (a {@link DiskCachingSettingProvider}, say) for
+ * values that survive a restart.
+ */
+@Slf4j
+public class DeadlineSettingProvider implements SettingProvider {
+
+	/**
+	 * Where a value came from when the deadline ran out.
+	 */
+	public enum Fallback {
+		LAST_KNOWN_GOOD,
+		DEFAULT
+	}
+
+	private final SettingProvider settingProvider;
+	private final Deadline deadline;
+
+	private final Map<String, String> lastKnownGood = new ConcurrentHashMap<>();
+	private final Map<String, Fallback> fallbacks = new ConcurrentHashMap<>();
+
+	private SettingProvider lastKnownGoodProvider = new NoOpSettingProvider();
+	private Map<String, String> defaults = Collections.emptyMap();
+
+	public DeadlineSettingProvider(final SettingProvider settingProvider, final Deadline deadline) {
+		this.settingProvider = settingProvider;
+		this.deadline = deadline;
+	}
+
+	/**
+	 * @param lastKnownGoodProvider - a fast, local source of earlier values (from a file written at the last good
+	 *                              startup, for example)
+	 * @return this provider
+	 */
+	public DeadlineSettingProvider withLastKnownGood(final SettingProvider lastKnownGoodProvider) {
+		this.lastKnownGoodProvider = lastKnownGoodProvider;
+		return this;
+	}
+
+	public DeadlineSettingProvider withDefaults(final Map<String, String> defaults) {
+		this.defaults = new HashMap<>(defaults);
+		return this;
+	}
+
+	public Deadline getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * @return the keys that were given a fallback value, and which one
+	 */
+	public Map<String, Fallback> getFallbacks() {
+		return Collections.unmodifiableMap(fallbacks);
+	}
+
+	@Override
+	public String getProperty(final String environment, final String key) {
+		return getProperties(environment, Collections.singletonList(key)).get(key);
+	}
+
+	@Override
+	public Map<String, String> getProperties(final String environment, final Collection<String> keys) {
+
+		try {
+			final Map<String, String> found = deadline.call(
+				"looking up " + keys,
+				() -> settingProvider.getProperties(environment, keys)
+			);
+			for (final Map.Entry<String, String> entry : found.entrySet()) {
+				lastKnownGood.put(lastKnownGoodKey(environment, entry.getKey()), entry.getValue());
+			}
+			return found;
+		} catch (final Deadline.DeadlineExceededException e) {
+			log.warn("{} - falling back for {}", e.getMessage(), keys);
+			return fallBack(environment, keys);
+		}
+
+	}
+
+	private Map<String, String> fallBack(final String environment, final Collection<String> keys) {
+
+		final Map<String, String> values = new HashMap<>();
+		final Set<String> unresolved = new LinkedHashSet<>();
+
+		for (final String key : keys) {
+			String value = lastKnownGood.get(lastKnownGoodKey(environment, key));
+			if (null == value) {
+				value = lastKnownGoodProvider.getProperty(environment, key);
+			}
+			if (null != value) {
+				log.warn("using the last-known-good value of {}", key);
+				fallbacks.put(key, Fallback.LAST_KNOWN_GOOD);
+				values.put(key, value);
+			} else if (defaults.containsKey(key)) {
+				log.warn("using the default value of {}", key);
+				fallbacks.put(key, Fallback.DEFAULT);
+				values.put(key, defaults.get(key));
+			} else {
+				unresolved.add(key);
+			}
+		}
+
+		if (!unresolved.isEmpty()) {
+			throw new Deadline.DeadlineExceededException(
+				deadline,
+				"while looking up " + unresolved + " (there is no last-known-good or default value)"
+			);
+		}
+
+		return values;
+
+	}
+
+	private static String lastKnownGoodKey(final String environment, final String key) {
+		return environment + "/" + key;
+	}
+
+}
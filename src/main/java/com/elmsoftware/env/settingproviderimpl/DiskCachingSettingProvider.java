@@ -0,0 +1,426 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import com.elmsoftware.env.SettingProvider;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the values another provider returned in an encrypted file, so later starts of the process can use them
+ * without waiting on the provider.
+ * <p>
+ * A value in the file is returned right away (if it is not older than the maximum stale age) and then checked with
+ * the wrapped provider in the background - if the provider is unavailable, the value from the file keeps being used
+ * until it gets too old. Values that are not in the file are looked up as usual, and added to it.
+ * <p>
+ * The file is encrypted with AES-GCM, which also detects a corrupt or changed file (or the wrong key) - in that case
+ * the file is ignored and rewritten. It is replaced atomically, and readable only by its owner where the filesystem
+ * supports that. It is written in the background (on the revalidation executor), so lookups don't wait for it - and
+ * values resolved while a write is waiting go out with it, so a burst of lookups at startup writes the file once or
+ * twice instead of once per lookup. Misses are not written to the file; a value the provider no longer returns when
+ * it is checked is removed, and values older than the maximum stale age are dropped when the file is written.
+ */
+@Slf4j
+public class DiskCachingSettingProvider implements SettingProvider {
+
+	public static final Duration DEFAULT_MAX_STALE_AGE = Duration.ofDays(1);
+
+	private static final int MAGIC = 0x4A454E43; // "JENC"
+	private static final short VERSION = 1;
+	private static final String CIPHER = "AES/GCM/NoPadding";
+	private static final int IV_LENGTH = 12;
+	private static final int TAG_BITS = 128;
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private final SettingProvider settingProvider;
+	private final Path file;
+	private final SecretKeySpec key;
+
+	private final ConcurrentMap<SettingKey, Entry> entries = new ConcurrentHashMap<>();
+	// keys that have been (or are being) checked with the provider since this process started
+	private final Set<SettingKey> revalidated = Collections.newSetFromMap(new ConcurrentHashMap<>());
+	private final Object writeLock = new Object();
+	// true while a write of the file is waiting to run
+	private final AtomicBoolean saveScheduled = new AtomicBoolean();
+
+	private volatile boolean loaded;
+	private long maxStaleAgeMillis = DEFAULT_MAX_STALE_AGE.toMillis();
+	private volatile Executor revalidationExecutor;
+	private LongSupplier clock = System::currentTimeMillis;
+
+	/**
+	 * @param settingProvider - the provider to cache
+	 * @param file            - where to keep the values, e.g. under /tmp
+	 * @param key             - a 16, 24 or 32 byte AES key
+	 */
+	public DiskCachingSettingProvider(final SettingProvider settingProvider, final Path file, final byte[] key) {
+		if (key.length != 16 && key.length != 24 && key.length != 32) {
+			throw new IllegalArgumentException("the key must be 16, 24 or 32 bytes, not " + key.length);
+		}
+		this.settingProvider = settingProvider;
+		this.file = file;
+		this.key = new SecretKeySpec(key, "AES");
+	}
+
+	/**
+	 * @param maxStaleAge - values in the file that were resolved longer ago than this are not used
+	 * @return this provider
+	 */
+	public DiskCachingSettingProvider withMaxStaleAge(final Duration maxStaleAge) {
+		this.maxStaleAgeMillis = maxStaleAge.toMillis();
+		return this;
+	}
+
+	/**
+	 * @param revalidationExecutor - runs the background checks and writes (a single daemon thread is used by default)
+	 * @return this provider
+	 */
+	public DiskCachingSettingProvider withRevalidationExecutor(final Executor revalidationExecutor) {
+		this.revalidationExecutor = revalidationExecutor;
+		return this;
+	}
+
+	// for tests - a source of milliseconds
+	DiskCachingSettingProvider withClock(final LongSupplier clock) {
+		this.clock = clock;
+		return this;
+	}
+
+	@Override
+	public String getProperty(final String environment, final String key) {
+
+		load();
+
+		final SettingKey settingKey = new SettingKey(environment, key);
+		final Entry cached = usable(entries.get(settingKey));
+		if (null != cached) {
+			revalidate(environment, Collections.singletonList(key));
+			return cached.value;
+		}
+
+		final String value = settingProvider.getProperty(environment, key);
+		if (null != value) {
+			revalidated.add(settingKey);
+			put(settingKey, value);
+			scheduleSave();
+		}
+		return value;
+
+	}
+
+	@Override
+	public Map<String, String> getProperties(final String environment, final Collection<String> keys) {
+
+		load();
+
+		final Map<String, String> values = new HashMap<>();
+		final List<String> cachedKeys = new ArrayList<>();
+		final List<String> uncachedKeys = new ArrayList<>();
+
+		for (final String key : keys) {
+			final Entry cached = usable(entries.get(new SettingKey(environment, key)));
+			if (null != cached) {
+				values.put(key, cached.value);
+				cachedKeys.add(key);
+			} else {
+				uncachedKeys.add(key);
+			}
+		}
+
+		if (!uncachedKeys.isEmpty()) {
+			final Map<String, String> found = settingProvider.getProperties(environment, uncachedKeys);
+			for (final Map.Entry<String, String> entry : found.entrySet()) {
+				if (null != entry.getValue()) {
+					final SettingKey settingKey = new SettingKey(environment, entry.getKey());
+					revalidated.add(settingKey);
+					put(settingKey, entry.getValue());
+					values.put(entry.getKey(), entry.getValue());
+				}
+			}
+			if (!found.isEmpty()) {
+				scheduleSave();
+			}
+		}
+
+		revalidate(environment, cachedKeys);
+		return values;
+
+	}
+
+	private Entry usable(final Entry entry) {
+		if (null == entry || clock.getAsLong() - entry.resolved > maxStaleAgeMillis) {
+			return null;
+		}
+		return entry;
+	}
+
+	private void put(final SettingKey settingKey, final String value) {
+		entries.put(settingKey, new Entry(value, clock.getAsLong()));
+	}
+
+	private void revalidate(final String environment, final List<String> keys) {
+
+		final List<String> stale = new ArrayList<>();
+		for (final String key : keys) {
+			if (revalidated.add(new SettingKey(environment, key))) {
+				stale.add(key);
+			}
+		}
+		if (stale.isEmpty()) {
+			return;
+		}
+
+		executor().execute(() -> {
+			try {
+				final Map<String, String> found = settingProvider.getProperties(environment, stale);
+				for (final String key : stale) {
+					final String value = found.get(key);
+					if (null != value) {
+						put(new SettingKey(environment, key), value);
+					} else {
+						// the provider doesn't have it any more
+						entries.remove(new SettingKey(environment, key));
+					}
+				}
+				scheduleSave();
+				log.debug("revalidated {} cached settings for environment {}", found.size(), environment);
+			} catch (final RuntimeException e) {
+				// the provider isn't available - keep using what's in the file, and try again next time
+				log.info("unable to revalidate cached settings {} for environment {}: {}", stale, environment, e.toString());
+				for (final String key : stale) {
+					revalidated.remove(new SettingKey(environment, key));
+				}
+			}
+		});
+
+	}
+
+	private Executor executor() {
+		if (null == revalidationExecutor) {
+			synchronized (this) {
+				if (null == revalidationExecutor) {
+					revalidationExecutor = Executors.newSingleThreadExecutor(runnable -> {
+						final Thread thread = new Thread(runnable, "jackson-env-disk-cache");
+						thread.setDaemon(true);
+						return thread;
+					});
+				}
+			}
+		}
+		return revalidationExecutor;
+	}
+
+	private void load() {
+
+		if (loaded) {
+			return;
+		}
+
+		synchronized (writeLock) {
+			if (loaded) {
+				return;
+			}
+			try {
+				final byte[] content = Files.readAllBytes(file);
+				final Map<SettingKey, Entry> read = decode(decrypt(content));
+				for (final Map.Entry<SettingKey, Entry> entry : read.entrySet()) {
+					entries.putIfAbsent(entry.getKey(), entry.getValue());
+				}
+				log.debug("read {} cached settings from {}", read.size(), file);
+			} catch (final NoSuchFileException e) {
+				log.debug("no cached settings at {}", file);
+			} catch (final IOException | GeneralSecurityException e) {
+				log.warn("ignoring cached settings at {} - unable to read them: {}", file, e.toString());
+			}
+			loaded = true;
+		}
+
+	}
+
+	// writes the file in the background - unless a write is already waiting, which will pick up this change too
+	private void scheduleSave() {
+		if (saveScheduled.compareAndSet(false, true)) {
+			executor().execute(() -> {
+				saveScheduled.set(false);
+				save();
+			});
+		}
+	}
+
+	private void save() {
+		synchronized (writeLock) {
+			try {
+				final long now = clock.getAsLong();
+				entries.values().removeIf(entry -> now - entry.resolved > maxStaleAgeMillis);
+				final byte[] content = encrypt(encode(entries));
+				final Path directory = file.toAbsolutePath().getParent();
+				if (null != directory) {
+					Files.createDirectories(directory);
+				}
+				final Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+				try {
+					restrictPermissions(temporary);
+					Files.write(temporary, content);
+					move(temporary);
+				} finally {
+					Files.deleteIfExists(temporary);
+				}
+			} catch (final IOException | GeneralSecurityException e) {
+				// the values are still cached in memory - the next start will just be slower
+				log.warn("unable to write cached settings to {}: {}", file, e.toString());
+			}
+		}
+	}
+
+	private void move(final Path temporary) throws IOException {
+		try {
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final AtomicMoveNotSupportedException e) {
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void restrictPermissions(final Path path) throws IOException {
+		try {
+			Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+		} catch (final UnsupportedOperationException e) {
+			// not a posix filesystem
+		}
+	}
+
+	private byte[] encrypt(final byte[] plain) throws GeneralSecurityException, IOException {
+
+		final byte[] iv = new byte[IV_LENGTH];
+		RANDOM.nextBytes(iv);
+
+		final Cipher cipher = Cipher.getInstance(CIPHER);
+		cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+		cipher.updateAAD(header());
+		final byte[] encrypted = cipher.doFinal(plain);
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(header().length + iv.length + encrypted.length);
+		bytes.write(header());
+		bytes.write(iv);
+		bytes.write(encrypted);
+		return bytes.toByteArray();
+
+	}
+
+	private byte[] decrypt(final byte[] content) throws GeneralSecurityException, IOException {
+
+		final byte[] header = header();
+		if (content.length < header.length + IV_LENGTH || !Arrays.equals(header, Arrays.copyOf(content, header.length))) {
+			throw new IOException("not a settings cache file");
+		}
+
+		final Cipher cipher = Cipher.getInstance(CIPHER);
+		cipher.init(
+			Cipher.DECRYPT_MODE,
+			key,
+			new GCMParameterSpec(TAG_BITS, content, header.length, IV_LENGTH)
+		);
+		cipher.updateAAD(header);
+		return cipher.doFinal(content, header.length + IV_LENGTH, content.length - header.length - IV_LENGTH);
+
+	}
+
+	private static byte[] header() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		return bytes.toByteArray();
+	}
+
+	private static byte[] encode(final Map<SettingKey, Entry> entries) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		final List<Map.Entry<SettingKey, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+		out.writeInt(snapshot.size());
+		for (final Map.Entry<SettingKey, Entry> entry : snapshot) {
+			writeString(out, entry.getKey().environment);
+			writeString(out, entry.getKey().key);
+			writeString(out, entry.getValue().value);
+			out.writeLong(entry.getValue().resolved);
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static Map<SettingKey, Entry> decode(final byte[] plain) throws IOException {
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(plain));
+		final int size = in.readInt();
+		final Map<SettingKey, Entry> entries = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			final SettingKey settingKey = new SettingKey(readString(in), readString(in));
+			entries.put(settingKey, new Entry(readString(in), in.readLong()));
+		}
+		return entries;
+	}
+
+	private static void writeString(final DataOutputStream out, final String value) throws IOException {
+		if (null == value) {
+			out.writeInt(-1);
+		} else {
+			final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(final DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static final class Entry {
+
+		private final String value;
+		// when the provider returned the value, in epoch millis
+		private final long resolved;
+
+		private Entry(final String value, final long resolved) {
+			this.value = value;
+			this.resolved = resolved;
+		}
+
+	}
+
+}
@@ -0,0 +1,47 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Waits for lookups that ran on another thread - and throws what they failed with, not a wrapper around it, so a
+ * caller sees the same exception as if it had made the lookup itself.
+ */
+final class Futures {
+
+	private Futures() {
+	}
+
+	static <T> T join(final CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (final CompletionException e) {
+			throw unchecked(e.getCause(), e);
+		}
+	}
+
+	static <T> T get(final Future<T> future) {
+		try {
+			return future.get();
+		} catch (final ExecutionException e) {
+			throw unchecked(e.getCause(), new RuntimeException(String.valueOf(e.getCause())));
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e.toString());
+		}
+	}
+
+	// the cause if it is unchecked (an error is thrown right here), otherwise the wrapper to throw instead
+	private static RuntimeException unchecked(final Throwable cause, final RuntimeException wrapper) {
+		if (cause instanceof RuntimeException) {
+			return (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return wrapper;
+	}
+
+}
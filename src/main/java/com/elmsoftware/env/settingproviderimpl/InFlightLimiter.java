@@ -0,0 +1,70 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Starts asynchronous calls, but never has more than a fixed number of them running - extra calls wait in a queue
+ * (without holding a thread) and are started as running calls complete.
+ */
+class InFlightLimiter {
+
+	private final Semaphore permits;
+	private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+	InFlightLimiter(final int maxInFlight) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight must be at least 1, not " + maxInFlight);
+		}
+		this.permits = new Semaphore(maxInFlight);
+	}
+
+	<T> CompletableFuture<T> submit(final Supplier<CompletableFuture<T>> call) {
+
+		final CompletableFuture<T> result = new CompletableFuture<>();
+
+		waiting.add(() -> {
+			final CompletableFuture<T> started;
+			try {
+				started = call.get();
+			} catch (final RuntimeException e) {
+				release();
+				result.completeExceptionally(e);
+				return;
+			}
+			started.whenComplete((value, throwable) -> {
+				release();
+				if (null != throwable) {
+					result.completeExceptionally(throwable);
+				} else {
+					result.complete(value);
+				}
+			});
+		});
+
+		drain();
+		return result;
+
+	}
+
+	private void release() {
+		permits.release();
+		drain();
+	}
+
+	private void drain() {
+		// checking the queue after taking a permit (and after giving one back) means a call is never left waiting
+		while (!waiting.isEmpty() && permits.tryAcquire()) {
+			final Runnable next = waiting.poll();
+			if (null == next) {
+				permits.release();
+			} else {
+				next.run();
+			}
+		}
+	}
+
+}
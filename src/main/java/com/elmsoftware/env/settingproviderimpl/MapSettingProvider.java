@@ -2,6 +2,7 @@ package com.elmsoftware.env.settingproviderimpl;
 
 import com.elmsoftware.env.SettingProvider;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -26,4 +27,16 @@ public class MapSettingProvider implements SettingProvider {
 		return properties.get(key);
 	}
 
+	@Override
+	public Map<String, String> getProperties(final String environment, final Collection<String> keys) {
+		final Map<String, String> values = new HashMap<>();
+		for (final String key : keys) {
+			final String value = properties.get(key);
+			if (null != value) {
+				values.put(key, value);
+			}
+		}
+		return values;
+	}
+
 }
@@ -2,6 +2,10 @@ package com.elmsoftware.env.settingproviderimpl;
 
 import com.elmsoftware.env.SettingProvider;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
 public class NoOpSettingProvider implements SettingProvider {
 
 	@Override
@@ -9,4 +13,9 @@ public class NoOpSettingProvider implements SettingProvider {
 		return null;
 	}
 
+	@Override
+	public Map<String, String> getProperties(final String environment, final Collection<String> keys) {
+		return Collections.emptyMap();
+	}
+
 }
@@ -0,0 +1,129 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import com.elmsoftware.env.SettingProvider;
+import com.elmsoftware.env.SettingsEvents;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Looks up each key of a bulk lookup with its own {@code getProperty} call, all at once on an executor - for providers
+ * that can only look up one key at a time, so a merge waits for the slowest key instead of the sum of all of them.
+ * <p>
+ * With a deadline, keys that have not been found when it passes are left out (so a merge reports them as missing).
+ * If a lookup fails, the failure of the first such key (in the order the keys were given) is thrown - the same one a
+ * one-at-a-time lookup would have thrown.
+ */
+@Slf4j
+public class ParallelSettingProvider implements SettingProvider {
+
+	private final SettingProvider settingProvider;
+	private final Executor executor;
+	private final Duration deadline;
+
+	public ParallelSettingProvider(final SettingProvider settingProvider, final Executor executor) {
+		this(settingProvider, executor, null);
+	}
+
+	/**
+	 * @param settingProvider - looks up each key
+	 * @param executor        - runs the lookups
+	 * @param deadline        - how long a bulk lookup may take, overall (null to wait as long as it takes)
+	 */
+	public ParallelSettingProvider(final SettingProvider settingProvider, final Executor executor, final Duration deadline) {
+		this.settingProvider = settingProvider;
+		this.executor = executor;
+		this.deadline = deadline;
+	}
+
+	/**
+	 * @return an executor that starts a virtual thread per lookup on JDK 21 and later, or a daemon thread per lookup
+	 * (reused while there are lookups to do) before that - shut it down when the merge is done
+	 */
+	public static ExecutorService newDefaultExecutor() {
+		try {
+			final Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) virtual.invoke(null);
+		} catch (final ReflectiveOperationException e) {
+			log.debug("virtual threads are not available - using platform threads");
+		}
+		return Executors.newCachedThreadPool(runnable -> {
+			final Thread thread = new Thread(runnable, "jackson-env-resolver");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public String getProperty(final String environment, final String key) {
+		return settingProvider.getProperty(environment, key);
+	}
+
+	@Override
+	public Map<String, String> getProperties(final String environment, final Collection<String> keys) {
+
+		final Map<String, CompletableFuture<String>> lookups = new LinkedHashMap<>();
+		for (final String key : keys) {
+			if (!lookups.containsKey(key)) {
+				lookups.put(key, CompletableFuture.supplyAsync(
+					SettingsEvents.handOff(() -> settingProvider.getProperty(environment, key)),
+					executor
+				));
+			}
+		}
+
+		await(new ArrayList<>(lookups.values()));
+
+		final Map<String, String> values = new HashMap<>();
+		final List<String> timedOut = new ArrayList<>();
+		for (final Map.Entry<String, CompletableFuture<String>> lookup : lookups.entrySet()) {
+			if (!lookup.getValue().isDone()) {
+				lookup.getValue().cancel(false);
+				timedOut.add(lookup.getKey());
+				continue;
+			}
+			final String value = Futures.join(lookup.getValue());
+			if (null != value) {
+				values.put(lookup.getKey(), value);
+			}
+		}
+
+		if (!timedOut.isEmpty()) {
+			log.warn("gave up looking for {} after {}", timedOut, deadline);
+		}
+
+		return values;
+
+	}
+
+	private void await(final List<CompletableFuture<String>> lookups) {
+		final CompletableFuture<Void> all = CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0]));
+		try {
+			if (null == deadline) {
+				all.get();
+			} else {
+				all.get(deadline.toNanos(), TimeUnit.NANOSECONDS);
+			}
+		} catch (final ExecutionException | TimeoutException e) {
+			// each lookup is checked on its own
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e.toString());
+		}
+	}
+
+}
@@ -1,8 +1,11 @@
 package com.elmsoftware.env.settingproviderimpl;
 
-import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.function.Consumer;
 
 @Slf4j
@@ -10,16 +13,59 @@ public class ProviderExceptionHandler implements Consumer<ProviderExceptionHandl
 
 	@Override
 	public void accept(final ExceptionInfo info) {
-		// this can fail - we want to deal with that gracefully...
-		log.info("unable to find parameter {}", info.name);
-		// ...but provide SOME idea what happened for debugging
-		log.debug(info.toString(), info);
+		if (info.throttled) {
+			// the parameter may well be there - we just weren't allowed to ask
+			if (log.isWarnEnabled()) {
+				log.warn("throttled looking for parameter {}", info.getName());
+			}
+		} else if (log.isInfoEnabled()) {
+			// this can fail - we want to deal with that gracefully...
+			log.info("unable to find parameter {}", info.getName());
+		}
+		// ...but provide SOME idea what happened for debugging (only formatted if anyone will see it)
+		if (log.isDebugEnabled()) {
+			log.debug(info.toString(), info.exception);
+		}
 	}
 
-	@Data
+	/**
+	 * What went wrong looking for some parameters - the names are only joined, and the exception only formatted, if
+	 * someone asks.
+	 */
+	@Getter
+	@EqualsAndHashCode
 	public static class ExceptionInfo {
-		private final String name;
+
+		private final Collection<String> names;
 		private final Exception exception;
+		// true if the provider's store throttled the request (and retrying didn't help), rather than failing it
+		private final boolean throttled;
+
+		public ExceptionInfo(final String name, final Exception exception) {
+			this(name, exception, false);
+		}
+
+		public ExceptionInfo(final String name, final Exception exception, final boolean throttled) {
+			this(Collections.singletonList(name), exception, throttled);
+		}
+
+		public ExceptionInfo(final Collection<String> names, final Exception exception, final boolean throttled) {
+			this.names = names;
+			this.exception = exception;
+			this.throttled = throttled;
+		}
+
+		public String getName() {
+			return String.join(", ", names);
+		}
+
+		@Override
+		public String toString() {
+			return "ProviderExceptionHandler.ExceptionInfo(name=" + getName()
+				+ ", exception=" + exception
+				+ ", throttled=" + throttled + ")";
+		}
+
 	}
 
 }
@@ -0,0 +1,42 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import java.util.Objects;
+
+/**
+ * A setting of an environment - what the caching and coalescing providers key their entries by.
+ */
+final class SettingKey {
+
+	final String environment;
+	final String key;
+	private final int hash;
+
+	SettingKey(final String environment, final String key) {
+		this.environment = environment;
+		this.key = key;
+		this.hash = 31 * Objects.hashCode(environment) + Objects.hashCode(key);
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof SettingKey)) {
+			return false;
+		}
+		final SettingKey other = (SettingKey) o;
+		return Objects.equals(environment, other.environment) && Objects.equals(key, other.key);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return environment + "/" + key;
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+/**
+ * Thrown when a provider doesn't have a setting. A miss is an expected outcome (a chain of providers misses all the
+ * time), so this has no stack trace, and the message is only built if someone asks for it.
+ */
+public class SettingNotFoundException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String pattern;
+
+	/**
+	 * @param pattern - the (most specific) name that was looked for
+	 */
+	public SettingNotFoundException(final String pattern) {
+		super(null, null, false, false);
+		this.pattern = pattern;
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	@Override
+	public String getMessage() {
+		return "unable to find parameter using pattern " + pattern;
+	}
+
+}
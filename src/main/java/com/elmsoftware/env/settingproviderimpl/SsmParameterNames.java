@@ -0,0 +1,183 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * The parameter names the SSM providers look for, and how they are packed into GetParameters requests.
+ */
+final class SsmParameterNames {
+
+	// the most names a single GetParameters request accepts
+	static final int MAX_NAMES_PER_REQUEST = 10;
+
+	private SsmParameterNames() {
+		// static methods only
+	}
+
+	/**
+	 * @return the names to look for, most specific first: /{env}/{prefix}/{key}, /{env}/{key} and /global/{key}
+	 */
+	static List<String> candidates(final String environment, final String prefix, final String key) {
+		return Arrays.asList(
+			buildName(environment, prefix, key),
+			buildName(environment, key),
+			buildName("global", key)
+		);
+	}
+
+	/**
+	 * A GetParametersByPath scan that prefetch mode makes.
+	 */
+	static final class PathScan {
+
+		final String path;
+		final boolean recursive;
+
+		private PathScan(final String path, final boolean recursive) {
+			this.path = path;
+			this.recursive = recursive;
+		}
+
+	}
+
+	/**
+	 * @return the hierarchies prefetch mode reads: all of /{env}/{prefix}, and the parameters directly under /{env}
+	 * and /global - reading those two recursively would read /{env}/{prefix} twice, and every other service's
+	 * parameters too
+	 */
+	static List<PathScan> paths(final String environment, final String prefix) {
+		return Arrays.asList(
+			new PathScan(buildName(environment, prefix), true),
+			new PathScan(buildName(environment), false),
+			new PathScan(buildName("global"), false)
+		);
+	}
+
+	/**
+	 * Finds parameters in the prefetched index of the environment - scanning the paths for it first, if there isn't
+	 * one yet. The scan runs outside of the index map, so a slow one doesn't hold up other environments; if two
+	 * threads scan at once, the first index stored wins. Names the scans don't cover (a key with a slash in it, under
+	 * /{env} or /global) are looked up directly.
+	 *
+	 * @param indexes     - the prefetched indexes, by environment
+	 * @param environment - the environment
+	 * @param prefix      - the service prefix
+	 * @param names       - the names to look for
+	 * @param scan        - reads the paths of an environment into an index, by name - null if one could not be read
+	 * @param lookup      - looks up names directly
+	 * @return the index (with any names it doesn't cover added), or what the lookup found if there is no index
+	 */
+	static <P> Map<String, P> prefetched(
+		final ConcurrentMap<String, Map<String, P>> indexes,
+		final String environment,
+		final String prefix,
+		final Collection<String> names,
+		final Function<String, Map<String, P>> scan,
+		final Function<Collection<String>, Map<String, P>> lookup
+	) {
+
+		Map<String, P> index = indexes.get(environment);
+		if (null == index) {
+			final Map<String, P> scanned = scan.apply(environment);
+			if (null == scanned) {
+				// try the scan again next time
+				return lookup.apply(names);
+			}
+			final Map<String, P> raced = indexes.putIfAbsent(environment, scanned);
+			index = null == raced ? scanned : raced;
+		}
+
+		final List<String> uncovered = new ArrayList<>();
+		for (final String name : names) {
+			if (!isScanned(environment, prefix, name)) {
+				uncovered.add(name);
+			}
+		}
+		if (uncovered.isEmpty()) {
+			return index;
+		}
+		final Map<String, P> found = new HashMap<>(index);
+		found.putAll(lookup.apply(uncovered));
+		return found;
+
+	}
+
+	/**
+	 * Adds parameters that were looked up directly to the prefetched index of the environment, if there is one.
+	 */
+	static <P> void updatePrefetched(
+		final ConcurrentMap<String, Map<String, P>> indexes,
+		final String environment,
+		final Map<String, P> found
+	) {
+		if (!found.isEmpty()) {
+			indexes.computeIfPresent(environment, (ignored, index) -> {
+				final Map<String, P> updated = new HashMap<>(index);
+				updated.putAll(found);
+				return updated;
+			});
+		}
+	}
+
+	// true if one of the prefetch scans reads the name
+	private static boolean isScanned(final String environment, final String prefix, final String name) {
+		for (final PathScan scan : paths(environment, prefix)) {
+			if (name.startsWith(scan.path + "/")
+				&& (scan.recursive || name.indexOf('/', scan.path.length() + 1) < 0)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Splits the distinct names into requests of up to {@link #MAX_NAMES_PER_REQUEST} names each.
+	 */
+	static List<List<String>> requests(final Collection<String> names) {
+		final List<List<String>> requests = new ArrayList<>();
+		List<String> request = null;
+		for (final String name : new LinkedHashSet<>(names)) {
+			if (null == request || request.size() == MAX_NAMES_PER_REQUEST) {
+				request = new ArrayList<>(MAX_NAMES_PER_REQUEST);
+				requests.add(request);
+			}
+			request.add(name);
+		}
+		return requests;
+	}
+
+	/**
+	 * @return the value of the first (most specific) candidate that was found, or null if none were
+	 */
+	static <T> T mostSpecific(final List<String> candidates, final Map<String, T> found) {
+		for (final String candidate : candidates) {
+			final T value = found.get(candidate);
+			if (null != value) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+	static Set<String> allCandidates(final String environment, final String prefix, final Collection<String> keys) {
+		final Set<String> names = new LinkedHashSet<>();
+		for (final String key : keys) {
+			names.addAll(candidates(environment, prefix, key));
+		}
+		return names;
+	}
+
+	private static String buildName(final String... part) {
+		return "/" + String.join("/", part).toLowerCase();
+	}
+
+}
@@ -0,0 +1,234 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Paces SSM requests and retries the ones that are throttled - so a fleet that boots at once backs off instead of
+ * turning every throttled request into a missing setting.
+ * <p>
+ * Requests take a token from a bucket that refills at an adaptive rate: each throttled response halves the rate (down
+ * to the minimum), and each successful one adds a little back (up to the maximum). A throttled request is retried
+ * after a decorrelated-jitter backoff - a random delay between the base delay and three times the last delay, capped
+ * at the maximum - until it has been tried the maximum number of times. Any other exception is not retried.
+ * <p>
+ * The SSM providers share {@link #shared()} by default, so every provider in the JVM is paced together - it can be
+ * reconfigured while requests are running.
+ * <p>
+ * These retries are on top of the SDK's own retry policy, which also retries throttled requests - so with the SDK
+ * defaults, each of these attempts may be several requests. To leave the retrying to this class, build the client
+ * without SDK retries: {@code ClientOverrideConfiguration.builder().retryPolicy(RetryPolicy.none())} for the v2 SDK,
+ * or {@code new ClientConfiguration().withRetryPolicy(PredefinedRetryPolicies.NO_RETRY_POLICY)} for v1.
+ */
+@Slf4j
+public class SsmThrottling {
+
+	// the default GetParameters quota is 40 requests per second, per account and region
+	public static final double DEFAULT_MAX_RATE = 40;
+	public static final double DEFAULT_MIN_RATE = 1;
+	public static final int DEFAULT_MAX_ATTEMPTS = 6;
+	public static final Duration DEFAULT_BASE_DELAY = Duration.ofMillis(50);
+	public static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(5);
+
+	private static final SsmThrottling SHARED = new SsmThrottling();
+
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final LongAdder throttled = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder waitNanos = new LongAdder();
+
+	// guarded by this
+	private double maxRate = DEFAULT_MAX_RATE;
+	private double minRate = DEFAULT_MIN_RATE;
+
+	// set under this, but read without it
+	private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	private volatile long baseDelayNanos = DEFAULT_BASE_DELAY.toNanos();
+	private volatile long maxDelayNanos = DEFAULT_MAX_DELAY.toNanos();
+
+	// the token bucket - guarded by this
+	private double rate = DEFAULT_MAX_RATE;
+	private double tokens = 1;
+	private long refilled = System.nanoTime();
+
+	/**
+	 * @return the instance the SSM providers use unless they are given another one
+	 */
+	public static SsmThrottling shared() {
+		return SHARED;
+	}
+
+	/**
+	 * @param maxRate - the most requests per second to send (also where the rate starts)
+	 * @return this
+	 */
+	public synchronized SsmThrottling withMaxRate(final double maxRate) {
+		if (maxRate <= 0) {
+			throw new IllegalArgumentException("maxRate must be more than 0, not " + maxRate);
+		}
+		this.maxRate = maxRate;
+		this.rate = maxRate;
+		this.minRate = Math.min(minRate, maxRate);
+		return this;
+	}
+
+	/**
+	 * @param minRate - the fewest requests per second to slow down to, however much SSM throttles
+	 * @return this
+	 */
+	public synchronized SsmThrottling withMinRate(final double minRate) {
+		if (minRate <= 0 || minRate > maxRate) {
+			throw new IllegalArgumentException("minRate must be more than 0 and at most " + maxRate + ", not " + minRate);
+		}
+		this.minRate = minRate;
+		return this;
+	}
+
+	/**
+	 * @param maxAttempts - how many times to send a request that keeps getting throttled (1 to not retry) - the SDK's
+	 *                    own retries happen within each attempt
+	 * @return this
+	 */
+	public synchronized SsmThrottling withMaxAttempts(final int maxAttempts) {
+		if (maxAttempts < 1) {
+			throw new IllegalArgumentException("maxAttempts must be at least 1, not " + maxAttempts);
+		}
+		this.maxAttempts = maxAttempts;
+		return this;
+	}
+
+	/**
+	 * @param baseDelay - the shortest wait before a retry
+	 * @param maxDelay  - the longest wait before a retry
+	 * @return this
+	 */
+	public synchronized SsmThrottling withBackoff(final Duration baseDelay, final Duration maxDelay) {
+		if (baseDelay.isNegative() || maxDelay.compareTo(baseDelay) < 0) {
+			throw new IllegalArgumentException("invalid backoff: " + baseDelay + " to " + maxDelay);
+		}
+		this.baseDelayNanos = baseDelay.toNanos();
+		this.maxDelayNanos = maxDelay.toNanos();
+		return this;
+	}
+
+	/**
+	 * Sends a request when the bucket allows it, and retries it while it is throttled.
+	 *
+	 * @param name        - what is being requested, for logging
+	 * @param request     - sends the request
+	 * @param isThrottled - true for an exception that means the request was throttled
+	 * @return the response
+	 */
+	public <T> T call(final String name, final Supplier<T> request, final Predicate<Exception> isThrottled) {
+
+		final int maxAttempts = this.maxAttempts;
+		long delay = baseDelayNanos;
+		for (int attempt = 1; ; attempt++) {
+
+			pause(acquire());
+
+			try {
+				final T response = request.get();
+				succeeded();
+				return response;
+			} catch (final RuntimeException e) {
+				if (!isThrottled.test(e)) {
+					throw e;
+				}
+				throttled();
+				if (attempt >= maxAttempts) {
+					log.warn("still throttled after {} attempts looking for {}", attempt, name);
+					throw e;
+				}
+				delay = nextDelay(delay);
+				log.debug("throttled looking for {} - retrying in {}ms", name, TimeUnit.NANOSECONDS.toMillis(delay));
+				retries.increment();
+				pause(delay);
+			}
+
+		}
+
+	}
+
+	/**
+	 * @return how many responses were throttled
+	 */
+	public long getThrottledCount() {
+		return throttled.sum();
+	}
+
+	/**
+	 * @return how many requests were sent again after being throttled
+	 */
+	public long getRetryCount() {
+		return retries.sum();
+	}
+
+	/**
+	 * @return the total time requests have waited - for a token, or to retry
+	 */
+	public Duration getWaitTime() {
+		return Duration.ofNanos(waitNanos.sum());
+	}
+
+	/**
+	 * @return the current requests per second
+	 */
+	public synchronized double getRate() {
+		return rate;
+	}
+
+	// decorrelated jitter: a random delay between the base and three times the last one
+	long nextDelay(final long previous) {
+		final long baseDelayNanos = this.baseDelayNanos;
+		final long upper = Math.min(maxDelayNanos, Math.max(baseDelayNanos, previous) * 3);
+		return upper <= baseDelayNanos ? baseDelayNanos : ThreadLocalRandom.current().nextLong(baseDelayNanos, upper + 1);
+	}
+
+	// takes a token - possibly one that hasn't been refilled yet - and returns how long to wait for it
+	private synchronized long acquire() {
+		refill();
+		tokens -= 1;
+		return tokens >= 0 ? 0 : (long) (-tokens / rate * NANOS_PER_SECOND);
+	}
+
+	private synchronized void succeeded() {
+		refill();
+		rate = Math.min(maxRate, rate + 1);
+	}
+
+	private synchronized void throttled() {
+		throttled.increment();
+		refill();
+		rate = Math.max(minRate, rate / 2);
+		// don't let a burst that was saved up at the old rate go out now
+		tokens = Math.min(tokens, 0);
+	}
+
+	private void refill() {
+		final long now = System.nanoTime();
+		tokens = Math.min(Math.max(1, rate), tokens + (now - refilled) * rate / NANOS_PER_SECOND);
+		refilled = now;
+	}
+
+	private void pause(final long nanos) {
+		if (nanos <= 0) {
+			return;
+		}
+		waitNanos.add(nanos);
+		try {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e.toString());
+		}
+	}
+
+}
@@ -1,23 +1,39 @@
 package com.elmsoftware.env;
 
+import com.elmsoftware.env.settingproviderimpl.ChainingSettingProvider;
+import com.elmsoftware.env.settingproviderimpl.MapSettingProvider;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 import org.mockito.stubbing.Answer;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.MutablePropertySources;
 import org.springframework.core.env.PropertySource;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 public class EnvironmentSettingsConfigTest {
 
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
 	@Mock
 	private SettingProvider provider;
 	@Mock
@@ -92,10 +108,108 @@ public class EnvironmentSettingsConfigTest {
 		verify(configurableEnvironment).getPropertySources();
 		verifyNoMoreInteractions(util, provider, configurableEnvironment);
 
-		// assert results
-		final PropertySource<Properties> propertySource = (PropertySource<Properties>) propertySources.get("environment-test.json/LOCAL");
-		final Properties source = propertySource.getSource();
+		// assert results - without a post processor, spring reads the merged settings directly
+		final PropertySource<Map<String, Object>> propertySource = (PropertySource<Map<String, Object>>) propertySources.get("environment-test.json/LOCAL");
+		final Map<String, Object> source = propertySource.getSource();
 		assertEquals(7, source.size());
+		assertEquals("123", propertySource.getProperty("an.integer"));
+
+	}
+
+	@Test
+	public void should_bound_resolution_with_the_deadline() {
+
+		// setup - post processing hangs
+		System.setProperty("environment.json", "environment-test.json");
+		System.setProperty(EnvironmentSettingsConfig.DEADLINE_PROPERTY, "PT0.3S");
+		when(util.determineEnvironment(EnvironmentSettings.ENV_VAR)).thenReturn("PROD");
+		when(settingPostProcessor.process(any())).thenAnswer((Answer<Properties>) invocation -> {
+			Thread.sleep(10_000);
+			return invocation.getArgumentAt(0, Properties.class);
+		});
+
+		// run test
+		final long start = System.currentTimeMillis();
+		try {
+			config.environmentSettings(Optional.of(util), Optional.of(provider), Optional.of(settingPostProcessor));
+			fail("post processing took too long - this should have failed");
+		} catch (final Deadline.DeadlineExceededException e) {
+
+			// assert results
+			assertEquals("The PT0.3S budget for resolving settings ran out while post-processing settings", e.getMessage());
+			assertTrue(System.currentTimeMillis() - start < 2000);
+			assertEquals(0, propertySources.size());
+
+		} finally {
+			System.clearProperty(EnvironmentSettingsConfig.DEADLINE_PROPERTY);
+		}
+
+	}
+
+	@Test
+	public void should_leave_the_chain_usable_after_the_deadline() throws InterruptedException {
+
+		// setup
+		System.setProperty("environment.json", "environment-test.json");
+		System.setProperty(EnvironmentSettingsConfig.DEADLINE_PROPERTY, "PT0.2S");
+		when(util.determineEnvironment(EnvironmentSettings.ENV_VAR)).thenReturn("PROD");
+		final ChainingSettingProvider chain = new ChainingSettingProvider(
+			new MapSettingProvider(Collections.singletonMap("later.key", "later.value"))
+		).withCircuitBreakers();
+		final Deadline before = chain.getDeadline();
+
+		// run test
+		try {
+			config.environmentSettings(Optional.of(util), Optional.<SettingProvider>of(chain), Optional.empty());
+		} finally {
+			System.clearProperty(EnvironmentSettingsConfig.DEADLINE_PROPERTY);
+		}
+		// and wait for the deadline to pass
+		Thread.sleep(300);
+
+		// assert results
+		assertSame(before, chain.getDeadline());
+		assertEquals("later.value", chain.getProperty("PROD", "later.key"));
+		assertEquals(
+			Collections.singletonMap("later.key", "later.value"),
+			chain.getProperties("PROD", Collections.singletonList("later.key"))
+		);
+
+	}
+
+	@Test
+	public void should_not_change_the_chain_while_resolving() throws IOException {
+
+		// setup - the chain's provider notes the chain's deadline when it is asked
+		final File json = folder.newFile("deadline-test.json");
+		Files.write(
+			json.toPath(),
+			"{\"requiredSettings\": [\"provided.key\"]}".getBytes(StandardCharsets.UTF_8)
+		);
+		System.setProperty("environment.json", json.getAbsolutePath());
+		System.setProperty(EnvironmentSettingsConfig.DEADLINE_PROPERTY, "PT5S");
+		when(util.determineEnvironment(EnvironmentSettings.ENV_VAR)).thenReturn("PROD");
+		final ChainingSettingProvider chain = new ChainingSettingProvider(provider);
+		final Deadline before = chain.getDeadline();
+		final AtomicReference<Deadline> during = new AtomicReference<>();
+		when(provider.getProperties(eq("PROD"), anyCollectionOf(String.class))).thenAnswer(invocation -> {
+			during.set(chain.getDeadline());
+			return Collections.singletonMap("provided.key", "provided.value");
+		});
+
+		// run test
+		try {
+			config.environmentSettings(Optional.of(util), Optional.<SettingProvider>of(chain), Optional.empty());
+		} finally {
+			System.clearProperty(EnvironmentSettingsConfig.DEADLINE_PROPERTY);
+		}
+
+		// verify mocks / capture values
+		verify(provider).getProperties(eq("PROD"), anyCollectionOf(String.class));
+
+		// assert results - the startup budget was shared out through a copy of the chain
+		assertSame(before, during.get());
+		assertEquals("provided.value", propertySources.get(json.getAbsolutePath() + "/PROD").getProperty("provided.key"));
 
 	}
 
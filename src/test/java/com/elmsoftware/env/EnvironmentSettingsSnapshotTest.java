@@ -0,0 +1,187 @@
+package com.elmsoftware.env;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class EnvironmentSettingsSnapshotTest {
+
+	private EnvironmentSettings source;
+	private byte[] json;
+	private File classpathSnapshot;
+	private File classpathJson;
+
+	@Before
+	public void beforeEnvironmentSettingsSnapshotTest() throws Exception {
+		json = readResource("environment-test.json");
+		source = EnvironmentSettings.load(new ByteArrayInputStream(json));
+	}
+
+	@After
+	public void afterEnvironmentSettingsSnapshotTest() {
+		if (null != classpathSnapshot) {
+			assertTrue(classpathSnapshot.delete());
+		}
+		if (null != classpathJson) {
+			assertTrue(classpathJson.delete());
+		}
+	}
+
+	@Test
+	public void should_round_trip_all_settings() throws IOException {
+
+		// setup test
+		final byte[] snapshot = write(source);
+
+		// run test
+		final EnvironmentSettings settings = EnvironmentSettingsSnapshot.read(new ByteArrayInputStream(snapshot));
+
+		// verify outcome
+		assertEquals(source.getGlobalSettings(), settings.getGlobalSettings());
+		assertEquals(source.getEnvironmentSettings(), settings.getEnvironmentSettings());
+		assertEquals(source.getRequiredSettings(), settings.getRequiredSettings());
+		assertEquals(source.getSensitiveSettings(), settings.getSensitiveSettings());
+		assertEquals(source.getAliases(), settings.getAliases());
+		assertEquals(source.merge("LOCAL"), settings.merge("LOCAL"));
+
+	}
+
+	@Test
+	public void should_skip_other_environments() throws IOException {
+
+		// setup test
+		final byte[] snapshot = write(source);
+
+		// run test
+		final EnvironmentSettings settings = EnvironmentSettingsSnapshot.read(new ByteArrayInputStream(snapshot), "LOCAL");
+
+		// verify outcome
+		assertEquals(1, settings.getEnvironmentSettings().size());
+		assertEquals(source.getEnvironmentSettings().get("LOCAL"), settings.getEnvironmentSettings().get("LOCAL"));
+		assertEquals(source.getAliases(), settings.getAliases());
+
+	}
+
+	@Test
+	public void should_know_if_snapshot_is_current() throws IOException {
+
+		// setup test
+		final byte[] snapshot = write(source);
+		final byte[] changed = (new String(json, StandardCharsets.UTF_8) + " ").getBytes(StandardCharsets.UTF_8);
+
+		// run test and verify outcome
+		assertTrue(EnvironmentSettingsSnapshot.isCurrent(new ByteArrayInputStream(snapshot), json));
+		assertFalse(EnvironmentSettingsSnapshot.isCurrent(new ByteArrayInputStream(snapshot), changed));
+
+	}
+
+	@Test(expected = IOException.class)
+	public void should_reject_something_that_is_not_a_snapshot() throws IOException {
+		EnvironmentSettingsSnapshot.read(new ByteArrayInputStream(json));
+	}
+
+	@Test
+	public void should_prefer_snapshot_on_classpath() throws Exception {
+
+		// setup test - there is no json file with this name, just the snapshot
+		final String resourceName = UUID.randomUUID() + ".json";
+		final File classpathRoot = new File(getClass().getClassLoader().getResource("environment-test.json").toURI())
+			.getParentFile();
+		classpathSnapshot = new File(classpathRoot, EnvironmentSettingsSnapshot.snapshotName(resourceName));
+		try (final OutputStream out = new FileOutputStream(classpathSnapshot)) {
+			out.write(write(source));
+		}
+
+		// run test
+		final EnvironmentSettings settings = EnvironmentSettings.load(resourceName);
+		final EnvironmentSettings selective = EnvironmentSettings.load(resourceName, "PROD");
+
+		// verify outcome
+		assertNotNull(settings);
+		assertEquals(source.merge("PROD"), settings.merge("PROD"));
+		assertEquals(1, selective.getEnvironmentSettings().size());
+		assertEquals(source.merge("PROD"), selective.merge("PROD"));
+
+	}
+
+	@Test
+	public void should_use_snapshot_made_from_the_json_on_classpath() throws Exception {
+
+		// setup test - the snapshot has a different PROD value, but says it was made from this json
+		final String resourceName = UUID.randomUUID() + ".json";
+		final EnvironmentSettings changed = EnvironmentSettings.load(new ByteArrayInputStream(json));
+		changed.getEnvironmentSettings().get("PROD").put("env.key", "from.snapshot");
+		writeToClasspath(resourceName, json, write(changed));
+
+		// run test
+		final EnvironmentSettings settings = EnvironmentSettings.load(resourceName);
+
+		// verify outcome
+		assertEquals("from.snapshot", settings.merge("PROD").get("env.key"));
+
+	}
+
+	@Test
+	public void should_ignore_stale_snapshot_on_classpath() throws Exception {
+
+		// setup test - the json has changed since the snapshot was made
+		final String resourceName = UUID.randomUUID() + ".json";
+		final byte[] newJson = new String(json, StandardCharsets.UTF_8)
+			.replace("env.prod.value", "env.prod.new.value")
+			.getBytes(StandardCharsets.UTF_8);
+		writeToClasspath(resourceName, newJson, write(source));
+
+		// run test
+		final EnvironmentSettings settings = EnvironmentSettings.load(resourceName);
+		final EnvironmentSettings selective = EnvironmentSettings.load(resourceName, "PROD");
+
+		// verify outcome
+		assertEquals("env.prod.new.value", settings.merge("PROD").get("env.key"));
+		assertEquals("env.prod.new.value", selective.merge("PROD").get("env.key"));
+
+	}
+
+	private void writeToClasspath(final String resourceName, final byte[] content, final byte[] snapshot) throws Exception {
+		final File classpathRoot = new File(getClass().getClassLoader().getResource("environment-test.json").toURI())
+			.getParentFile();
+		classpathJson = new File(classpathRoot, resourceName);
+		try (final OutputStream out = new FileOutputStream(classpathJson)) {
+			out.write(content);
+		}
+		classpathSnapshot = new File(classpathRoot, EnvironmentSettingsSnapshot.snapshotName(resourceName));
+		try (final OutputStream out = new FileOutputStream(classpathSnapshot)) {
+			out.write(snapshot);
+		}
+	}
+
+	private byte[] write(final EnvironmentSettings settings) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EnvironmentSettingsSnapshot.write(settings, EnvironmentSettingsSnapshot.hash(json), out);
+		return out.toByteArray();
+	}
+
+	private byte[] readResource(final String name) throws IOException {
+		try (final InputStream in = getClass().getClassLoader().getResourceAsStream(name)) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+
+}
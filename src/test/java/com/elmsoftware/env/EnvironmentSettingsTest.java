@@ -1,5 +1,6 @@
 package com.elmsoftware.env;
 
+import com.elmsoftware.env.settingproviderimpl.ParallelSettingProvider;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -9,10 +10,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -89,6 +98,39 @@ public class EnvironmentSettingsTest {
 
 	}
 
+	@Test
+	public void should_load_only_the_requested_environment() {
+
+		// setup test - none required
+
+		// run test
+		final EnvironmentSettings full = EnvironmentSettings.load("environment-test.json");
+		final EnvironmentSettings selective = EnvironmentSettings.load("environment-test.json", "PROD");
+
+		// verify outcome
+		assertEquals(1, selective.getEnvironmentSettings().size());
+		assertEquals(full.getEnvironmentSettings().get("PROD"), selective.getEnvironmentSettings().get("PROD"));
+		assertEquals(full.getGlobalSettings(), selective.getGlobalSettings());
+		assertEquals(full.getRequiredSettings(), selective.getRequiredSettings());
+		assertEquals(full.getSensitiveSettings(), selective.getSensitiveSettings());
+		assertEquals(full.getAliases(), selective.getAliases());
+		assertEquals(full.merge("PROD"), selective.merge("PROD"));
+
+		// an environment that isn't in the file just gets the global values
+		assertTrue(EnvironmentSettings.load("environment-test.json", "DEV").getEnvironmentSettings().isEmpty());
+
+	}
+
+	@Test
+	public void should_return_null_if_selective_settings_do_not_exist() {
+		assertNull(EnvironmentSettings.load("this_does_not_exist.json", "PROD"));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void should_explode_if_unable_to_selectively_load_settings() {
+		EnvironmentSettings.load("crap_file.json", "PROD");
+	}
+
 	@Test
 	public void should_return_null_if_settings_do_not_exist() {
 
@@ -141,6 +183,113 @@ public class EnvironmentSettingsTest {
 
 	}
 
+	@Test
+	public void should_ask_settings_provider_for_all_missing_settings_at_once() {
+
+		// setup test
+		final EnvironmentSettings settings = EnvironmentSettings
+				.load("environment-test.json")
+				.withRequiredSetting("bulk.provided.one")
+				.withRequiredSetting("bulk.provided.two")
+				.withRequiredSetting("bulk.missing");
+
+		final List<Collection<String>> requests = new ArrayList<>();
+		final SettingProvider provider = new SettingProvider() {
+			@Override
+			public String getProperty(final String environment, final String key) {
+				throw new AssertionError("should not be asked for one key at a time");
+			}
+
+			@Override
+			public Map<String, String> getProperties(final String environment, final Collection<String> keys) {
+				requests.add(new ArrayList<>(keys));
+				final Map<String, String> values = new HashMap<>();
+				values.put("bulk.provided.one", "one");
+				values.put("bulk.provided.two", "two");
+				return values;
+			}
+		};
+
+		// run test
+		try {
+			settings.merge("PROD", provider);
+			fail("bulk.missing is not provided");
+		} catch (final RuntimeException e) {
+
+			// verify outcome
+			assertEquals("Missing required settings: bulk.missing", e.getMessage());
+			assertEquals(
+					Collections.singletonList(Arrays.asList("bulk.provided.one", "bulk.provided.two", "bulk.missing")),
+					requests
+			);
+
+		}
+
+	}
+
+	@Test
+	public void should_resolve_missing_required_settings_in_parallel() throws InterruptedException {
+
+		// setup test - each key takes 200ms to look up
+		final EnvironmentSettings settings = new EnvironmentSettings();
+		final List<String> keys = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			keys.add("parallel.key." + i);
+			settings.withRequiredSetting("parallel.key." + i);
+		}
+		final SettingProvider provider = (environment, key) -> {
+			sleep(200);
+			return key + ".value";
+		};
+		final ExecutorService executor = Executors.newFixedThreadPool(keys.size());
+
+		// run test
+		final long start = System.nanoTime();
+		final Map<String, String> merged = settings.merge("PROD", provider, executor);
+		final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		executor.shutdown();
+
+		// verify outcome - about as long as one lookup, not ten
+		for (final String key : keys) {
+			assertEquals(key + ".value", merged.get(key));
+		}
+		assertTrue("took " + elapsed + "ms", elapsed < 1000);
+
+	}
+
+	@Test
+	public void should_report_parallel_lookups_past_the_deadline_as_missing_in_order() {
+
+		// setup test - the slow keys are interleaved with the fast ones
+		final EnvironmentSettings settings = new EnvironmentSettings()
+				.withRequiredSetting("slow.one")
+				.withRequiredSetting("fast.one")
+				.withRequiredSetting("slow.two")
+				.withRequiredSetting("missing.one")
+				.withRequiredSetting("fast.two");
+		final SettingProvider provider = (environment, key) -> {
+			if (key.startsWith("slow")) {
+				sleep(2000);
+			}
+			return key.startsWith("missing") ? null : key;
+		};
+		final ExecutorService executor = ParallelSettingProvider.newDefaultExecutor();
+
+		// run test
+		try {
+			settings.merge("PROD", provider, executor, Duration.ofMillis(200));
+			fail("the slow settings were not found in time");
+		} catch (final RuntimeException e) {
+
+			// verify outcome
+			assertEquals("Missing required settings: slow.one, slow.two, missing.one", e.getMessage());
+
+		} finally {
+			executor.shutdownNow();
+		}
+
+	}
+
 	@Test
 	public void should_detect_and_report_single_missing_vm_arg() {
 
@@ -339,4 +488,12 @@ public class EnvironmentSettingsTest {
 
 	}
 
+	private static void sleep(final long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
 }
@@ -0,0 +1,137 @@
+package com.elmsoftware.env;
+
+import com.elmsoftware.env.settingproviderimpl.NoOpSettingProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EnvironmentSettingsWatcherTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path file;
+	private String json;
+	private EnvironmentSettingsWatcher watcher;
+
+	@Before
+	public void beforeEnvironmentSettingsWatcherTest() throws IOException {
+		file = folder.newFile("environment.json").toPath();
+		try (final InputStream in = getClass().getClassLoader().getResourceAsStream("environment-test.json")) {
+			Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+		json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+		watcher = new EnvironmentSettingsWatcher(file, "PROD", new NoOpSettingProvider(), 50);
+	}
+
+	@After
+	public void afterEnvironmentSettingsWatcherTest() {
+		watcher.close();
+	}
+
+	@Test
+	public void should_load_settings_on_start() throws IOException {
+
+		// run test
+		watcher.start();
+
+		// verify outcome
+		assertEquals("env.prod.value", watcher.get("env.key"));
+		assertEquals("234", watcher.getSettings().get("an.integer"));
+
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void should_not_allow_changes_to_settings() throws IOException {
+		watcher.start().getSettings().put("env.key", "nope");
+	}
+
+	@Test
+	public void should_publish_only_changed_keys_when_file_changes() throws Exception {
+
+		// setup test
+		final CountDownLatch latch = new CountDownLatch(1);
+		final List<Map<String, String>> changes = new CopyOnWriteArrayList<>();
+		watcher.start().addListener(changed -> {
+			changes.add(changed);
+			latch.countDown();
+		});
+		final Map<String, String> before = watcher.getSettings();
+
+		// run test - a burst of writes
+		final String updated = json.replace("env.prod.value", "env.prod.updated");
+		for (int i = 0; i < 5; i++) {
+			Files.write(file, updated.getBytes(StandardCharsets.UTF_8));
+		}
+
+		// verify outcome
+		assertTrue("no change was published", latch.await(30, TimeUnit.SECONDS));
+		final Map<String, String> expected = new HashMap<>();
+		expected.put("env.key", "env.prod.updated");
+		assertEquals(expected, changes.get(0));
+		assertEquals("env.prod.updated", watcher.get("env.key"));
+
+		// the old snapshot is untouched
+		assertEquals("env.prod.value", before.get("env.key"));
+
+	}
+
+	@Test
+	public void should_keep_settings_if_reload_fails() throws IOException {
+
+		// setup test
+		watcher.start();
+		Files.write(file, "this is not json".getBytes(StandardCharsets.UTF_8));
+
+		// run test
+		final boolean reloaded = watcher.reload();
+
+		// verify outcome
+		assertFalse(reloaded);
+		assertEquals("env.prod.value", watcher.get("env.key"));
+
+	}
+
+	@Test
+	public void should_report_added_changed_and_removed_keys() {
+
+		// setup test
+		final Map<String, String> previous = new HashMap<>();
+		previous.put("same", "1");
+		previous.put("changed", "1");
+		previous.put("removed", "1");
+		final Map<String, String> next = new HashMap<>();
+		next.put("same", "1");
+		next.put("changed", "2");
+		next.put("added", "1");
+
+		// run test
+		final Map<String, String> changes = EnvironmentSettingsWatcher.changes(previous, next);
+
+		// verify outcome
+		assertEquals(3, changes.size());
+		assertEquals("2", changes.get("changed"));
+		assertEquals("1", changes.get("added"));
+		assertTrue(changes.containsKey("removed"));
+		assertNull(changes.get("removed"));
+
+	}
+
+}
@@ -0,0 +1,136 @@
+package com.elmsoftware.env;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FileSettingsCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FileSettingsCache cache;
+	private Path file;
+
+	@Before
+	public void beforeFileSettingsCacheTest() throws IOException {
+		cache = new FileSettingsCache();
+		file = folder.newFile("environment.json").toPath();
+		try (final InputStream in = getClass().getClassLoader().getResourceAsStream("environment-test.json")) {
+			Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	@Test
+	public void should_load_settings_from_file() {
+
+		// run test
+		final EnvironmentSettings settings = cache.load(file);
+
+		// verify outcome
+		final Map<String, String> merged = settings.merge("PROD");
+		assertEquals("env.prod.value", merged.get("env.key"));
+		assertEquals("234", merged.get("an.integer"));
+
+	}
+
+	@Test
+	public void should_reuse_parsed_settings_if_file_is_unchanged() {
+
+		// run test
+		final EnvironmentSettings first = cache.load(file);
+		final EnvironmentSettings second = cache.load(file.getParent().resolve("./environment.json"));
+
+		// verify outcome
+		assertNotSame(first, second);
+		assertEquals(first.merge("PROD"), second.merge("PROD"));
+
+	}
+
+	@Test
+	public void should_not_leak_changes_to_later_loads() {
+
+		// setup test
+		final EnvironmentSettings first = cache.load(file);
+		first.withGlobalSetting("some.key", "changed.value");
+		first.getEnvironmentSettings().get("PROD").put("env.key", "changed.value");
+		first.getRequiredSettings().add("not.there");
+
+		// run test
+		final EnvironmentSettings second = cache.load(file);
+
+		// verify outcome
+		final Map<String, String> merged = second.merge("PROD");
+		assertEquals("default.global.value", merged.get("some.key"));
+		assertEquals("env.prod.value", merged.get("env.key"));
+		assertFalse(second.getRequiredSettings().contains("not.there"));
+
+	}
+
+	@Test
+	public void should_parse_again_if_content_changes() throws IOException {
+
+		// setup test - same size and modification time, different content
+		final EnvironmentSettings first = cache.load(file);
+		final FileTime modified = Files.getLastModifiedTime(file);
+		final String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+		Files.write(file, json.replace("env.prod.value", "env.prod.VALUE").getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(file, modified);
+
+		// run test
+		final EnvironmentSettings second = cache.load(file);
+
+		// verify outcome
+		assertNotSame(first, second);
+		assertEquals("env.prod.VALUE", second.merge("PROD").get("env.key"));
+
+	}
+
+	@Test
+	public void should_memory_map_large_files() throws IOException {
+
+		// setup test - pad the file with a big comment
+		final StringBuilder json = new StringBuilder("/*");
+		while (json.length() < FileSettingsCache.MAPPED_THRESHOLD) {
+			json.append("padding padding padding padding padding padding padding padding\n");
+		}
+		json.append("*/\n").append(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+		Files.write(file, json.toString().getBytes(StandardCharsets.UTF_8));
+
+		// run test
+		final EnvironmentSettings settings = cache.load(file);
+
+		// verify outcome
+		assertEquals("env.prod.value", settings.merge("PROD").get("env.key"));
+
+	}
+
+	@Test
+	public void should_return_null_if_file_does_not_exist() {
+		assertNull(cache.load(file.resolveSibling("nope.json")));
+	}
+
+	@Test
+	public void should_load_from_file_or_classpath_location() {
+
+		// run test and verify outcome
+		assertNotNull(EnvironmentSettings.loadLocation(EnvironmentSettings.FILE_PREFIX + file));
+		assertNotNull(EnvironmentSettings.loadLocation(file.toAbsolutePath().toString()));
+		assertNotNull(EnvironmentSettings.loadLocation("environment-test.json"));
+		assertNull(EnvironmentSettings.loadLocation(EnvironmentSettings.FILE_PREFIX + file.resolveSibling("nope.json")));
+
+	}
+
+}
@@ -0,0 +1,202 @@
+package com.elmsoftware.env;
+
+import com.elmsoftware.env.settingproviderimpl.NoOpSettingProvider;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.inject.name.Names;
+import com.google.inject.spi.Element;
+import com.google.inject.spi.Elements;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VM;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.PropertiesPropertySource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Retained heap of the settings we keep for the life of the process, for generated configs of increasing size - if
+ * one of them grows past its budget (in bytes per key), the build fails. Keys and values are shared between all of
+ * them, so each is measured without the loaded settings (and their strings).
+ * <p>
+ * The budgets are about a quarter over what was measured on a 64-bit JVM with compressed references - on a JVM without
+ * them (a heap over 32GB, for example), these tests are skipped.
+ */
+public class FootprintTest {
+
+	private static final Logger log = LoggerFactory.getLogger(FootprintTest.class);
+
+	private static final int ENVIRONMENTS = 5;
+	private static final int[] KEY_COUNTS = {100, 1_000, 5_000};
+
+	// bytes per key
+	private static final long LOADED_BUDGET = 300;
+	private static final long MERGED_BUDGET = 56;
+	private static final long SPRING_BUDGET = 68;
+	private static final long GUICE_BUDGET = 280;
+	private static final String ENVIRONMENT = "ENV1";
+
+	@ClassRule
+	public static final TemporaryFolder folder = new TemporaryFolder();
+
+	// bytes per key, by key count
+	private static final Map<Integer, Footprint> footprints = new LinkedHashMap<>();
+
+	@BeforeClass
+	public static void measure() throws IOException {
+
+		assumeTrue("the budgets assume compressed references", VM.current().sizeOfField("object") == 4);
+
+		for (final int keyCount : KEY_COUNTS) {
+
+			final EnvironmentSettings settings = EnvironmentSettings.load(generate(keyCount).toPath());
+
+			final GraphLayout shared = GraphLayout.parseInstance(settings);
+
+			final Map<String, String> merged = settings.merge(ENVIRONMENT, new NoOpSettingProvider());
+
+			// less what an empty one holds on to (its logger, for one), which doesn't grow with the keys
+			final GraphLayout spring = GraphLayout.parseInstance(settings, propertySource(merged))
+				.subtract(GraphLayout.parseInstance(settings, propertySource(Collections.<String, String>emptyMap())));
+
+			// what guice is handed - one constant binding per key (less the source of the bindings)
+			final GraphLayout guice = GraphLayout.parseInstance(settings, bindings(merged))
+				.subtract(GraphLayout.parseInstance(settings, bindings(Collections.singletonMap("key", "value"))));
+
+			final Footprint footprint = new Footprint(
+				shared.totalSize() / keyCount,
+				GraphLayout.parseInstance(settings, merged).subtract(shared).totalSize() / keyCount,
+				spring.subtract(shared).totalSize() / keyCount,
+				guice.subtract(shared).totalSize() / keyCount
+			);
+			footprints.put(keyCount, footprint);
+			log.info("{} keys - bytes per key: {}", keyCount, footprint);
+
+		}
+
+	}
+
+	private static PropertiesPropertySource propertySource(final Map<String, String> merged) {
+		final Properties properties = new Properties();
+		properties.putAll(merged);
+		return new PropertiesPropertySource("settings", properties);
+	}
+
+	private static List<Element> bindings(final Map<String, String> merged) {
+		return Elements.getElements(binder -> Names.bindProperties(binder, merged));
+	}
+
+	@Test
+	public void loaded_settings_should_stay_within_budget() {
+		for (final Map.Entry<Integer, Footprint> entry : footprints.entrySet()) {
+			assertWithin("loaded settings", entry.getKey(), entry.getValue().loaded, LOADED_BUDGET);
+		}
+	}
+
+	@Test
+	public void merged_settings_should_stay_within_budget() {
+		for (final Map.Entry<Integer, Footprint> entry : footprints.entrySet()) {
+			assertWithin("merge()", entry.getKey(), entry.getValue().merged, MERGED_BUDGET);
+		}
+	}
+
+	@Test
+	public void spring_property_source_should_stay_within_budget() {
+		for (final Map.Entry<Integer, Footprint> entry : footprints.entrySet()) {
+			assertWithin("spring properties", entry.getKey(), entry.getValue().spring, SPRING_BUDGET);
+		}
+	}
+
+	@Test
+	public void guice_bindings_should_stay_within_budget() {
+		for (final Map.Entry<Integer, Footprint> entry : footprints.entrySet()) {
+			assertWithin("guice bindings", entry.getKey(), entry.getValue().guice, GUICE_BUDGET);
+		}
+	}
+
+	private static void assertWithin(final String what, final int keyCount, final long bytesPerKey, final long budget) {
+		assertTrue(
+			what + " with " + keyCount + " keys take " + bytesPerKey + " bytes per key - the budget is " + budget,
+			bytesPerKey <= budget
+		);
+	}
+
+	// the same shape as the benchmark configs: every environment overrides a tenth of the keys, and 5% are required
+	private static File generate(final int keyCount) throws IOException {
+
+		final File file = folder.newFile("generated-" + ENVIRONMENTS + "x" + keyCount + ".json");
+
+		try (final JsonGenerator json = new JsonFactory().createGenerator(file, JsonEncoding.UTF8)) {
+
+			json.writeStartObject();
+
+			json.writeObjectFieldStart("globalSettings");
+			for (int k = 0; k < keyCount; k++) {
+				json.writeStringField(keyName(k), "global.value." + k);
+			}
+			json.writeEndObject();
+
+			json.writeObjectFieldStart("environmentSettings");
+			for (int e = 0; e < ENVIRONMENTS; e++) {
+				json.writeObjectFieldStart("ENV" + e);
+				for (int k = e % 10; k < keyCount; k += 10) {
+					json.writeStringField(keyName(k), "ENV" + e + ".value." + k);
+				}
+				json.writeEndObject();
+			}
+			json.writeEndObject();
+
+			json.writeArrayFieldStart("requiredSettings");
+			for (int k = 0; k < keyCount; k += 20) {
+				json.writeString(keyName(k));
+			}
+			json.writeEndArray();
+
+			json.writeEndObject();
+
+		}
+
+		return file;
+
+	}
+
+	private static String keyName(final int index) {
+		return "some.generated.key." + index;
+	}
+
+	private static class Footprint {
+
+		private final long loaded;
+		private final long merged;
+		private final long spring;
+		private final long guice;
+
+		private Footprint(final long loaded, final long merged, final long spring, final long guice) {
+			this.loaded = loaded;
+			this.merged = merged;
+			this.spring = spring;
+			this.guice = guice;
+		}
+
+		@Override
+		public String toString() {
+			return "loaded " + loaded + ", merge() " + merged + ", spring " + spring + ", guice " + guice;
+		}
+
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.elmsoftware.env;
+
+import com.elmsoftware.env.settingproviderimpl.MapSettingProvider;
+import com.elmsoftware.env.settingproviderimpl.NoOpSettingProvider;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class LayeredSettingsTest {
+
+	@After
+	public void afterLayeredSettingsTest() {
+		System.clearProperty("layered.overridden.key");
+	}
+
+	@Test
+	public void should_hide_lower_layers() {
+
+		// setup test
+		final Map<String, String> global = new HashMap<>();
+		global.put("a", "global.a");
+		global.put("b", "global.b");
+		global.put("c", "global.c");
+		global.put("d", "global.d");
+		final Map<String, String> overrides = new HashMap<>();
+		overrides.put("d", "override.d");
+		overrides.put("e", "override.e");
+
+		// run test
+		final LayeredSettings settings = new LayeredSettings(
+			global,
+			Collections.singletonMap("b", "environment.b"),
+			Collections.singletonMap("c", "provided.c"),
+			overrides
+		);
+
+		// verify outcome
+		assertEquals(5, settings.size());
+		assertEquals(5, settings.entrySet().size());
+		assertEquals("global.a", settings.get("a"));
+		assertEquals("environment.b", settings.get("b"));
+		assertEquals("provided.c", settings.get("c"));
+		assertEquals("override.d", settings.get("d"));
+		assertEquals("override.e", settings.get("e"));
+		assertNull(settings.get("f"));
+		assertFalse(settings.containsKey("f"));
+
+		final Map<String, String> flat = settings.flatten();
+		assertEquals(settings, flat);
+		assertEquals(flat, settings);
+		assertEquals(flat.hashCode(), settings.hashCode());
+
+	}
+
+	@Test
+	public void should_keep_null_values_in_higher_layers() {
+
+		// setup test
+		final Map<String, String> overrides = new HashMap<>();
+		overrides.put("a", null);
+
+		// run test
+		final LayeredSettings settings = new LayeredSettings(Collections.singletonMap("a", "global.a"), null, null, overrides);
+
+		// verify outcome
+		assertTrue(settings.containsKey("a"));
+		assertNull(settings.get("a"));
+		assertEquals(1, settings.size());
+
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void should_not_allow_changes() {
+		new LayeredSettings(new HashMap<>(), null, null, null).put("a", "b");
+	}
+
+	@Test
+	public void should_copy_on_write() {
+
+		// setup test
+		final LayeredSettings settings = new LayeredSettings(Collections.singletonMap("a", "global.a"), null, null, null);
+
+		// run test
+		final LayeredSettings changed = settings.withOverride("a", "override.a");
+
+		// verify outcome
+		assertEquals("global.a", settings.get("a"));
+		assertEquals("override.a", changed.get("a"));
+		assertEquals(Collections.singletonMap("a", "override.a"), changed.getOverrides());
+
+	}
+
+	@Test
+	public void should_share_global_and_environment_layers() {
+
+		// setup test
+		final EnvironmentSettings environmentSettings = EnvironmentSettings.load("environment-test.json");
+		System.setProperty("layered.overridden.key", "vm.value");
+		environmentSettings.withGlobalSetting("layered.overridden.key", "global.value");
+
+		// run test
+		final LayeredSettings prod = environmentSettings.mergeLayered("PROD", new NoOpSettingProvider());
+		final LayeredSettings local = environmentSettings.mergeLayered("LOCAL", new NoOpSettingProvider());
+
+		// verify outcome - only the overrides and aliases are held by the views
+		assertEquals("vm.value", prod.get("layered.overridden.key"));
+		assertEquals("vm.value", prod.getOverrides().get("layered.overridden.key"));
+		assertEquals(
+			environmentSettings.getAliases().size() + 1,
+			local.getOverrides().size()
+		);
+		assertTrue(prod.getProvided().isEmpty());
+		assertEquals(environmentSettings.merge("PROD", new NoOpSettingProvider()), prod);
+		assertEquals(environmentSettings.merge("LOCAL", new NoOpSettingProvider()), local);
+
+	}
+
+	@Test
+	public void should_hold_provided_settings_in_their_own_layer() {
+
+		// setup test
+		final EnvironmentSettings environmentSettings = new EnvironmentSettings()
+			.withGlobalSetting("a", "global.a")
+			.withRequiredSetting("a")
+			.withRequiredSetting("b");
+
+		// run test
+		final LayeredSettings settings = environmentSettings.mergeLayered(
+			"PROD",
+			new MapSettingProvider(Collections.singletonMap("b", "provided.b"))
+		);
+
+		// verify outcome
+		assertEquals(Collections.singletonMap("b", "provided.b"), settings.getProvided());
+		assertEquals("global.a", settings.get("a"));
+		assertEquals(2, settings.size());
+
+	}
+
+}
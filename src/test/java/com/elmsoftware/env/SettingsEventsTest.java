@@ -0,0 +1,263 @@
+package com.elmsoftware.env;
+
+import com.elmsoftware.env.settingproviderimpl.AwsSsmV2SettingProvider;
+import com.elmsoftware.env.settingproviderimpl.ChainingSettingProvider;
+import com.elmsoftware.env.settingproviderimpl.MapSettingProvider;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import software.amazon.awssdk.services.ssm.SsmClient;
+import software.amazon.awssdk.services.ssm.model.GetParametersRequest;
+import software.amazon.awssdk.services.ssm.model.GetParametersResponse;
+import software.amazon.awssdk.services.ssm.model.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SettingsEventsTest {
+
+	private static final String PHASE = "com.elmsoftware.env.Phase";
+	private static final String LOOKUP = "com.elmsoftware.env.Lookup";
+
+	// JFR on java 8 records the provider field as null - only check it on 9 and later
+	private static final boolean PROVIDER_RECORDED = !System.getProperty("java.specification.version").startsWith("1.");
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File settingsFile;
+
+	@Before
+	public void setup() throws IOException {
+		assumeTrue("JFR is not available", SettingsEvents.isAvailable());
+		settingsFile = folder.newFile("events-test.json");
+		Files.write(
+			settingsFile.toPath(),
+			(
+				"{\n" +
+					"\"globalSettings\": {\"some.key\": \"global.value\"},\n" +
+					"\"requiredSettings\": [\"db.url\", \"db.password\"],\n" +
+					"\"sensitiveSettings\": [\"db.password\"],\n" +
+					"\"aliases\": {\"some.key\": \"some_key\"}\n" +
+					"}"
+			).getBytes(StandardCharsets.UTF_8)
+		);
+	}
+
+	@Test
+	public void should_record_each_phase_of_a_merge() throws IOException {
+
+		// setup test
+		final Map<String, String> values = new HashMap<>();
+		values.put("db.url", "jdbc:test");
+		values.put("db.password", "secret");
+
+		// run test
+		final List<RecordedEvent> events = record(() -> EnvironmentSettings
+			.load(settingsFile.toPath())
+			.merge("TEST", new MapSettingProvider(values))
+		);
+
+		// assert results
+		final List<String> phases = new ArrayList<>();
+		for (final RecordedEvent event : named(events, PHASE)) {
+			phases.add(event.getString("phase"));
+			assertEquals(event.getString("phase"), SettingsEvents.OK, event.getString("outcome"));
+		}
+		assertEquals(4, phases.size());
+		assertTrue(phases.contains("load"));
+		assertTrue(phases.contains("resolve required settings"));
+		assertTrue(phases.contains("JVM overrides"));
+		assertTrue(phases.contains("aliases"));
+
+	}
+
+	@Test
+	public void should_record_each_lookup_and_mask_sensitive_keys() throws IOException {
+
+		// setup test
+		assumeTrue("the provider isn't recorded on this JVM", PROVIDER_RECORDED);
+		final EnvironmentSettings settings = EnvironmentSettings.load(settingsFile.toPath());
+		final MapSettingProvider empty = new MapSettingProvider(Collections.<String, String>emptyMap());
+		final Map<String, String> values = new HashMap<>();
+		values.put("db.url", "jdbc:test");
+		values.put("db.password", "secret");
+		final ChainingSettingProvider chain = new ChainingSettingProvider(empty, new MapSettingProvider(values));
+
+		// run test
+		final List<RecordedEvent> events = record(() -> settings.merge("TEST", chain));
+
+		// assert results
+		final Map<String, String> outcomes = new HashMap<>();
+		for (final RecordedEvent event : named(events, LOOKUP)) {
+			assertEquals("TEST", event.getString("environment"));
+			assertNotEquals("db.password", event.getString("key"));
+			outcomes.merge(
+				event.getString("key") + " " + providerName(event),
+				event.getString("outcome"),
+				// the order they end up in the recording isn't guaranteed
+				(a, b) -> a.compareTo(b) < 0 ? a + "," + b : b + "," + a
+			);
+		}
+		assertEquals(SettingsEvents.FOUND, outcomes.get("db.url ChainingSettingProvider"));
+		assertEquals(SettingsEvents.FOUND, outcomes.get("*********** ChainingSettingProvider"));
+		// the chain records each of its providers too
+		assertEquals(SettingsEvents.FOUND + "," + SettingsEvents.NOT_FOUND, outcomes.get("db.url MapSettingProvider"));
+		assertEquals(
+			SettingsEvents.FOUND + "," + SettingsEvents.NOT_FOUND,
+			outcomes.get("*********** MapSettingProvider")
+		);
+
+	}
+
+	@Test
+	public void should_mask_sensitive_keys_in_ssm_parameter_names() throws IOException {
+
+		// setup test
+		final EnvironmentSettings settings = EnvironmentSettings.load(settingsFile.toPath());
+		final SsmClient ssm = mock(SsmClient.class);
+		when(ssm.getParameters(any(GetParametersRequest.class))).thenReturn(GetParametersResponse.builder()
+			.parameters(
+				Parameter.builder().name("/test/prefix/db.url").value("jdbc:test").build(),
+				Parameter.builder().name("/test/prefix/db.password").value("secret").build()
+			)
+			.build());
+		final AwsSsmV2SettingProvider provider = new AwsSsmV2SettingProvider(ssm, "prefix");
+
+		// run test - a merge, then a lookup of a single key while masking the same keys
+		final List<RecordedEvent> events = record(() -> {
+			settings.merge("TEST", provider);
+			try (final SettingsEvents.Scope ignored = SettingsEvents.masking(settings.getSensitiveSettings())) {
+				provider.getProperty("TEST", "db.password");
+			}
+		});
+
+		// assert results
+		final Map<String, String> candidates = new HashMap<>();
+		int lookups = 0;
+		for (final RecordedEvent event : named(events, LOOKUP)) {
+			// the merge records its own lookups of the provider too, without a candidate
+			if (null != event.getString("candidate")) {
+				lookups++;
+				if (PROVIDER_RECORDED) {
+					assertEquals(AwsSsmV2SettingProvider.class.getName(), event.getString("provider"));
+				}
+				assertEquals(SettingsEvents.FOUND, event.getString("outcome"));
+				assertFalse(event.getString("candidate"), event.getString("candidate").contains("db.password"));
+				candidates.put(event.getString("key"), event.getString("candidate"));
+			}
+		}
+		assertEquals(3, lookups);
+		assertEquals("/test/prefix/db.url", candidates.get("db.url"));
+		assertEquals("/test/prefix/***********", candidates.get("***********"));
+
+	}
+
+	@Test
+	public void should_only_mask_keys_while_the_settings_that_list_them_are_resolved() throws IOException {
+
+		// setup test
+		final Map<String, String> values = new HashMap<>();
+		values.put("db.url", "jdbc:test");
+		values.put("db.password", "secret");
+		final ChainingSettingProvider chain = new ChainingSettingProvider(new MapSettingProvider(values));
+
+		// run test - the chain is asked once during a merge, and once on its own
+		final List<RecordedEvent> events = record(() -> {
+			EnvironmentSettings.load(settingsFile.toPath()).merge("TEST", chain);
+			chain.getProperty("TEST", "db.password");
+		});
+
+		// assert results
+		final List<String> keys = new ArrayList<>();
+		for (final RecordedEvent event : named(events, LOOKUP)) {
+			keys.add(event.getString("key"));
+		}
+		assertTrue(keys.contains("***********"));
+		assertTrue(keys.contains("db.password"));
+
+	}
+
+	@Test
+	public void should_record_lookups_that_find_nothing() throws IOException {
+
+		// setup test
+		final EnvironmentSettings settings = EnvironmentSettings.load(settingsFile.toPath());
+
+		// run test
+		final List<RecordedEvent> events = record(() -> {
+			try {
+				settings.merge("TEST", new MapSettingProvider(Collections.<String, String>emptyMap()));
+				fail("expected the required settings to be missing");
+			} catch (final RuntimeException e) {
+				// expected
+			}
+		});
+
+		// assert results
+		final List<RecordedEvent> lookups = named(events, LOOKUP);
+		assertEquals(2, lookups.size());
+		for (final RecordedEvent event : lookups) {
+			assertEquals(SettingsEvents.NOT_FOUND, event.getString("outcome"));
+			if (PROVIDER_RECORDED) {
+				assertEquals(MapSettingProvider.class.getName(), event.getString("provider"));
+			}
+		}
+
+	}
+
+	private List<RecordedEvent> record(final Runnable runnable) throws IOException {
+		final Path dump = folder.newFile("events.jfr").toPath();
+		try (final Recording recording = new Recording()) {
+			recording.enable(PHASE).withoutThreshold();
+			recording.enable(LOOKUP).withoutThreshold();
+			recording.start();
+			runnable.run();
+			recording.stop();
+			recording.dump(dump);
+		}
+		// only this thread's events - other tests may be recording too
+		final String thread = Thread.currentThread().getName();
+		final List<RecordedEvent> events = new ArrayList<>();
+		for (final RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+			if (null != event.getThread() && thread.equals(event.getThread().getJavaName())) {
+				events.add(event);
+			}
+		}
+		return events;
+	}
+
+	private static List<RecordedEvent> named(final List<RecordedEvent> events, final String name) {
+		final List<RecordedEvent> named = new ArrayList<>();
+		for (final RecordedEvent event : events) {
+			if (name.equals(event.getEventType().getName())) {
+				named.add(event);
+			}
+		}
+		return named;
+	}
+
+	private static String providerName(final RecordedEvent event) {
+		final String provider = event.getString("provider");
+		return provider.substring(provider.lastIndexOf('.') + 1);
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.elmsoftware.env;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SettingsMapTest {
+
+	@Test
+	public void should_hold_the_same_entries_as_the_source() {
+		for (final int size : new int[]{0, 1, 2, 3, 7, 100, 1000, 20000}) {
+			for (final boolean perfectHash : new boolean[]{true, false}) {
+
+				// setup test
+				final Map<String, String> source = generate(size);
+
+				// run test
+				final SettingsMap map = SettingsMap.copyOf(source, perfectHash);
+
+				// verify outcome
+				assertEquals(source, map);
+				assertEquals(map, source);
+				assertEquals(source.hashCode(), map.hashCode());
+				assertEquals(size, map.size());
+				for (final Map.Entry<String, String> entry : source.entrySet()) {
+					assertEquals(entry.getValue(), map.get(entry.getKey()));
+					assertTrue(map.containsKey(entry.getKey()));
+				}
+				assertNull(map.get("not.a.key"));
+				assertFalse(map.containsKey("not.a.key"));
+				assertNull(map.get(42));
+
+			}
+		}
+	}
+
+	@Test
+	public void should_find_a_perfect_hash() {
+		assertTrue(SettingsMap.copyOf(generate(1000)).isPerfectHash());
+		assertFalse(SettingsMap.copyOf(generate(1000), false).isPerfectHash());
+	}
+
+	@Test
+	public void should_allow_null_values() {
+
+		// setup test
+		final Map<String, String> source = new HashMap<>();
+		source.put("some.alias", null);
+
+		// run test
+		final SettingsMap map = SettingsMap.copyOf(source);
+
+		// verify outcome
+		assertTrue(map.containsKey("some.alias"));
+		assertNull(map.get("some.alias"));
+		assertEquals(source, map);
+
+	}
+
+	@Test
+	public void should_intern_keys() {
+
+		// setup test
+		final Map<String, String> source = new HashMap<>();
+		source.put(new String("some.key"), "value");
+
+		// run test
+		final SettingsMap map = SettingsMap.copyOf(source);
+
+		// verify outcome
+		assertSame("some.key", map.keySet().iterator().next());
+
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void should_not_allow_changes() {
+		SettingsMap.copyOf(generate(10)).put("some.key", "value");
+	}
+
+	@Test
+	public void should_not_copy_a_settings_map() {
+		final SettingsMap map = SettingsMap.copyOf(generate(10));
+		assertSame(map, SettingsMap.copyOf(map));
+	}
+
+	@Test
+	public void should_merge_to_a_settings_map() {
+
+		// setup test
+		final EnvironmentSettings settings = EnvironmentSettings.load("environment-test.json");
+
+		// run test
+		final SettingsMap merged = settings.mergeCompact("LOCAL", (environment, key) -> null);
+
+		// verify outcome
+		assertEquals(settings.merge("LOCAL"), merged);
+
+	}
+
+	private static Map<String, String> generate(final int size) {
+		final Map<String, String> map = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			map.put("some.generated.key." + i, "value." + i);
+		}
+		return map;
+	}
+
+}
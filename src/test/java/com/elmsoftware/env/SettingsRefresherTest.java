@@ -0,0 +1,261 @@
+package com.elmsoftware.env;
+
+import com.elmsoftware.env.settingproviderimpl.MapSettingProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SettingsRefresherTest {
+
+	private EnvironmentSettings settings;
+	private Map<String, String> providerValues;
+	private SettingsRefresher refresher;
+
+	@Before
+	public void beforeSettingsRefresherTest() {
+		settings = new EnvironmentSettings()
+			.withGlobalSetting("plain.key", "plain-value")
+			.withRequiredSetting("db.password");
+		settings.setAliases(Collections.singletonMap("db.password", "DB_PASSWORD"));
+		providerValues = new ConcurrentHashMap<>();
+		providerValues.put("db.password", "first");
+	}
+
+	@After
+	public void afterSettingsRefresherTest() {
+		if (null != refresher) {
+			refresher.close();
+		}
+	}
+
+	@Test
+	public void should_merge_settings_on_start() {
+
+		// setup
+		refresher = new SettingsRefresher(settings, "test", new MapSettingProvider(providerValues), Duration.ofHours(1));
+
+		// run test
+		refresher.start();
+
+		// assert results
+		assertEquals("first", refresher.get("db.password"));
+		assertEquals("first", refresher.get("DB_PASSWORD"));
+		assertEquals("plain-value", refresher.getSettings().get("plain.key"));
+
+	}
+
+	@Test
+	public void should_publish_changed_provider_values() {
+
+		// setup
+		final List<Map<String, String>> changes = new CopyOnWriteArrayList<>();
+		refresher = new SettingsRefresher(settings, "test", new MapSettingProvider(providerValues), Duration.ofHours(1))
+			.start()
+			.addListener(changes::add);
+		final Map<String, String> before = refresher.getSettings();
+
+		// run test
+		providerValues.put("db.password", "second");
+		assertTrue(refresher.refresh());
+
+		// assert results
+		final Map<String, String> expected = new HashMap<>();
+		expected.put("db.password", "second");
+		expected.put("DB_PASSWORD", "second");
+		assertEquals(1, changes.size());
+		assertEquals(expected, changes.get(0));
+		assertEquals("second", refresher.get("DB_PASSWORD"));
+		// the old settings are not changed
+		assertEquals("first", before.get("db.password"));
+
+	}
+
+	@Test
+	public void should_not_publish_when_nothing_changed() {
+
+		// setup
+		final List<Map<String, String>> changes = new CopyOnWriteArrayList<>();
+		refresher = new SettingsRefresher(settings, "test", new MapSettingProvider(providerValues), Duration.ofHours(1))
+			.start()
+			.addListener(changes::add);
+		final Map<String, String> before = refresher.getSettings();
+
+		// run test
+		assertTrue(refresher.refresh());
+
+		// assert results
+		assertTrue(changes.isEmpty());
+		assertSame(before, refresher.getSettings());
+
+	}
+
+	@Test
+	public void should_compare_versions_when_the_provider_has_them() {
+
+		// setup
+		final VersionedMapProvider provider = new VersionedMapProvider();
+		provider.put("db.password", "first", 1);
+		final List<Map<String, String>> changes = new CopyOnWriteArrayList<>();
+		refresher = new SettingsRefresher(settings, "test", provider, Duration.ofHours(1))
+			.start()
+			.addListener(changes::add);
+
+		// run test - same version, so the value is not looked at
+		provider.put("db.password", "ignored", 1);
+		refresher.refresh();
+		final String unchanged = refresher.get("db.password");
+		provider.put("db.password", "second", 2);
+		refresher.refresh();
+
+		// assert results
+		assertEquals("first", unchanged);
+		assertEquals("second", refresher.get("db.password"));
+		assertEquals(1, changes.size());
+		assertEquals(3, provider.calls.get());
+
+	}
+
+	@Test
+	public void should_publish_a_value_rotated_while_starting() {
+
+		// setup - the value is rotated right after it is first looked up
+		final VersionedMapProvider provider = new VersionedMapProvider() {
+			@Override
+			public String getProperty(final String environment, final String key) {
+				final String value = super.getProperty(environment, key);
+				put(key, "second", 2);
+				return value;
+			}
+		};
+		provider.put("db.password", "first", 1);
+		refresher = new SettingsRefresher(settings, "test", provider, Duration.ofHours(1)).start();
+		provider.put("db.password", "second", 2);
+
+		// run test
+		refresher.refresh();
+
+		// assert results - the version that was started with is the one that goes with "first"
+		assertEquals("second", refresher.get("db.password"));
+		assertEquals(2, provider.calls.get());
+
+	}
+
+	@Test
+	public void should_keep_current_settings_when_the_provider_fails() {
+
+		// setup
+		final AtomicInteger calls = new AtomicInteger();
+		final SettingProvider provider = new SettingProvider() {
+			@Override
+			public String getProperty(final String environment, final String key) {
+				if (calls.incrementAndGet() > 1) {
+					throw new RuntimeException("provider is down");
+				}
+				return "first";
+			}
+		};
+		refresher = new SettingsRefresher(settings, "test", provider, Duration.ofHours(1)).start();
+
+		// run test
+		final boolean refreshed = refresher.refresh();
+
+		// assert results
+		assertFalse(refreshed);
+		assertEquals("first", refresher.get("db.password"));
+
+	}
+
+	@Test
+	public void should_refresh_in_the_background() throws InterruptedException {
+
+		// setup
+		final CountDownLatch latch = new CountDownLatch(1);
+		refresher = new SettingsRefresher(settings, "test", new MapSettingProvider(providerValues), Duration.ofMillis(50))
+			.start()
+			.addListener(changed -> latch.countDown());
+
+		// run test
+		providerValues.put("db.password", "second");
+
+		// assert results
+		assertTrue("no change was published", latch.await(10, TimeUnit.SECONDS));
+		assertEquals("second", refresher.get("db.password"));
+
+	}
+
+	@Test
+	public void should_keep_jittered_delay_within_the_ttl() {
+
+		// setup
+		refresher = new SettingsRefresher(settings, "test", new MapSettingProvider(providerValues), Duration.ofSeconds(10))
+			.withJitter(0.3);
+
+		// run test
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		for (int i = 0; i < 1000; i++) {
+			final long delay = refresher.nextDelayMillis();
+			min = Math.min(min, delay);
+			max = Math.max(max, delay);
+		}
+
+		// assert results
+		assertTrue("delay was " + min, min >= 7000);
+		assertTrue("delay was " + max, max <= 10000);
+		assertTrue("delays were not spread out", max - min > 1000);
+
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void should_not_allow_jitter_over_one() {
+		new SettingsRefresher(settings, "test", new MapSettingProvider(providerValues), Duration.ofSeconds(10))
+			.withJitter(1.5);
+	}
+
+	private static class VersionedMapProvider implements VersionedSettingProvider {
+
+		private final Map<String, VersionedValue> values = new ConcurrentHashMap<>();
+		private final AtomicInteger calls = new AtomicInteger();
+
+		void put(final String key, final String value, final long version) {
+			values.put(key, new VersionedValue(value, version));
+		}
+
+		@Override
+		public String getProperty(final String environment, final String key) {
+			final VersionedValue value = values.get(key);
+			return null == value ? null : value.getValue();
+		}
+
+		@Override
+		public Map<String, VersionedValue> getVersionedProperties(
+			final String environment,
+			final Collection<String> keys
+		) {
+			calls.incrementAndGet();
+			final Map<String, VersionedValue> found = new HashMap<>();
+			for (final String key : keys) {
+				if (values.containsKey(key)) {
+					found.put(key, values.get(key));
+				}
+			}
+			return found;
+		}
+
+	}
+
+}
@@ -0,0 +1,164 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import org.junit.After;
+import org.junit.Test;
+import software.amazon.awssdk.services.ssm.SsmAsyncClient;
+import software.amazon.awssdk.services.ssm.model.GetParametersRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class AwsSsmAsyncSettingProviderTest {
+
+	private final CountingSsmAsyncClient ssmClient = new CountingSsmAsyncClient(20);
+
+	@After
+	public void afterAwsSsmAsyncSettingProviderTest() {
+		ssmClient.close();
+	}
+
+	@Test
+	public void should_use_most_specific_value_found() {
+
+		// setup
+		ssmClient
+			.withParameter("/test/prefix/a", "prefixed-a")
+			.withParameter("/test/a", "environment-a")
+			.withParameter("/global/a", "global-a")
+			.withParameter("/test/b", "environment-b")
+			.withParameter("/global/b", "global-b")
+			.withParameter("/global/c", "global-c");
+		final AwsSsmAsyncSettingProvider provider = new AwsSsmAsyncSettingProvider(ssmClient, "prefix");
+
+		// run test
+		final CompletableFuture<String> a = provider.getPropertyAsync("test", "a");
+		final CompletableFuture<Map<String, String>> all = provider.getPropertiesAsync(
+			"test",
+			Arrays.asList("a", "b", "c", "d")
+		);
+
+		// assert results
+		assertEquals("prefixed-a", a.join());
+		assertEquals("prefixed-a", all.join().get("a"));
+		assertEquals("environment-b", all.join().get("b"));
+		assertEquals("global-c", all.join().get("c"));
+		assertFalse(all.join().containsKey("d"));
+		assertEquals(3, all.join().size());
+
+		// one request for a, two (12 names) for the rest
+		assertEquals(3, ssmClient.store.getParametersCalls.get());
+
+	}
+
+	@Test
+	public void should_fail_if_setting_can_not_be_found() {
+
+		// setup
+		final AwsSsmAsyncSettingProvider provider = new AwsSsmAsyncSettingProvider(ssmClient, "prefix");
+
+		// run test and assert results
+		try {
+			provider.getPropertyAsync("test", "missing").join();
+			fail("no parameter was found - this should have failed.");
+		} catch (final CompletionException e) {
+			assertEquals("unable to find parameter using pattern /test/prefix/missing", e.getCause().getMessage());
+		}
+
+		try {
+			provider.getProperty("test", "missing");
+			fail("no parameter was found - this should have failed.");
+		} catch (final RuntimeException e) {
+			assertEquals("unable to find parameter using pattern /test/prefix/missing", e.getMessage());
+		}
+
+	}
+
+	@Test
+	public void should_not_exceed_in_flight_limit() {
+
+		// setup - 50 keys have 150 names, so 15 requests
+		final List<String> keys = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			keys.add("key" + i);
+			ssmClient.withParameter("/global/key" + i, "value" + i);
+		}
+		final AwsSsmAsyncSettingProvider provider = new AwsSsmAsyncSettingProvider(ssmClient, "prefix")
+			.withMaxInFlight(3);
+
+		// run test
+		final Map<String, String> values = provider.getProperties("test", keys);
+
+		// assert results
+		assertEquals(50, values.size());
+		assertEquals("value42", values.get("key42"));
+		assertEquals(15, ssmClient.store.getParametersCalls.get());
+		assertEquals(3, ssmClient.maxInFlight.get());
+
+	}
+
+	@Test
+	public void should_send_requests_concurrently() {
+
+		// setup - 40 keys are 120 names, or 12 requests - and the fake only answers once all 12 are waiting (a
+		// provider that sent them one at a time would only get answers after 10 seconds each)
+		final CountingSsmClient blockingClient = new CountingSsmClient();
+		final CountingSsmAsyncClient gatedClient = new CountingSsmAsyncClient(10_000).withGate(12);
+		final List<String> keys = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			keys.add("key" + i);
+			blockingClient.withParameter("/test/key" + i, "value" + i);
+			gatedClient.withParameter("/test/key" + i, "value" + i);
+		}
+		final AwsSsmV2SettingProvider blockingProvider = new AwsSsmV2SettingProvider(blockingClient, "prefix");
+		final AwsSsmAsyncSettingProvider asyncProvider = new AwsSsmAsyncSettingProvider(gatedClient, "prefix")
+			.withMaxInFlight(12);
+
+		// run test
+		final Map<String, String> blockingValues = blockingProvider.getProperties("test", keys);
+		final long asyncStart = System.nanoTime();
+		final Map<String, String> asyncValues = asyncProvider.getProperties("test", keys);
+		final long asyncMillis = (System.nanoTime() - asyncStart) / 1_000_000;
+		gatedClient.close();
+
+		// assert results
+		assertEquals(blockingValues, asyncValues);
+		assertEquals(40, asyncValues.size());
+		assertEquals(12, gatedClient.store.getParametersCalls.get());
+		assertEquals(12, gatedClient.maxInFlight.get());
+		// only fails if the gate never opened - it is nowhere near the limit otherwise
+		assertTrue("async took " + asyncMillis + "ms", asyncMillis < 10_000);
+
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void should_report_failed_requests_to_exception_handler() {
+
+		// setup
+		final SsmAsyncClient failingClient = mock(SsmAsyncClient.class);
+		final Consumer<ProviderExceptionHandler.ExceptionInfo> handler = mock(Consumer.class);
+		final CompletableFuture<?> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new RuntimeException("throttled"));
+		when(failingClient.getParameters(any(GetParametersRequest.class))).thenReturn((CompletableFuture) failed);
+
+		final AwsSsmAsyncSettingProvider provider = new AwsSsmAsyncSettingProvider(failingClient, "prefix", handler);
+
+		// run test
+		final Map<String, String> values = provider.getProperties("test", Arrays.asList("a", "b"));
+
+		// assert results
+		assertTrue(values.isEmpty());
+		verify(handler).accept(any(ProviderExceptionHandler.ExceptionInfo.class));
+
+	}
+
+}
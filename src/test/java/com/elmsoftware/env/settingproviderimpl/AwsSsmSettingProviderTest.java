@@ -1,8 +1,8 @@
 package com.elmsoftware.env.settingproviderimpl;
 
 import com.amazonaws.services.simplesystemsmanagement.AWSSimpleSystemsManagement;
-import com.amazonaws.services.simplesystemsmanagement.model.GetParameterRequest;
-import com.amazonaws.services.simplesystemsmanagement.model.GetParameterResult;
+import com.amazonaws.services.simplesystemsmanagement.model.GetParametersRequest;
+import com.amazonaws.services.simplesystemsmanagement.model.GetParametersResult;
 import com.amazonaws.services.simplesystemsmanagement.model.Parameter;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.After;
@@ -14,9 +14,12 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
@@ -26,6 +29,12 @@ import static org.mockito.Mockito.*;
 @RunWith(MockitoJUnitRunner.class)
 public class AwsSsmSettingProviderTest {
 
+	private static final List<String> EXPECTED_NAMES = Arrays.asList(
+		"/fml/prefix/snapped-the-frame",
+		"/fml/snapped-the-frame",
+		"/global/snapped-the-frame"
+	);
+
 	@Mock
 	private Consumer<ProviderExceptionHandler.ExceptionInfo> handler;
 
@@ -35,7 +44,7 @@ public class AwsSsmSettingProviderTest {
 	private AwsSsmSettingProvider provider;
 
 	@Captor
-	private ArgumentCaptor<GetParameterRequest> getParameterRequestArgumentCaptor;
+	private ArgumentCaptor<GetParametersRequest> getParametersRequestArgumentCaptor;
 
 	@Before
 	public void beforeAwsSsmSettingProviderTest() {
@@ -54,16 +63,17 @@ public class AwsSsmSettingProviderTest {
 		provider = new AwsSsmSettingProvider(ssm, "prefix");
 
 		final String expected = "snapped-the-frame";
-		final GetParameterResult parameterResult = new GetParameterResult()
-			.withParameter(new Parameter().withValue(expected));
+		final GetParametersResult parametersResult = new GetParametersResult()
+			.withParameters(new Parameter().withName("/foo/prefix/my-key").withValue(expected))
+			.withInvalidParameters("/foo/my-key", "/global/my-key");
 
-		when(ssm.getParameter(any())).thenReturn(parameterResult);
+		when(ssm.getParameters(any())).thenReturn(parametersResult);
 
 		// run test
 		final String actual = provider.getProperty("foo", "my-key");
 
 		// verify mocks / capture values
-		verify(ssm).getParameter(getParameterRequestArgumentCaptor.capture());
+		verify(ssm).getParameters(getParametersRequestArgumentCaptor.capture());
 
 		// assert results
 
@@ -71,25 +81,40 @@ public class AwsSsmSettingProviderTest {
 		assertEquals(expected, actual);
 
 		// was the request what we expected?
-		final List<String> nameList = getParameterRequestArgumentCaptor.getAllValues()
-			.stream()
-			.map(GetParameterRequest::getName)
-			.collect(Collectors.toList());
-		assertTrue(nameList.contains("/foo/prefix/my-key"));
+		final GetParametersRequest request = getParametersRequestArgumentCaptor.getValue();
+		assertEquals(Arrays.asList("/foo/prefix/my-key", "/foo/my-key", "/global/my-key"), request.getNames());
+		assertTrue(request.getWithDecryption());
 
 	}
 
 	@Test
-	public void should_blow_if_setting_can_not_be_found() {
+	public void should_use_most_specific_value_found() {
 
 		// setup
-		final String[] expectedValues = {
-			"/fml/prefix/snapped-the-frame",
-			"/fml/snapped-the-frame",
-			"/global/snapped-the-frame"
-		};
+		when(ssm.getParameters(any())).thenReturn(new GetParametersResult()
+			.withParameters(
+				new Parameter().withName("/global/snapped-the-frame").withValue("global-value"),
+				new Parameter().withName("/fml/snapped-the-frame").withValue("environment-value")
+			)
+			.withInvalidParameters("/fml/prefix/snapped-the-frame"));
 
-		when(ssm.getParameter(any())).thenThrow(new RuntimeException("no parameter defined"));
+		// run test
+		final String actual = provider.getProperty("fml", "snapped-the-frame");
+
+		// verify mocks / capture values
+		verify(ssm).getParameters(getParametersRequestArgumentCaptor.capture());
+
+		// assert results
+		assertEquals("environment-value", actual);
+		assertEquals(EXPECTED_NAMES, getParametersRequestArgumentCaptor.getValue().getNames());
+
+	}
+
+	@Test
+	public void should_blow_if_setting_can_not_be_found() {
+
+		// setup
+		when(ssm.getParameters(any())).thenReturn(new GetParametersResult().withInvalidParameters(EXPECTED_NAMES));
 
 		// run test
 		try {
@@ -103,18 +128,11 @@ public class AwsSsmSettingProviderTest {
 			);
 		}
 
-		// verify mocks / capture values
-		verify(ssm, times(3)).getParameter(getParameterRequestArgumentCaptor.capture());
+		// verify mocks / capture values - one request for all of the names
+		verify(ssm).getParameters(getParametersRequestArgumentCaptor.capture());
 
 		// assert results
-		final List<String> nameList = getParameterRequestArgumentCaptor.getAllValues()
-			.stream()
-			.map(GetParameterRequest::getName)
-			.collect(Collectors.toList());
-
-		for (final String value : expectedValues) {
-			assertTrue("name list should include '" + value + "'", nameList.contains(value));
-		}
+		assertEquals(EXPECTED_NAMES, getParametersRequestArgumentCaptor.getValue().getNames());
 
 	}
 
@@ -124,13 +142,7 @@ public class AwsSsmSettingProviderTest {
 		provider = new AwsSsmSettingProvider(ssm, "prefix", handler);
 
 		// setup
-		final String[] expectedValues = {
-			"/fml/prefix/snapped-the-frame",
-			"/fml/snapped-the-frame",
-			"/global/snapped-the-frame"
-		};
-
-		when(ssm.getParameter(any())).thenThrow(new RuntimeException("no parameter defined"));
+		when(ssm.getParameters(any())).thenThrow(new RuntimeException("no parameter defined"));
 
 		// run test
 		try {
@@ -145,18 +157,11 @@ public class AwsSsmSettingProviderTest {
 		}
 
 		// verify mocks / capture values
-		verify(ssm, times(3)).getParameter(getParameterRequestArgumentCaptor.capture());
-		verify(handler, times(3)).accept(any(ProviderExceptionHandler.ExceptionInfo.class));
+		verify(ssm).getParameters(getParametersRequestArgumentCaptor.capture());
+		verify(handler).accept(any(ProviderExceptionHandler.ExceptionInfo.class));
 
 		// assert results
-		final List<String> nameList = getParameterRequestArgumentCaptor.getAllValues()
-			.stream()
-			.map(GetParameterRequest::getName)
-			.collect(Collectors.toList());
-
-		for (final String value : expectedValues) {
-			assertTrue("name list should include '" + value + "'", nameList.contains(value));
-		}
+		assertEquals(EXPECTED_NAMES, getParametersRequestArgumentCaptor.getValue().getNames());
 
 	}
 
@@ -173,13 +178,7 @@ public class AwsSsmSettingProviderTest {
 		);
 
 		// setup
-		final String[] expectedValues = {
-			"/fml/prefix/snapped-the-frame",
-			"/fml/snapped-the-frame",
-			"/global/snapped-the-frame"
-		};
-
-		when(ssm.getParameter(any())).thenThrow(new RuntimeException("no parameter defined"));
+		when(ssm.getParameters(any())).thenThrow(new RuntimeException("no parameter defined"));
 
 		// run test
 		try {
@@ -194,16 +193,137 @@ public class AwsSsmSettingProviderTest {
 		}
 
 		// verify mocks / capture values
-		verify(ssm).getParameter(getParameterRequestArgumentCaptor.capture());
+		verify(ssm).getParameters(getParametersRequestArgumentCaptor.capture());
 
 		// assert results
-		final List<String> actualValues = getParameterRequestArgumentCaptor.getAllValues()
-			.stream()
-			.map(GetParameterRequest::getName)
-			.collect(Collectors.toList());
+		assertEquals(EXPECTED_NAMES, getParametersRequestArgumentCaptor.getValue().getNames());
+
+	}
+
+	@Test
+	public void should_pack_many_keys_into_requests_of_ten_names() {
+
+		// setup - 4 keys have 12 distinct names
+		when(ssm.getParameters(any())).thenReturn(
+			new GetParametersResult().withParameters(
+				new Parameter().withName("/fml/prefix/key1").withValue("value1"),
+				new Parameter().withName("/global/key2").withValue("value2")
+			),
+			new GetParametersResult().withParameters(
+				new Parameter().withName("/global/key4").withValue("value4")
+			)
+		);
 
-		assertEquals(1, actualValues.size());
-		assertTrue(actualValues.contains("/fml/prefix/snapped-the-frame"));
+		// run test
+		final Map<String, String> values = provider.getProperties("fml", Arrays.asList("key1", "key2", "key3", "key4"));
+
+		// verify mocks / capture values
+		verify(ssm, times(2)).getParameters(getParametersRequestArgumentCaptor.capture());
+
+		// assert results
+		final Map<String, String> expected = new HashMap<>();
+		expected.put("key1", "value1");
+		expected.put("key2", "value2");
+		expected.put("key4", "value4");
+		assertEquals(expected, values);
+
+		final List<String> names = new ArrayList<>();
+		for (final GetParametersRequest request : getParametersRequestArgumentCaptor.getAllValues()) {
+			assertTrue(request.getNames().size() <= 10);
+			names.addAll(request.getNames());
+		}
+		assertEquals(12, names.size());
+		assertEquals(10, getParametersRequestArgumentCaptor.getAllValues().get(0).getNames().size());
+
+	}
+
+	@Test
+	public void should_not_ask_for_the_same_name_twice() {
+
+		// setup
+		when(ssm.getParameters(any())).thenReturn(new GetParametersResult());
+
+		// run test - in the global environment, /global/key is a candidate twice
+		final Map<String, String> values = provider.getProperties("global", Arrays.asList("key", "key"));
+
+		// verify mocks / capture values
+		verify(ssm).getParameters(getParametersRequestArgumentCaptor.capture());
+
+		// assert results
+		assertTrue(values.isEmpty());
+		assertEquals(
+			Arrays.asList("/global/prefix/key", "/global/key"),
+			getParametersRequestArgumentCaptor.getValue().getNames()
+		);
+
+	}
+
+	@Test
+	public void should_serve_lookups_from_prefetched_parameters() {
+
+		// setup
+		final CountingAwsSimpleSystemsManagement fakeSsm = new CountingAwsSimpleSystemsManagement()
+			.withParameter("/fml/prefix/a", "prefixed-a")
+			.withParameter("/fml/a", "environment-a")
+			.withParameter("/fml/b", "environment-b")
+			.withParameter("/fml/nested/deeper/d", "nested-d")
+			.withParameter("/global/b", "global-b")
+			.withParameter("/global/c", "global-c")
+			.withParameter("/other/prefix/a", "other-a");
+		provider = new AwsSsmSettingProvider(fakeSsm, "prefix").withPrefetch();
+
+		// run test
+		final String a = provider.getProperty("fml", "a");
+		final String b = provider.getProperty("fml", "b");
+		final String c = provider.getProperty("fml", "c");
+		final Map<String, String> values = provider.getProperties("fml", Arrays.asList("a", "b", "nested/deeper/d", "e"));
+
+		// assert results - the same precedence as a direct lookup
+		assertEquals("prefixed-a", a);
+		assertEquals("environment-b", b);
+		assertEquals("global-c", c);
+		final Map<String, String> expected = new HashMap<>();
+		expected.put("a", "prefixed-a");
+		expected.put("b", "environment-b");
+		expected.put("nested/deeper/d", "nested-d");
+		assertEquals(expected, values);
+
+		// one scan of each path (a page each - /fml only for the two parameters directly under it), and one lookup of
+		// the names of nested/deeper/d the scans don't cover
+		assertEquals(3, fakeSsm.getParametersByPathCalls.get());
+		assertEquals(1, fakeSsm.getParametersCalls.get());
+
+		try {
+			provider.getProperty("fml", "e");
+			fail("e is not a parameter - this should have failed.");
+		} catch (final RuntimeException e) {
+			assertEquals("unable to find parameter using pattern /fml/prefix/e", e.getMessage());
+		}
+		assertEquals(3, fakeSsm.getParametersByPathCalls.get());
+		assertEquals(1, fakeSsm.getParametersCalls.get());
+
+	}
+
+	@Test
+	public void should_look_up_parameters_directly_if_prefetch_fails() {
+
+		// setup
+		provider = new AwsSsmSettingProvider(ssm, "prefix", handler).withPrefetch();
+		when(ssm.getParametersByPath(any())).thenThrow(new RuntimeException("access denied"));
+		when(ssm.getParameters(any())).thenReturn(new GetParametersResult()
+			.withParameters(new Parameter().withName("/global/snapped-the-frame").withValue("global-value")));
+
+		// run test
+		final String actual = provider.getProperty("fml", "snapped-the-frame");
+
+		// verify mocks / capture values
+		verify(ssm).getParametersByPath(any());
+		verify(ssm).getParameters(getParametersRequestArgumentCaptor.capture());
+		verify(handler).accept(any(ProviderExceptionHandler.ExceptionInfo.class));
+
+		// assert results
+		assertEquals("global-value", actual);
+		assertEquals(EXPECTED_NAMES, getParametersRequestArgumentCaptor.getValue().getNames());
 
 	}
 
@@ -1,5 +1,6 @@
 package com.elmsoftware.env.settingproviderimpl;
 
+import com.elmsoftware.env.VersionedSettingProvider;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -8,10 +9,17 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import software.amazon.awssdk.services.ssm.SsmClient;
-import software.amazon.awssdk.services.ssm.model.GetParameterRequest;
-import software.amazon.awssdk.services.ssm.model.GetParameterResponse;
+import software.amazon.awssdk.services.ssm.model.GetParametersRequest;
+import software.amazon.awssdk.services.ssm.model.GetParametersResponse;
 import software.amazon.awssdk.services.ssm.model.Parameter;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
@@ -25,7 +33,7 @@ public class AwsSsmV2SettingProviderTest {
 	private AwsSsmV2SettingProvider provider;
 
 	@Captor
-	private ArgumentCaptor<GetParameterRequest> requestArgumentCaptor;
+	private ArgumentCaptor<GetParametersRequest> requestArgumentCaptor;
 
 	@Before
 	public void beforeAwsSsmV2SettingProviderTest() {
@@ -37,22 +45,30 @@ public class AwsSsmV2SettingProviderTest {
 
 		// setup
 		final String expected = "expected-value-here";
-		final GetParameterResponse response = GetParameterResponse.builder().parameter(
-			Parameter.builder().value(expected).build()
-		).build();
+		final GetParametersResponse response = GetParametersResponse.builder()
+			.parameters(
+				Parameter.builder().name("/test/prefix/some-key").value(expected).build(),
+				Parameter.builder().name("/global/some-key").value("global-value").build()
+			)
+			.invalidParameters("/test/some-key")
+			.build();
 
-		when(ssmClient.getParameter(any(GetParameterRequest.class))).thenReturn(response);
+		when(ssmClient.getParameters(any(GetParametersRequest.class))).thenReturn(response);
 
 		// run test
 		final String actual = provider.getProperty("test", "some-key");
 
 		// verify mocks / capture values
-		verify(ssmClient).getParameter(requestArgumentCaptor.capture());
+		verify(ssmClient).getParameters(requestArgumentCaptor.capture());
 		verifyNoMoreInteractions(ssmClient);
 
 		// assert results
 		assertEquals(expected, actual);
-		assertEquals("/test/prefix/some-key", requestArgumentCaptor.getValue().name());
+		assertEquals(
+			Arrays.asList("/test/prefix/some-key", "/test/some-key", "/global/some-key"),
+			requestArgumentCaptor.getValue().names()
+		);
+		assertTrue(requestArgumentCaptor.getValue().withDecryption());
 
 	}
 
@@ -61,22 +77,25 @@ public class AwsSsmV2SettingProviderTest {
 
 		// setup
 		final String expected = "expected-value-here";
-		final GetParameterResponse response = GetParameterResponse.builder().parameter(
-			Parameter.builder().value(expected).build()
-		).build();
+		final GetParametersResponse response = GetParametersResponse.builder()
+			.parameters(
+				Parameter.builder().name("/global/some-key").value("global-value").build(),
+				Parameter.builder().name("/test/some-key").value(expected).build()
+			)
+			.invalidParameters("/test/prefix/some-key")
+			.build();
 
-		when(ssmClient.getParameter(any(GetParameterRequest.class))).thenReturn(null, response);
+		when(ssmClient.getParameters(any(GetParametersRequest.class))).thenReturn(response);
 
 		// run test
 		final String actual = provider.getProperty("test", "some-key");
 
 		// verify mocks / capture values
-		verify(ssmClient, times(2)).getParameter(requestArgumentCaptor.capture());
+		verify(ssmClient).getParameters(requestArgumentCaptor.capture());
 		verifyNoMoreInteractions(ssmClient);
 
 		// assert results
 		assertEquals(expected, actual);
-		assertEquals("/test/some-key", requestArgumentCaptor.getValue().name());
 
 	}
 
@@ -84,23 +103,215 @@ public class AwsSsmV2SettingProviderTest {
 	public void should_explode_if_no_matching_parameter_found() {
 
 		// setup
-		final String expected = "expected-value-here";
-
-		when(ssmClient.getParameter(any(GetParameterRequest.class))).thenReturn(null);
+		when(ssmClient.getParameters(any(GetParametersRequest.class))).thenReturn(
+			GetParametersResponse.builder()
+				.invalidParameters("/test/prefix/some-key", "/test/some-key", "/global/some-key")
+				.build()
+		);
 
 		// run test
 		try {
 			provider.getProperty("test", "some-key");
-		} catch (final Exception e) {
+			fail("no parameter was found - this should have failed.");
+		} catch (final SettingNotFoundException e) {
 			assertEquals("unable to find parameter using pattern /test/prefix/some-key", e.getMessage());
+			// a miss is expected - it shouldn't pay for a stack trace
+			assertEquals(0, e.getStackTrace().length);
 		}
 
 		// verify mocks / capture values
-		verify(ssmClient, times(3)).getParameter(requestArgumentCaptor.capture());
+		verify(ssmClient).getParameters(requestArgumentCaptor.capture());
 		verifyNoMoreInteractions(ssmClient);
 
 		// assert results - nothing here
 
 	}
 
+	@Test
+	public void should_leave_missing_keys_out_of_bulk_results() {
+
+		// setup
+		when(ssmClient.getParameters(any(GetParametersRequest.class))).thenReturn(
+			GetParametersResponse.builder()
+				.parameters(Parameter.builder().name("/global/found").value("found-value").build())
+				.build()
+		);
+
+		// run test
+		final Map<String, String> values = provider.getProperties("test", Arrays.asList("found", "missing"));
+
+		// verify mocks / capture values
+		verify(ssmClient).getParameters(requestArgumentCaptor.capture());
+		verifyNoMoreInteractions(ssmClient);
+
+		// assert results
+		assertEquals(Collections.singletonMap("found", "found-value"), values);
+		assertEquals(6, requestArgumentCaptor.getValue().names().size());
+
+	}
+
+	@Test
+	public void should_return_parameter_versions() {
+
+		// setup
+		when(ssmClient.getParameters(any(GetParametersRequest.class))).thenReturn(
+			GetParametersResponse.builder()
+				.parameters(
+					Parameter.builder().name("/test/prefix/rotated").value("new-value").version(3L).build(),
+					Parameter.builder().name("/global/rotated").value("global-value").version(7L).build()
+				)
+				.build()
+		);
+
+		// run test
+		final Map<String, VersionedSettingProvider.VersionedValue> values =
+			provider.getVersionedProperties("test", Arrays.asList("rotated", "missing"));
+
+		// verify mocks / capture values
+		verify(ssmClient).getParameters(any(GetParametersRequest.class));
+		verifyNoMoreInteractions(ssmClient);
+
+		// assert results
+		assertEquals(
+			Collections.singletonMap("rotated", new VersionedSettingProvider.VersionedValue("new-value", 3)),
+			values
+		);
+
+	}
+
+	@Test
+	public void should_serve_lookups_from_prefetched_parameters() {
+
+		// setup
+		final CountingSsmClient fakeClient = new CountingSsmClient()
+			.withParameter("/test/prefix/some-key", "prefixed-value")
+			.withParameter("/test/some-key", "environment-value")
+			.withParameter("/test/other-key", "environment-other")
+			.withParameter("/test/other-service/a", "not-ours")
+			.withParameter("/test/other-service/b", "not-ours")
+			.withParameter("/test/other-service/c", "not-ours")
+			.withParameter("/global/other-key", "global-other")
+			.withParameter("/global/global-key", "global-value");
+		provider = new AwsSsmV2SettingProvider(fakeClient, "prefix").withPrefetch();
+
+		// run test
+		final Map<String, String> values = provider.getProperties(
+			"test",
+			Arrays.asList("some-key", "other-key", "global-key", "missing")
+		);
+		final String actual = provider.getProperty("test", "some-key");
+
+		// assert results
+		assertEquals("prefixed-value", actual);
+		assertEquals(3, values.size());
+		assertEquals("prefixed-value", values.get("some-key"));
+		assertEquals("environment-other", values.get("other-key"));
+		assertEquals("global-value", values.get("global-key"));
+
+		// /test/prefix: 1 page, the two directly under /test: 1 page, /global: 1 page - and nothing after that (other
+		// services' parameters, and ours under /test/prefix, aren't read again with /test)
+		assertEquals(3, fakeClient.getParametersByPathCalls.get());
+		assertEquals(0, fakeClient.getParametersCalls.get());
+
+	}
+
+	@Test
+	public void should_prefetch_each_environment_once() {
+
+		// setup
+		final CountingSsmClient fakeClient = new CountingSsmClient()
+			.withParameter("/test/some-key", "test-value")
+			.withParameter("/prod/some-key", "prod-value");
+		provider = new AwsSsmV2SettingProvider(fakeClient, "prefix").withPrefetch();
+
+		// run test
+		for (int i = 0; i < 5; i++) {
+			assertEquals("test-value", provider.getProperty("test", "some-key"));
+			assertEquals("prod-value", provider.getProperty("prod", "some-key"));
+		}
+
+		// assert results
+		assertEquals(6, fakeClient.getParametersByPathCalls.get());
+		assertEquals(0, fakeClient.getParametersCalls.get());
+
+	}
+
+	@Test
+	public void should_retry_throttled_requests() {
+
+		// setup
+		final CountingSsmClient fakeClient = new CountingSsmClient()
+			.withParameter("/test/some-key", "test-value")
+			.withThrottling(2);
+		final SsmThrottling throttling = new SsmThrottling().withBackoff(Duration.ofMillis(1), Duration.ofMillis(5));
+		provider = new AwsSsmV2SettingProvider(fakeClient, "prefix").withThrottling(throttling);
+
+		// run test
+		final String actual = provider.getProperty("test", "some-key");
+
+		// assert results
+		assertEquals("test-value", actual);
+		assertEquals(3, fakeClient.getParametersCalls.get());
+		assertEquals(2, throttling.getThrottledCount());
+		assertEquals(2, throttling.getRetryCount());
+		assertTrue(throttling.getRate() < SsmThrottling.DEFAULT_MAX_RATE);
+
+	}
+
+	@Test
+	public void should_report_throttling_separately_from_missing_parameters() {
+
+		// setup
+		final List<ProviderExceptionHandler.ExceptionInfo> reported = new ArrayList<>();
+		final CountingSsmClient fakeClient = new CountingSsmClient()
+			.withParameter("/test/some-key", "test-value")
+			.withThrottling(Integer.MAX_VALUE);
+		final SsmThrottling throttling = new SsmThrottling()
+			.withMaxAttempts(3)
+			.withBackoff(Duration.ofMillis(1), Duration.ofMillis(5));
+		provider = new AwsSsmV2SettingProvider(fakeClient, "prefix", recordingHandler(reported)).withThrottling(throttling);
+
+		// run test
+		final Map<String, String> values = provider.getProperties("test", Collections.singletonList("some-key"));
+
+		// assert results
+		assertTrue(values.isEmpty());
+		assertEquals(3, fakeClient.getParametersCalls.get());
+		assertEquals(1, reported.size());
+		assertTrue(reported.get(0).isThrottled());
+		assertEquals("/test/prefix/some-key, /test/some-key, /global/some-key", reported.get(0).getName());
+
+	}
+
+	@Test
+	public void should_not_retry_other_failures() {
+
+		// setup
+		final List<ProviderExceptionHandler.ExceptionInfo> reported = new ArrayList<>();
+		final SsmThrottling throttling = new SsmThrottling();
+		when(ssmClient.getParameters(any(GetParametersRequest.class))).thenThrow(new IllegalStateException("nope"));
+		provider = new AwsSsmV2SettingProvider(ssmClient, "prefix", recordingHandler(reported)).withThrottling(throttling);
+
+		// run test
+		provider.getProperties("test", Collections.singletonList("some-key"));
+
+		// verify mocks / capture values
+		verify(ssmClient).getParameters(any(GetParametersRequest.class));
+
+		// assert results
+		assertEquals(1, reported.size());
+		assertFalse(reported.get(0).isThrottled());
+		assertEquals(0, throttling.getRetryCount());
+
+	}
+
+	private static ProviderExceptionHandler recordingHandler(final List<ProviderExceptionHandler.ExceptionInfo> reported) {
+		return new ProviderExceptionHandler() {
+			@Override
+			public void accept(final ExceptionInfo info) {
+				reported.add(info);
+			}
+		};
+	}
+
 }
@@ -0,0 +1,253 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import com.elmsoftware.env.SettingProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class CachingSettingProviderTest {
+
+	@Mock
+	private SettingProvider settingProvider;
+
+	private final AtomicLong now = new AtomicLong();
+
+	private CachingSettingProvider provider;
+
+	@Before
+	public void beforeCachingSettingProviderTest() {
+		initMocks(this);
+		provider = new CachingSettingProvider(settingProvider)
+			.withTtl(Duration.ofMinutes(5))
+			.withNegativeTtl(Duration.ofSeconds(30))
+			.withTicker(now::get);
+	}
+
+	@Test
+	public void should_cache_values_until_they_expire() {
+
+		// setup
+		when(settingProvider.getProperty("test", "key")).thenReturn("value1", "value2");
+
+		// run test and assert results
+		assertEquals("value1", provider.getProperty("test", "key"));
+		now.addAndGet(Duration.ofMinutes(4).toNanos());
+		assertEquals("value1", provider.getProperty("test", "key"));
+		now.addAndGet(Duration.ofMinutes(1).toNanos());
+		assertEquals("value2", provider.getProperty("test", "key"));
+
+		// verify mocks / capture values
+		verify(settingProvider, times(2)).getProperty("test", "key");
+		assertEquals(1, provider.getHitCount());
+		assertEquals(2, provider.getMissCount());
+
+	}
+
+	@Test
+	public void should_keep_environments_apart() {
+
+		// setup
+		when(settingProvider.getProperty("test", "key")).thenReturn("test-value");
+		when(settingProvider.getProperty("prod", "key")).thenReturn("prod-value");
+
+		// run test and assert results
+		assertEquals("test-value", provider.getProperty("test", "key"));
+		assertEquals("prod-value", provider.getProperty("prod", "key"));
+		assertEquals("test-value", provider.getProperty("test", "key"));
+		assertEquals("prod-value", provider.getProperty("prod", "key"));
+
+		// verify mocks / capture values
+		verify(settingProvider).getProperty("test", "key");
+		verify(settingProvider).getProperty("prod", "key");
+
+	}
+
+	@Test
+	public void should_cache_misses_for_negative_ttl() {
+
+		// setup
+		when(settingProvider.getProperty("test", "key")).thenReturn(null, "value");
+
+		// run test and assert results
+		assertNull(provider.getProperty("test", "key"));
+		now.addAndGet(Duration.ofSeconds(29).toNanos());
+		assertNull(provider.getProperty("test", "key"));
+		now.addAndGet(Duration.ofSeconds(1).toNanos());
+		assertEquals("value", provider.getProperty("test", "key"));
+
+		// verify mocks / capture values
+		verify(settingProvider, times(2)).getProperty("test", "key");
+
+	}
+
+	@Test
+	public void should_cache_and_rethrow_not_found() {
+
+		// setup
+		when(settingProvider.getProperty("test", "key")).thenThrow(new SettingNotFoundException("/test/key"));
+
+		// run test and assert results
+		for (int i = 0; i < 3; i++) {
+			try {
+				provider.getProperty("test", "key");
+				fail("the exception should be thrown every time");
+			} catch (final SettingNotFoundException e) {
+				assertEquals("/test/key", e.getPattern());
+			}
+		}
+		// a bulk lookup sees the same miss
+		assertEquals(Collections.emptyMap(), provider.getProperties("test", Collections.singletonList("key")));
+
+		// verify mocks / capture values
+		verify(settingProvider).getProperty("test", "key");
+		verify(settingProvider, never()).getProperties(anyString(), anyCollectionOf(String.class));
+
+	}
+
+	@Test
+	public void should_not_cache_failures() {
+
+		// setup
+		final RuntimeException throttled = new RuntimeException("rate exceeded");
+		when(settingProvider.getProperty("test", "key")).thenThrow(throttled).thenReturn("value");
+
+		// run test and assert results
+		try {
+			provider.getProperty("test", "key");
+			fail("the exception should be thrown");
+		} catch (final RuntimeException e) {
+			assertSame(throttled, e);
+		}
+		assertEquals("value", provider.getProperty("test", "key"));
+
+		// verify mocks / capture values
+		verify(settingProvider, times(2)).getProperty("test", "key");
+
+	}
+
+	@Test
+	public void should_not_cache_misses_with_zero_negative_ttl() {
+
+		// setup
+		provider.withNegativeTtl(Duration.ZERO);
+		when(settingProvider.getProperty("test", "key")).thenReturn(null);
+
+		// run test
+		provider.getProperty("test", "key");
+		provider.getProperty("test", "key");
+
+		// verify mocks / capture values
+		verify(settingProvider, times(2)).getProperty("test", "key");
+		assertEquals(0, provider.size());
+
+	}
+
+	@Test
+	public void should_only_ask_for_uncached_keys_in_bulk() {
+
+		// setup
+		when(settingProvider.getProperty("test", "a")).thenReturn("value-a");
+		when(settingProvider.getProperties(eq("test"), anyCollection()))
+			.thenReturn(Collections.singletonMap("b", "value-b"));
+		provider.getProperty("test", "a");
+
+		// run test
+		final Map<String, String> first = provider.getProperties("test", Arrays.asList("a", "b", "c"));
+		final Map<String, String> second = provider.getProperties("test", Arrays.asList("a", "b", "c"));
+
+		// assert results
+		final Map<String, String> expected = new HashMap<>();
+		expected.put("a", "value-a");
+		expected.put("b", "value-b");
+		assertEquals(expected, first);
+		assertEquals(expected, second);
+
+		// verify mocks / capture values - c was a miss, and that was cached too
+		verify(settingProvider).getProperty("test", "a");
+		verify(settingProvider).getProperties("test", new LinkedHashSet<>(Arrays.asList("b", "c")));
+		verifyNoMoreInteractions(settingProvider);
+
+	}
+
+	@Test
+	public void should_evict_least_recently_used_entries() {
+
+		// setup
+		provider = new CachingSettingProvider(new MapSettingProvider(new HashMap<>()))
+			.withMaximumSize(10)
+			.withTicker(now::get);
+		for (int i = 0; i < 10; i++) {
+			now.incrementAndGet();
+			provider.getProperty("test", "key" + i);
+		}
+
+		// key0 is the oldest, but it is used again
+		now.incrementAndGet();
+		provider.getProperty("test", "key0");
+
+		// run test
+		now.incrementAndGet();
+		provider.getProperty("test", "key10");
+
+		// assert results - down to 90%, oldest first
+		assertEquals(9, provider.size());
+		assertEquals(2, provider.getEvictionCount());
+		final long hits = provider.getHitCount();
+		provider.getProperty("test", "key0");
+		provider.getProperty("test", "key10");
+		assertEquals(hits + 2, provider.getHitCount());
+
+	}
+
+	@Test
+	public void should_be_safe_for_concurrent_use() throws Exception {
+
+		// setup
+		final Map<String, String> values = new HashMap<>();
+		for (int i = 0; i < 100; i++) {
+			values.put("key" + i, "value" + i);
+		}
+		provider = new CachingSettingProvider(new MapSettingProvider(values)).withMaximumSize(50);
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		// run test
+		final List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					final String key = "key" + (i % 100);
+					assertEquals(values.get(key), provider.getProperty("test", key));
+				}
+			}));
+		}
+		for (final Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+		// assert results
+		assertEquals(80_000, provider.getHitCount() + provider.getMissCount());
+		assertTrue(provider.size() <= 50 + 8);
+
+	}
+
+}
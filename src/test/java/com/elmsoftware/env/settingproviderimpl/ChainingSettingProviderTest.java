@@ -1,10 +1,23 @@
 package com.elmsoftware.env.settingproviderimpl;
 
+import com.elmsoftware.env.Deadline;
 import com.elmsoftware.env.SettingProvider;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -70,4 +83,485 @@ public class ChainingSettingProviderTest {
 
 	}
 
+	@Test
+	public void should_only_ask_later_providers_for_missing_keys() {
+
+		// setup
+		final Map<String, String> found = new HashMap<>();
+		found.put("key1", "value1");
+		found.put("key3", null);
+		when(provider1.getProperties("test", Arrays.asList("key1", "key2", "key3"))).thenReturn(found);
+		when(provider2.getProperties("test", Arrays.asList("key2", "key3")))
+			.thenReturn(Collections.singletonMap("key3", "value3"));
+
+		// run test
+		final Map<String, String> values = provider.getProperties("test", Arrays.asList("key1", "key2", "key3"));
+
+		// assert results
+		final Map<String, String> expected = new HashMap<>();
+		expected.put("key1", "value1");
+		expected.put("key3", "value3");
+		assertEquals(expected, values);
+
+		// verify mocks / capture values
+		verify(provider1).getProperties("test", Arrays.asList("key1", "key2", "key3"));
+		verify(provider2).getProperties("test", Arrays.asList("key2", "key3"));
+		verifyNoMoreInteractions(provider1, provider2);
+
+	}
+
+	@Test
+	public void should_stop_asking_when_all_keys_are_found() {
+
+		// setup
+		when(provider1.getProperties("test", Collections.singletonList("key")))
+			.thenReturn(Collections.singletonMap("key", "value"));
+
+		// run test and assert results
+		assertEquals(
+			Collections.singletonMap("key", "value"),
+			provider.getProperties("test", Collections.singletonList("key"))
+		);
+
+		// verify mocks / capture values
+		verify(provider1).getProperties("test", Collections.singletonList("key"));
+		verifyNoMoreInteractions(provider1, provider2);
+
+	}
+
+	@Test
+	public void should_skip_a_provider_that_uses_up_its_share_of_the_deadline() {
+
+		// setup - the first provider hangs, so it only gets half of the budget
+		final SettingProvider hung = (environment, key) -> {
+			try {
+				Thread.sleep(10_000);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "too-late";
+		};
+		when(provider2.getProperties(eq("test"), anyCollection())).thenReturn(Collections.singletonMap("key", "value2"));
+		provider = new ChainingSettingProvider(hung, provider2).withDeadline(Deadline.after(Duration.ofMillis(400)));
+
+		// run test
+		final long start = System.currentTimeMillis();
+		final Map<String, String> values = provider.getProperties("test", Collections.singletonList("key"));
+		final long elapsed = System.currentTimeMillis() - start;
+
+		// assert results
+		assertEquals(Collections.singletonMap("key", "value2"), values);
+		assertTrue("took " + elapsed + "ms", elapsed >= 150 && elapsed < 400);
+
+	}
+
+	@Test
+	public void should_skip_a_provider_whose_circuit_is_open() {
+
+		// setup - the first provider is down
+		when(provider1.getProperty(eq("test"), anyString())).thenThrow(new RuntimeException("timed out"));
+		when(provider2.getProperty(eq("test"), anyString())).thenReturn("value2");
+		final List<String> changes = new ArrayList<>();
+		provider = new ChainingSettingProvider(provider1, provider2).withCircuitBreakers(name -> new CircuitBreaker(name)
+			.withWindow(5, 5)
+			.withListener((breaker, from, to) -> changes.add(breaker.getName() + " " + to)));
+
+		// run test
+		for (int i = 0; i < 20; i++) {
+			assertEquals("value2", provider.getProperty("test", "key" + i));
+		}
+
+		// verify mocks / capture values - the first provider was only asked until its breaker opened
+		verify(provider1, times(5)).getProperty(eq("test"), anyString());
+		verify(provider2, times(20)).getProperty(eq("test"), anyString());
+
+		// assert results
+		assertEquals(CircuitBreaker.State.OPEN, provider.getCircuitBreakers().get(0).getState());
+		assertEquals(CircuitBreaker.State.CLOSED, provider.getCircuitBreakers().get(1).getState());
+		assertEquals(Collections.singletonList(provider1.getClass().getSimpleName() + "#0 OPEN"), changes);
+
+	}
+
+	@Test
+	public void should_not_count_a_miss_as_a_failure() {
+
+		// setup - like the SSM providers, the first one throws when it doesn't have a key
+		when(provider1.getProperty("test", "ssm-key")).thenReturn("ssm-value");
+		when(provider1.getProperty(eq("test"), startsWith("key"))).thenThrow(new SettingNotFoundException("/test/key"));
+		when(provider2.getProperty(eq("test"), startsWith("key"))).thenReturn("value2");
+		provider = new ChainingSettingProvider(provider1, provider2).withCircuitBreakers(name -> new CircuitBreaker(name)
+			.withWindow(5, 5));
+
+		// run test
+		for (int i = 0; i < 20; i++) {
+			assertEquals("value2", provider.getProperty("test", "key" + i));
+		}
+		final String value = provider.getProperty("test", "ssm-key");
+
+		// verify mocks / capture values - the first provider was asked every time
+		verify(provider1, times(20)).getProperty(eq("test"), startsWith("key"));
+
+		// assert results
+		assertEquals("ssm-value", value);
+		assertEquals(CircuitBreaker.State.CLOSED, provider.getCircuitBreakers().get(0).getState());
+		assertEquals(0, provider.getCircuitBreakers().get(0).getFailureRate(), 0);
+
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void should_still_throw_without_circuit_breakers() {
+
+		// setup
+		when(provider1.getProperty("test", "key")).thenThrow(new RuntimeException("timed out"));
+
+		// run test
+		provider.getProperty("test", "key");
+
+	}
+
+	@Test
+	public void should_prefer_a_slow_first_provider_over_a_fast_hedge() {
+
+		// setup - the first provider answers after the hedge has already answered
+		final SettingProvider slow = (environment, key) -> {
+			sleep(300);
+			return "slow-value";
+		};
+		final SettingProvider fast = (environment, key) -> "fast-value";
+		provider = new ChainingSettingProvider(slow, fast).withHedging(Duration.ofMillis(50));
+
+		// run test
+		final String value = provider.getProperty("test", "key");
+
+		// assert results
+		assertEquals("slow-value", value);
+
+	}
+
+	@Test
+	public void should_hedge_after_the_delay_and_cancel_what_is_not_needed() throws InterruptedException {
+
+		// setup - the first provider hangs, the second has the key, and the third should be cancelled
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		final List<Long> asked = Collections.synchronizedList(new ArrayList<>());
+		final long start = System.nanoTime();
+		final SettingProvider hung = (environment, key) -> {
+			asked.add(System.nanoTime() - start);
+			sleep(300);
+			return null;
+		};
+		final SettingProvider found = (environment, key) -> {
+			asked.add(System.nanoTime() - start);
+			return "value2";
+		};
+		final SettingProvider unneeded = (environment, key) -> {
+			asked.add(System.nanoTime() - start);
+			try {
+				Thread.sleep(10_000);
+			} catch (final InterruptedException e) {
+				interrupted.countDown();
+			}
+			return "value3";
+		};
+		provider = new ChainingSettingProvider(hung, found, unneeded).withHedging(Duration.ofMillis(100));
+
+		// run test
+		final String value = provider.getProperty("test", "key");
+
+		// assert results - each hedge started after the delay, and the third was interrupted once it wasn't needed
+		assertEquals("value2", value);
+		assertEquals(3, asked.size());
+		assertTrue("asked after " + asked.get(1) + "ns", asked.get(1) >= TimeUnit.MILLISECONDS.toNanos(100));
+		assertTrue("asked after " + asked.get(2) + "ns", asked.get(2) >= TimeUnit.MILLISECONDS.toNanos(200));
+		assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+
+	}
+
+	@Test
+	public void should_ask_every_provider_at_once_without_a_delay() {
+
+		// setup - each provider takes 200ms, and only the last has the keys
+		final SettingProvider slow = (environment, key) -> {
+			sleep(200);
+			return null;
+		};
+		final SettingProvider last = (environment, key) -> {
+			sleep(200);
+			return key + "-value";
+		};
+		provider = new ChainingSettingProvider(slow, slow, last).withHedging(Duration.ZERO);
+
+		// run test
+		final long start = System.currentTimeMillis();
+		final Map<String, String> values = provider.getProperties("test", Arrays.asList("a", "b"));
+		final long elapsed = System.currentTimeMillis() - start;
+
+		// assert results
+		assertEquals("a-value", values.get("a"));
+		assertEquals("b-value", values.get("b"));
+		assertTrue("took " + elapsed + "ms", elapsed < 500);
+
+	}
+
+	@Test
+	public void should_let_another_probe_through_when_a_hedged_probe_is_cancelled() {
+
+		// setup - the first provider is slow enough to be hedged; the second fails (opening its breaker), then hangs on
+		// the probe until it is cancelled, then works
+		final AtomicLong clock = new AtomicLong();
+		final AtomicInteger calls = new AtomicInteger();
+		final SettingProvider slow = (environment, key) -> {
+			sleep(150);
+			return "value1";
+		};
+		final SettingProvider flaky = (environment, key) -> {
+			switch (calls.getAndIncrement()) {
+				case 0:
+					throw new RuntimeException("down");
+				case 1:
+					try {
+						Thread.sleep(10_000);
+					} catch (final InterruptedException e) {
+						// like an SDK call that is aborted
+						Thread.currentThread().interrupt();
+						throw new RuntimeException("aborted");
+					}
+					return "late-value";
+				default:
+					return "value2";
+			}
+		};
+		provider = new ChainingSettingProvider(slow, flaky)
+			.withCircuitBreakers(name -> new CircuitBreaker(name).withWindow(1, 1).withTicker(clock::get))
+			.withHedging(Duration.ofMillis(50));
+		assertEquals("value1", provider.getProperty("test", "key"));
+		final CircuitBreaker breaker = provider.getCircuitBreakers().get(1);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		// run test - the probe is cancelled once the first provider answers
+		clock.addAndGet(CircuitBreaker.DEFAULT_OPEN_DURATION.toNanos());
+		assertEquals("value1", provider.getProperty("test", "key"));
+		// give the cancelled probe time to finish
+		sleep(200);
+		assertEquals("value1", provider.getProperty("test", "key"));
+
+		// assert results - the second provider was probed again after the cancelled probe
+		assertEquals(3, calls.get());
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+	}
+
+	@Test
+	public void should_route_straight_to_the_provider_that_answered() {
+
+		// setup
+		when(provider2.getProperty("test", "key")).thenReturn("value2");
+		provider = new ChainingSettingProvider(provider1, provider2).withRouting();
+
+		// run test
+		for (int i = 0; i < 10; i++) {
+			assertEquals("value2", provider.getProperty("test", "key"));
+		}
+
+		// verify mocks / capture values - the first provider was only asked the first time
+		verify(provider1).getProperty("test", "key");
+		verify(provider2, times(10)).getProperty("test", "key");
+
+		// assert results
+		assertEquals(9, provider.getRouteHitCount());
+		assertEquals(1, provider.getRouteMissCount());
+		assertEquals(0.9, provider.getRouteHitRate(), 0.001);
+
+	}
+
+	@Test
+	public void should_ask_the_whole_chain_again_when_the_route_misses_or_expires() {
+
+		// setup
+		when(provider2.getProperty("test", "key")).thenReturn("value2");
+		provider = new ChainingSettingProvider(provider1, provider2).withRouting(Duration.ofMillis(100));
+		assertEquals("value2", provider.getProperty("test", "key"));
+
+		// run test - the first provider gains the key, which shows once the route expires
+		when(provider1.getProperty("test", "key")).thenReturn("value1");
+		final String routed = provider.getProperty("test", "key");
+		sleep(150);
+		final String revalidated = provider.getProperty("test", "key");
+
+		// then the first provider loses it, which shows right away
+		when(provider1.getProperty("test", "key")).thenReturn(null);
+		final String missed = provider.getProperty("test", "key");
+
+		// assert results
+		assertEquals("value2", routed);
+		assertEquals("value1", revalidated);
+		assertEquals("value2", missed);
+		assertEquals(1, provider.getRouteHitCount());
+		assertEquals(3, provider.getRouteMissCount());
+
+	}
+
+	@Test
+	public void should_ask_the_whole_chain_when_the_routed_provider_throws_not_found() {
+
+		// setup - the key is routed to the second provider, which throws when it doesn't have a key (like SSM)
+		when(provider2.getProperty("test", "key")).thenReturn("value2");
+		provider = new ChainingSettingProvider(provider1, provider2).withRouting();
+		assertEquals("value2", provider.getProperty("test", "key"));
+
+		// run test - the key moves to the first provider
+		doThrow(new SettingNotFoundException("/test/key")).when(provider2).getProperty("test", "key");
+		when(provider1.getProperty("test", "key")).thenReturn("value1");
+		final String value = provider.getProperty("test", "key");
+
+		// assert results
+		assertEquals("value1", value);
+		assertEquals(0, provider.getRouteHitCount());
+		assertEquals(2, provider.getRouteMissCount());
+
+	}
+
+	@Test
+	public void should_ask_the_whole_chain_when_a_routed_bulk_lookup_throws_not_found() {
+
+		// setup - the key is routed to the second provider
+		final List<String> keys = Collections.singletonList("key");
+		when(provider1.getProperties("test", keys)).thenReturn(Collections.<String, String>emptyMap());
+		when(provider2.getProperties("test", keys)).thenReturn(Collections.singletonMap("key", "value2"));
+		provider = new ChainingSettingProvider(provider1, provider2).withRouting();
+		assertEquals(Collections.singletonMap("key", "value2"), provider.getProperties("test", keys));
+
+		// run test - the key moves to the first provider
+		doThrow(new SettingNotFoundException("/test/key")).when(provider2).getProperties("test", keys);
+		doReturn(Collections.singletonMap("key", "value1")).when(provider1).getProperties("test", keys);
+		final Map<String, String> values = provider.getProperties("test", keys);
+
+		// assert results
+		assertEquals(Collections.singletonMap("key", "value1"), values);
+
+	}
+
+	@Test
+	public void should_not_ask_the_routed_provider_again_when_it_misses() {
+
+		// setup - the key is routed to the second provider
+		when(provider2.getProperty("test", "key")).thenReturn("value2");
+		provider = new ChainingSettingProvider(provider1, provider2).withRouting();
+		assertEquals("value2", provider.getProperty("test", "key"));
+
+		// run test - the second provider loses the key, then the first one gains it
+		when(provider2.getProperty("test", "key")).thenReturn(null);
+		final String missed = provider.getProperty("test", "key");
+		when(provider1.getProperty("test", "key")).thenReturn("value1");
+		final String moved = provider.getProperty("test", "key");
+
+		// verify mocks / capture values - the miss asked the rest of the chain, and dropped the route
+		verify(provider1, times(3)).getProperty("test", "key");
+		verify(provider2, times(2)).getProperty("test", "key");
+
+		// assert results
+		assertNull(missed);
+		assertEquals("value1", moved);
+		assertEquals(0, provider.getRouteHitCount());
+		assertEquals(3, provider.getRouteMissCount());
+
+	}
+
+	@Test
+	public void should_not_ask_the_routed_provider_again_when_it_misses_with_hedging() {
+
+		// setup - the key is routed to the second provider
+		when(provider2.getProperty("test", "key")).thenReturn("value2");
+		provider = new ChainingSettingProvider(provider1, provider2)
+			.withHedging(Duration.ofSeconds(10))
+			.withRouting();
+		assertEquals("value2", provider.getProperty("test", "key"));
+
+		// run test - the second provider loses the key, then the first one gains it
+		when(provider2.getProperty("test", "key")).thenReturn(null);
+		final String missed = provider.getProperty("test", "key");
+		when(provider1.getProperty("test", "key")).thenReturn("value1");
+		final String moved = provider.getProperty("test", "key");
+
+		// verify mocks / capture values - the miss asked the rest of the chain, and dropped the route
+		verify(provider1, times(3)).getProperty("test", "key");
+		verify(provider2, times(2)).getProperty("test", "key");
+
+		// assert results
+		assertNull(missed);
+		assertEquals("value1", moved);
+		assertEquals(0, provider.getRouteHitCount());
+
+	}
+
+	@Test
+	public void should_not_ask_the_routed_provider_again_when_a_bulk_lookup_misses() {
+
+		// setup - "a" is routed to the second provider
+		final List<String> keys = Arrays.asList("a", "b");
+		when(provider1.getProperties(eq("test"), anyListOf(String.class)))
+			.thenReturn(Collections.<String, String>emptyMap());
+		when(provider2.getProperties("test", keys)).thenReturn(Collections.singletonMap("a", "a2"));
+		provider = new ChainingSettingProvider(provider1, provider2).withRouting();
+		assertEquals(Collections.singletonMap("a", "a2"), provider.getProperties("test", keys));
+
+		// run test - the second provider loses "a"
+		when(provider2.getProperties(eq("test"), anyListOf(String.class)))
+			.thenReturn(Collections.<String, String>emptyMap());
+		final Map<String, String> missed = provider.getProperties("test", keys);
+		final Map<String, String> again = provider.getProperties("test", keys);
+
+		// verify mocks / capture values - after the routed miss, the second provider was only asked for "b"; the
+		// route was dropped, so the next lookup went down the chain
+		verify(provider1, times(3)).getProperties("test", keys);
+		verify(provider2, times(2)).getProperties("test", keys);
+		verify(provider2).getProperties("test", Collections.singletonList("a"));
+		verify(provider2).getProperties("test", Collections.singletonList("b"));
+		verifyNoMoreInteractions(provider1, provider2);
+
+		// assert results
+		assertTrue(missed.isEmpty());
+		assertTrue(again.isEmpty());
+
+	}
+
+	@Test
+	public void should_route_bulk_lookups() {
+
+		// setup
+		final Map<String, String> first = Collections.singletonMap("a", "a1");
+		final Map<String, String> second = new HashMap<>();
+		second.put("b", "b2");
+		second.put("c", "c2");
+		final MapSettingProvider firstProvider = spy(new MapSettingProvider(first));
+		final MapSettingProvider secondProvider = spy(new MapSettingProvider(second));
+		provider = new ChainingSettingProvider(firstProvider, secondProvider).withRouting();
+		provider.getProperties("test", Arrays.asList("a", "b", "c"));
+
+		// run test
+		final Map<String, String> values = provider.getProperties("test", Arrays.asList("a", "b", "c"));
+
+		// verify mocks / capture values - the second time, each provider was only asked for its own keys
+		verify(firstProvider).getProperties("test", Arrays.asList("a", "b", "c"));
+		verify(firstProvider).getProperties("test", Collections.singletonList("a"));
+		verify(secondProvider, times(2)).getProperties("test", Arrays.asList("b", "c"));
+		verifyNoMoreInteractions(firstProvider, secondProvider);
+
+		// assert results
+		assertEquals("a1", values.get("a"));
+		assertEquals("b2", values.get("b"));
+		assertEquals("c2", values.get("c"));
+		assertEquals(3, provider.getRouteHitCount());
+		assertEquals(3, provider.getRouteMissCount());
+
+	}
+
+	private static void sleep(final long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
 }
@@ -0,0 +1,158 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+	private final AtomicLong now = new AtomicLong();
+	private final List<String> changes = new ArrayList<>();
+	private CircuitBreaker breaker;
+
+	@Before
+	public void beforeCircuitBreakerTest() {
+		breaker = new CircuitBreaker("test")
+			.withWindow(10, 4)
+			.withFailureRateThreshold(0.5)
+			.withOpenDuration(Duration.ofSeconds(30))
+			.withTicker(now::get)
+			.withListener((b, from, to) -> changes.add(b.getName() + ": " + from + " -> " + to));
+	}
+
+	@Test
+	public void should_stay_closed_until_the_minimum_calls() {
+
+		// run test
+		for (int i = 0; i < 3; i++) {
+			assertTrue(breaker.tryAcquire());
+			breaker.onFailure();
+		}
+
+		// assert results
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertEquals(1.0, breaker.getFailureRate(), 0.001);
+		assertTrue(changes.isEmpty());
+
+	}
+
+	@Test
+	public void should_open_at_the_failure_rate_and_refuse_calls() {
+
+		// run test - 2 of 4 failed
+		breaker.onSuccess();
+		breaker.onFailure();
+		breaker.onSuccess();
+		breaker.onFailure();
+
+		// assert results
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire());
+		now.addAndGet(TimeUnit.SECONDS.toNanos(29));
+		assertFalse(breaker.tryAcquire());
+		assertEquals(Arrays.asList("test: CLOSED -> OPEN"), changes);
+
+	}
+
+	@Test
+	public void should_only_count_the_latest_calls() {
+
+		// setup - old failures slide out of the window
+		for (int i = 0; i < 3; i++) {
+			breaker.onFailure();
+		}
+		for (int i = 0; i < 10; i++) {
+			breaker.onSuccess();
+		}
+
+		// run test
+		breaker.onFailure();
+
+		// assert results
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertEquals(0.1, breaker.getFailureRate(), 0.001);
+
+	}
+
+	@Test
+	public void should_let_one_probe_through_and_close_if_it_works() {
+
+		// setup
+		openBreaker();
+
+		// run test
+		now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+		final boolean probe = breaker.tryAcquire();
+		final boolean second = breaker.tryAcquire();
+		breaker.onSuccess();
+
+		// assert results
+		assertTrue(probe);
+		assertFalse(second);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertEquals(0, breaker.getFailureRate(), 0.001);
+		assertTrue(breaker.tryAcquire());
+		assertEquals(
+			Arrays.asList("test: CLOSED -> OPEN", "test: OPEN -> HALF_OPEN", "test: HALF_OPEN -> CLOSED"),
+			changes
+		);
+
+	}
+
+	@Test
+	public void should_open_again_if_the_probe_fails() {
+
+		// setup
+		openBreaker();
+		now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+		// run test
+		assertTrue(breaker.tryAcquire());
+		breaker.onFailure();
+
+		// assert results - and the open duration starts over
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		now.addAndGet(TimeUnit.SECONDS.toNanos(29));
+		assertFalse(breaker.tryAcquire());
+		now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		assertTrue(breaker.tryAcquire());
+
+	}
+
+	private void openBreaker() {
+		for (int i = 0; i < 4; i++) {
+			breaker.onFailure();
+		}
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void should_let_another_probe_through_when_the_probe_is_ignored() {
+
+		// setup - open, then wait out the open duration
+		for (int i = 0; i < 4; i++) {
+			breaker.onFailure();
+		}
+		now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+		assertTrue(breaker.tryAcquire());
+		assertFalse(breaker.tryAcquire());
+
+		// run test
+		breaker.onIgnored();
+
+		// assert results - still half open, with room for another probe
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertTrue(breaker.tryAcquire());
+		assertFalse(breaker.tryAcquire());
+
+	}
+
+}
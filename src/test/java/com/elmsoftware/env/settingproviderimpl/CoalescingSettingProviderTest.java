@@ -0,0 +1,221 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import com.elmsoftware.env.SettingProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CoalescingSettingProviderTest {
+
+	private static final int THREADS = 64;
+
+	private GatedSettingProvider fakeProvider;
+	private CoalescingSettingProvider provider;
+	private ExecutorService executor;
+
+	@Before
+	public void beforeCoalescingSettingProviderTest() {
+		fakeProvider = new GatedSettingProvider();
+		provider = new CoalescingSettingProvider(fakeProvider);
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@After
+	public void afterCoalescingSettingProviderTest() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void should_share_one_lookup_between_concurrent_callers() throws Exception {
+
+		// setup
+		final List<Future<String>> results = new ArrayList<>();
+
+		// run test - the first caller holds the lookup open until everyone else is waiting on it
+		for (int i = 0; i < THREADS; i++) {
+			results.add(executor.submit(() -> provider.getProperty("test", "some-key")));
+		}
+		awaitCoalesced(THREADS - 1);
+		fakeProvider.release();
+
+		// assert results
+		for (final Future<String> result : results) {
+			assertEquals("test/some-key", result.get(10, TimeUnit.SECONDS));
+		}
+		assertEquals(1, fakeProvider.calls.get());
+
+	}
+
+	@Test
+	public void should_share_a_failure_between_concurrent_callers() throws Exception {
+
+		// setup
+		fakeProvider.failure = new RuntimeException("provider is down");
+		final List<Future<String>> results = new ArrayList<>();
+
+		// run test
+		for (int i = 0; i < THREADS; i++) {
+			results.add(executor.submit(() -> provider.getProperty("test", "some-key")));
+		}
+		awaitCoalesced(THREADS - 1);
+		fakeProvider.release();
+
+		// assert results
+		for (final Future<String> result : results) {
+			try {
+				result.get(10, TimeUnit.SECONDS);
+				fail("the lookup failed - this should have too");
+			} catch (final ExecutionException e) {
+				assertSame(fakeProvider.failure, e.getCause());
+			}
+		}
+		assertEquals(1, fakeProvider.calls.get());
+
+	}
+
+	@Test
+	public void should_look_up_again_once_the_lookup_is_done() {
+
+		// setup
+		fakeProvider.release();
+
+		// run test
+		provider.getProperty("test", "some-key");
+		provider.getProperty("test", "some-key");
+
+		// assert results - nothing is cached
+		assertEquals(2, fakeProvider.calls.get());
+		assertEquals(0, provider.getCoalescedCount());
+
+	}
+
+	@Test
+	public void should_not_share_lookups_across_environments_or_keys() {
+
+		// setup
+		fakeProvider.release();
+
+		// run test
+		final String test = provider.getProperty("test", "some-key");
+		final String prod = provider.getProperty("prod", "some-key");
+		final String other = provider.getProperty("test", "other-key");
+
+		// assert results
+		assertEquals("test/some-key", test);
+		assertEquals("prod/some-key", prod);
+		assertEquals("test/other-key", other);
+		assertEquals(3, fakeProvider.calls.get());
+
+	}
+
+	@Test
+	public void should_coalesce_bulk_lookups_by_key() throws Exception {
+
+		// setup
+		final List<Future<Map<String, String>>> results = new ArrayList<>();
+		final List<String> keys = Arrays.asList("a", "b", "c", "missing");
+
+		// run test - a mix of bulk and single lookups for overlapping keys
+		for (int i = 0; i < THREADS; i++) {
+			if (i % 2 == 0) {
+				results.add(executor.submit(() -> provider.getProperties("test", keys)));
+			} else {
+				executor.submit(() -> provider.getProperty("test", "a"));
+			}
+		}
+		Thread.sleep(100);
+		fakeProvider.release();
+
+		// assert results
+		final Map<String, String> expected = new HashMap<>();
+		expected.put("a", "test/a");
+		expected.put("b", "test/b");
+		expected.put("c", "test/c");
+		for (final Future<Map<String, String>> result : results) {
+			assertEquals(expected, result.get(10, TimeUnit.SECONDS));
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(
+			THREADS * keys.size() / 2 + THREADS / 2,
+			fakeProvider.keysLookedUp.get() + provider.getCoalescedCount()
+		);
+		assertTrue("too many lookups: " + fakeProvider.calls.get(), fakeProvider.calls.get() < THREADS / 2);
+
+	}
+
+	private void awaitCoalesced(final int expected) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 10_000;
+		while (provider.getCoalescedCount() < expected) {
+			assertTrue("only " + provider.getCoalescedCount() + " lookups waited", System.currentTimeMillis() < deadline);
+			Thread.sleep(5);
+		}
+	}
+
+	/**
+	 * Counts lookups, and holds them until it is released - the value is the environment and key.
+	 */
+	private static class GatedSettingProvider implements SettingProvider {
+
+		private final CountDownLatch gate = new CountDownLatch(1);
+		private final AtomicInteger calls = new AtomicInteger();
+		private final AtomicInteger keysLookedUp = new AtomicInteger();
+		private volatile RuntimeException failure;
+
+		void release() {
+			gate.countDown();
+		}
+
+		@Override
+		public String getProperty(final String environment, final String key) {
+			calls.incrementAndGet();
+			keysLookedUp.incrementAndGet();
+			await();
+			return environment + "/" + key;
+		}
+
+		@Override
+		public Map<String, String> getProperties(final String environment, final Collection<String> keys) {
+			calls.incrementAndGet();
+			keysLookedUp.addAndGet(keys.size());
+			await();
+			final Map<String, String> values = new HashMap<>();
+			for (final String key : keys) {
+				if (!"missing".equals(key)) {
+					values.put(key, environment + "/" + key);
+				}
+			}
+			return values;
+		}
+
+		private void await() {
+			try {
+				gate.await();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e.toString());
+			}
+			if (null != failure) {
+				throw failure;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import com.amazonaws.services.simplesystemsmanagement.AbstractAWSSimpleSystemsManagement;
+import com.amazonaws.services.simplesystemsmanagement.model.GetParametersByPathRequest;
+import com.amazonaws.services.simplesystemsmanagement.model.GetParametersByPathResult;
+import com.amazonaws.services.simplesystemsmanagement.model.GetParametersRequest;
+import com.amazonaws.services.simplesystemsmanagement.model.GetParametersResult;
+import com.amazonaws.services.simplesystemsmanagement.model.Parameter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-memory SSM parameter store (for the v1 sdk) that counts the requests made to it - pages of by-path results
+ * hold two parameters, so pagination gets used.
+ */
+class CountingAwsSimpleSystemsManagement extends AbstractAWSSimpleSystemsManagement {
+
+	static final int PAGE_SIZE = 2;
+
+	final Map<String, String> parameters = new TreeMap<>();
+	final AtomicInteger getParametersCalls = new AtomicInteger();
+	final AtomicInteger getParametersByPathCalls = new AtomicInteger();
+
+	CountingAwsSimpleSystemsManagement withParameter(final String name, final String value) {
+		parameters.put(name, value);
+		return this;
+	}
+
+	@Override
+	public GetParametersResult getParameters(final GetParametersRequest request) {
+		getParametersCalls.incrementAndGet();
+		final GetParametersResult result = new GetParametersResult();
+		for (final String name : request.getNames()) {
+			if (parameters.containsKey(name)) {
+				result.withParameters(new Parameter().withName(name).withValue(parameters.get(name)));
+			} else {
+				result.withInvalidParameters(name);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public GetParametersByPathResult getParametersByPath(final GetParametersByPathRequest request) {
+
+		getParametersByPathCalls.incrementAndGet();
+
+		final List<Parameter> matches = new ArrayList<>();
+		for (final Map.Entry<String, String> parameter : parameters.entrySet()) {
+			final String name = parameter.getKey();
+			if (name.startsWith(request.getPath() + "/")
+				&& (Boolean.TRUE.equals(request.getRecursive()) || name.indexOf('/', request.getPath().length() + 1) < 0)) {
+				matches.add(new Parameter().withName(name).withValue(parameter.getValue()));
+			}
+		}
+
+		final int start = null == request.getNextToken() ? 0 : Integer.parseInt(request.getNextToken());
+		final int end = Math.min(start + PAGE_SIZE, matches.size());
+		return new GetParametersByPathResult()
+			.withParameters(matches.subList(start, end))
+			.withNextToken(end < matches.size() ? Integer.toString(end) : null);
+
+	}
+
+}
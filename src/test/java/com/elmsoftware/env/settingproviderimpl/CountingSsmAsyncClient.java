@@ -0,0 +1,97 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import software.amazon.awssdk.services.ssm.SsmAsyncClient;
+import software.amazon.awssdk.services.ssm.model.GetParametersRequest;
+import software.amazon.awssdk.services.ssm.model.GetParametersResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An async stand-in for SSM: answers from a {@link CountingSsmClient}, but only after some latency (on a timer, so no
+ * thread waits for it), and keeps track of how many requests were running at once. With a gate, nothing is answered
+ * until that many requests are running - or the latency has passed, so a provider that waits for each answer fails
+ * instead of hanging.
+ */
+class CountingSsmAsyncClient implements SsmAsyncClient {
+
+	final CountingSsmClient store = new CountingSsmClient();
+	final AtomicInteger inFlight = new AtomicInteger();
+	final AtomicInteger maxInFlight = new AtomicInteger();
+
+	private final long latencyMillis;
+	private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "fake-ssm-latency");
+		thread.setDaemon(true);
+		return thread;
+	});
+	// answers waiting for the gate to open
+	private final List<Runnable> held = new ArrayList<>();
+	private int gate;
+
+	CountingSsmAsyncClient(final long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	CountingSsmAsyncClient withGate(final int requests) {
+		this.gate = requests;
+		return this;
+	}
+
+	CountingSsmAsyncClient withParameter(final String name, final String value) {
+		store.withParameter(name, value);
+		return this;
+	}
+
+	@Override
+	public CompletableFuture<GetParametersResponse> getParameters(final GetParametersRequest request) {
+
+		final int running = inFlight.incrementAndGet();
+		maxInFlight.accumulateAndGet(running, Math::max);
+
+		final CompletableFuture<GetParametersResponse> response = new CompletableFuture<>();
+		final Runnable answer = () -> {
+			if (response.isDone()) {
+				return;
+			}
+			inFlight.decrementAndGet();
+			try {
+				response.complete(store.getParameters(request));
+			} catch (final RuntimeException e) {
+				response.completeExceptionally(e);
+			}
+		};
+
+		if (gate > 0) {
+			final List<Runnable> released = new ArrayList<>();
+			synchronized (held) {
+				held.add(answer);
+				if (held.size() >= gate) {
+					released.addAll(held);
+					held.clear();
+				}
+			}
+			released.forEach(timer::execute);
+		}
+
+		timer.schedule(answer, latencyMillis, TimeUnit.MILLISECONDS);
+		return response;
+
+	}
+
+	@Override
+	public String serviceName() {
+		return "ssm";
+	}
+
+	@Override
+	public void close() {
+		timer.shutdownNow();
+	}
+
+}
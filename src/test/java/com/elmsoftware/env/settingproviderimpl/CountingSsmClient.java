@@ -0,0 +1,104 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.ssm.SsmClient;
+import software.amazon.awssdk.services.ssm.model.GetParametersByPathRequest;
+import software.amazon.awssdk.services.ssm.model.GetParametersByPathResponse;
+import software.amazon.awssdk.services.ssm.model.GetParametersRequest;
+import software.amazon.awssdk.services.ssm.model.GetParametersResponse;
+import software.amazon.awssdk.services.ssm.model.Parameter;
+import software.amazon.awssdk.services.ssm.model.SsmException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-memory SSM parameter store that counts the requests made to it - pages of by-path results hold two
+ * parameters, so pagination gets used. It can also be told to throttle the next few requests.
+ */
+class CountingSsmClient implements SsmClient {
+
+	static final int PAGE_SIZE = 2;
+
+	final Map<String, String> parameters = new TreeMap<>();
+	final AtomicInteger getParametersCalls = new AtomicInteger();
+	final AtomicInteger getParametersByPathCalls = new AtomicInteger();
+	final AtomicInteger throttledCalls = new AtomicInteger();
+
+	private final AtomicInteger throttleNext = new AtomicInteger();
+
+	CountingSsmClient withParameter(final String name, final String value) {
+		parameters.put(name, value);
+		return this;
+	}
+
+	// the next requests that will be throttled
+	CountingSsmClient withThrottling(final int requests) {
+		throttleNext.set(requests);
+		return this;
+	}
+
+	@Override
+	public GetParametersResponse getParameters(final GetParametersRequest request) {
+		getParametersCalls.incrementAndGet();
+		throttle();
+		final List<Parameter> found = new ArrayList<>();
+		final List<String> invalid = new ArrayList<>();
+		for (final String name : request.names()) {
+			if (parameters.containsKey(name)) {
+				found.add(Parameter.builder().name(name).value(parameters.get(name)).build());
+			} else {
+				invalid.add(name);
+			}
+		}
+		return GetParametersResponse.builder().parameters(found).invalidParameters(invalid).build();
+	}
+
+	@Override
+	public GetParametersByPathResponse getParametersByPath(final GetParametersByPathRequest request) {
+
+		getParametersByPathCalls.incrementAndGet();
+		throttle();
+
+		final List<Parameter> matches = new ArrayList<>();
+		for (final Map.Entry<String, String> parameter : parameters.entrySet()) {
+			final String name = parameter.getKey();
+			if (name.startsWith(request.path() + "/")
+				&& (Boolean.TRUE.equals(request.recursive()) || name.indexOf('/', request.path().length() + 1) < 0)) {
+				matches.add(Parameter.builder().name(name).value(parameter.getValue()).build());
+			}
+		}
+
+		final int start = null == request.nextToken() ? 0 : Integer.parseInt(request.nextToken());
+		final int end = Math.min(start + PAGE_SIZE, matches.size());
+		return GetParametersByPathResponse.builder()
+			.parameters(matches.subList(start, end))
+			.nextToken(end < matches.size() ? Integer.toString(end) : null)
+			.build();
+
+	}
+
+	private void throttle() {
+		if (throttleNext.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+			throttledCalls.incrementAndGet();
+			throw SsmException.builder()
+				.statusCode(400)
+				.awsErrorDetails(AwsErrorDetails.builder().errorCode("ThrottlingException").errorMessage("Rate exceeded").build())
+				.build();
+		}
+	}
+
+	@Override
+	public String serviceName() {
+		return "ssm";
+	}
+
+	@Override
+	public void close() {
+		// nothing to close
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import com.elmsoftware.env.Deadline;
+import com.elmsoftware.env.SettingProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class DeadlineSettingProviderTest {
+
+	private final AtomicBoolean hung = new AtomicBoolean();
+	private SettingProvider slowProvider;
+
+	@Before
+	public void beforeDeadlineSettingProviderTest() {
+		slowProvider = (environment, key) -> {
+			if (hung.get()) {
+				try {
+					Thread.sleep(10_000);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return key + "-value";
+		};
+	}
+
+	@Test
+	public void should_return_values_found_in_time() {
+
+		// setup
+		final DeadlineSettingProvider provider = new DeadlineSettingProvider(slowProvider, Deadline.after(Duration.ofSeconds(5)));
+
+		// run test
+		final Map<String, String> values = provider.getProperties("test", Arrays.asList("a", "b"));
+
+		// assert results
+		assertEquals("a-value", values.get("a"));
+		assertEquals("b-value", values.get("b"));
+		assertTrue(provider.getFallbacks().isEmpty());
+
+	}
+
+	@Test
+	public void should_fall_back_to_last_known_good_then_defaults() {
+
+		// setup
+		final Map<String, String> earlier = new HashMap<>();
+		earlier.put("from.file", "file-value");
+		final DeadlineSettingProvider provider = new DeadlineSettingProvider(slowProvider, Deadline.after(Duration.ofMillis(500)))
+			.withLastKnownGood(new MapSettingProvider(earlier))
+			.withDefaults(Collections.singletonMap("defaulted", "default-value"));
+		final String remembered = provider.getProperty("test", "remembered");
+
+		// run test
+		hung.set(true);
+		final long start = System.currentTimeMillis();
+		final Map<String, String> values = provider.getProperties(
+			"test",
+			Arrays.asList("remembered", "from.file", "defaulted")
+		);
+		final long elapsed = System.currentTimeMillis() - start;
+
+		// assert results
+		assertEquals("remembered-value", remembered);
+		assertEquals("remembered-value", values.get("remembered"));
+		assertEquals("file-value", values.get("from.file"));
+		assertEquals("default-value", values.get("defaulted"));
+		assertEquals(DeadlineSettingProvider.Fallback.LAST_KNOWN_GOOD, provider.getFallbacks().get("remembered"));
+		assertEquals(DeadlineSettingProvider.Fallback.LAST_KNOWN_GOOD, provider.getFallbacks().get("from.file"));
+		assertEquals(DeadlineSettingProvider.Fallback.DEFAULT, provider.getFallbacks().get("defaulted"));
+		assertTrue("took " + elapsed + "ms", elapsed < 2000);
+
+	}
+
+	@Test
+	public void should_fail_fast_without_a_fallback() {
+
+		// setup
+		hung.set(true);
+		final DeadlineSettingProvider provider = new DeadlineSettingProvider(slowProvider, Deadline.after(Duration.ofMillis(100)))
+			.withDefaults(Collections.singletonMap("defaulted", "default-value"));
+
+		// run test
+		try {
+			provider.getProperties("test", Arrays.asList("defaulted", "secret"));
+			fail("secret has no fallback - this should have failed");
+		} catch (final Deadline.DeadlineExceededException e) {
+
+			// assert results
+			assertEquals(
+				"The PT0.1S budget for resolving settings ran out while looking up [secret] "
+					+ "(there is no last-known-good or default value)",
+				e.getMessage()
+			);
+
+		}
+
+	}
+
+	@Test
+	public void should_not_wait_once_the_deadline_has_passed() throws InterruptedException {
+
+		// setup
+		final DeadlineSettingProvider provider = new DeadlineSettingProvider(slowProvider, Deadline.after(Duration.ofMillis(1)))
+			.withDefaults(Collections.singletonMap("defaulted", "default-value"));
+		Thread.sleep(10);
+
+		// run test
+		final String value = provider.getProperty("test", "defaulted");
+
+		// assert results
+		assertEquals("default-value", value);
+
+	}
+
+}
@@ -0,0 +1,258 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import com.elmsoftware.env.SettingProvider;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class DiskCachingSettingProviderTest {
+
+	private static final byte[] KEY = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final AtomicLong now = new AtomicLong(1_000_000);
+	private final Map<String, String> values = new HashMap<>();
+
+	private Path file;
+
+	@Before
+	public void beforeDiskCachingSettingProviderTest() {
+		file = temporaryFolder.getRoot().toPath().resolve("cache").resolve("settings.cache");
+		values.put("some.key", "some-value");
+		values.put("other.key", "other-value");
+	}
+
+	@Test
+	public void should_serve_values_from_file_when_provider_is_unavailable() {
+
+		// setup - the first start writes the file
+		final DiskCachingSettingProvider firstStart = provider(new MapSettingProvider(values));
+		assertEquals("some-value", firstStart.getProperty("test", "some.key"));
+		assertTrue(Files.exists(file));
+
+		// run test - the next start can't reach the provider
+		final DiskCachingSettingProvider secondStart = provider(unavailable());
+		now.addAndGet(Duration.ofHours(1).toMillis());
+
+		// assert results
+		assertEquals("some-value", secondStart.getProperty("test", "some.key"));
+		assertEquals("some-value", secondStart.getProperty("test", "some.key"));
+
+	}
+
+	@Test
+	public void should_revalidate_values_in_background() {
+
+		// setup
+		provider(new MapSettingProvider(values)).getProperty("test", "some.key");
+		values.put("some.key", "changed-value");
+		final SettingProvider settingProvider = spy(new MapSettingProvider(values));
+
+		// run test
+		final DiskCachingSettingProvider secondStart = provider(settingProvider);
+		final String first = secondStart.getProperty("test", "some.key");
+		final String second = secondStart.getProperty("test", "some.key");
+
+		// assert results - the file is used first, and then the revalidated value
+		assertEquals("some-value", first);
+		assertEquals("changed-value", second);
+		assertEquals("changed-value", provider(unavailable()).getProperty("test", "some.key"));
+
+		// verify mocks / capture values - only one check per key
+		verify(settingProvider).getProperties("test", Collections.singletonList("some.key"));
+		verify(settingProvider, never()).getProperty(anyString(), anyString());
+
+	}
+
+	@Test
+	public void should_not_use_values_older_than_max_stale_age() {
+
+		// setup
+		provider(new MapSettingProvider(values)).getProperty("test", "some.key");
+		now.addAndGet(Duration.ofDays(2).toMillis());
+
+		// run test
+		try {
+			provider(unavailable()).getProperty("test", "some.key");
+			fail("the cached value is too old - this should have failed.");
+		} catch (final RuntimeException e) {
+			// assert results
+			assertEquals("ssm is down", e.getMessage());
+		}
+
+	}
+
+	@Test
+	public void should_cache_bulk_lookups() {
+
+		// setup
+		final Map<String, String> first = provider(new MapSettingProvider(values))
+			.getProperties("test", Arrays.asList("some.key", "other.key", "missing.key"));
+
+		// run test
+		final Map<String, String> second = provider(unavailable())
+			.getProperties("test", Arrays.asList("some.key", "other.key"));
+
+		// assert results
+		assertEquals(values, first);
+		assertEquals(values, second);
+
+	}
+
+	@Test
+	public void should_write_the_file_once_for_a_burst_of_lookups() {
+
+		// setup - the background work waits until the test runs it
+		final List<Runnable> background = new ArrayList<>();
+		final DiskCachingSettingProvider firstStart = provider(new MapSettingProvider(values))
+			.withRevalidationExecutor(background::add);
+
+		// run test
+		firstStart.getProperty("test", "some.key");
+		firstStart.getProperty("test", "other.key");
+		firstStart.getProperties("prod", Arrays.asList("some.key", "other.key"));
+
+		// assert results - nothing was written on the lookup threads, and one write covers every lookup
+		assertFalse(Files.exists(file));
+		assertEquals(1, background.size());
+		background.get(0).run();
+		final DiskCachingSettingProvider secondStart = provider(unavailable());
+		assertEquals(values, secondStart.getProperties("test", Arrays.asList("some.key", "other.key")));
+		assertEquals(values, secondStart.getProperties("prod", Arrays.asList("some.key", "other.key")));
+
+	}
+
+	@Test
+	public void should_remove_values_the_provider_no_longer_has() {
+
+		// setup
+		provider(new MapSettingProvider(values)).getProperty("test", "some.key");
+		values.remove("some.key");
+
+		// run test - the file is used, and the check finds the value is gone
+		final String value = provider(new MapSettingProvider(values)).getProperty("test", "some.key");
+
+		// assert results
+		assertEquals("some-value", value);
+		try {
+			provider(unavailable()).getProperty("test", "some.key");
+			fail("the value was removed from the file - this should have failed.");
+		} catch (final RuntimeException e) {
+			assertEquals("ssm is down", e.getMessage());
+		}
+
+	}
+
+	@Test
+	public void should_drop_stale_values_when_writing_the_file() {
+
+		// setup - a value from long ago, then a write in another environment
+		provider(new MapSettingProvider(values)).getProperty("test", "some.key");
+		now.addAndGet(Duration.ofDays(2).toMillis());
+		provider(new MapSettingProvider(values)).getProperty("prod", "other.key");
+
+		// run test - even a provider that would still use old values doesn't find it
+		final DiskCachingSettingProvider lenient = provider(unavailable()).withMaxStaleAge(Duration.ofDays(30));
+
+		// assert results
+		assertEquals("other-value", lenient.getProperty("prod", "other.key"));
+		try {
+			lenient.getProperty("test", "some.key");
+			fail("the stale value was dropped from the file - this should have failed.");
+		} catch (final RuntimeException e) {
+			assertEquals("ssm is down", e.getMessage());
+		}
+
+	}
+
+	@Test
+	public void should_encrypt_the_file() throws Exception {
+
+		// setup
+		provider(new MapSettingProvider(values)).getProperty("test", "some.key");
+
+		// run test
+		final String content = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+
+		// assert results
+		assertFalse(content.contains("some-value"));
+		assertFalse(content.contains("some.key"));
+
+	}
+
+	@Test
+	public void should_ignore_file_that_was_changed() throws Exception {
+
+		// setup
+		provider(new MapSettingProvider(values)).getProperty("test", "some.key");
+		final byte[] content = Files.readAllBytes(file);
+		content[content.length - 1] ^= 1;
+		Files.write(file, content);
+
+		final SettingProvider settingProvider = spy(new MapSettingProvider(values));
+
+		// run test
+		final String value = provider(settingProvider).getProperty("test", "some.key");
+
+		// assert results
+		assertEquals("some-value", value);
+		verify(settingProvider).getProperty("test", "some.key");
+
+	}
+
+	@Test
+	public void should_ignore_file_written_with_another_key() {
+
+		// setup
+		provider(new MapSettingProvider(values)).getProperty("test", "some.key");
+		final SettingProvider settingProvider = spy(new MapSettingProvider(values));
+
+		// run test
+		final String value = new DiskCachingSettingProvider(
+			settingProvider,
+			file,
+			"fedcba9876543210".getBytes(StandardCharsets.UTF_8)
+		).getProperty("test", "some.key");
+
+		// assert results
+		assertEquals("some-value", value);
+		verify(settingProvider).getProperty("test", "some.key");
+
+	}
+
+	private DiskCachingSettingProvider provider(final SettingProvider settingProvider) {
+		return new DiskCachingSettingProvider(settingProvider, file, KEY)
+			.withMaxStaleAge(Duration.ofDays(1))
+			.withRevalidationExecutor(Runnable::run)
+			.withClock(now::get);
+	}
+
+	@SuppressWarnings("unchecked")
+	private SettingProvider unavailable() {
+		final SettingProvider settingProvider = mock(SettingProvider.class);
+		when(settingProvider.getProperty(anyString(), anyString())).thenThrow(new RuntimeException("ssm is down"));
+		when(settingProvider.getProperties(anyString(), any())).thenThrow(new RuntimeException("ssm is down"));
+		return settingProvider;
+	}
+
+}
@@ -2,6 +2,8 @@ package com.elmsoftware.env.settingproviderimpl;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -38,4 +40,22 @@ public class MapSettingProviderTest {
 
 	}
 
+	@Test
+	public void should_get_several_properties_at_once() {
+
+		// setup
+		final Map<String,String> map = new HashMap<>();
+		map.put("fml", "snapped-the-frame");
+		map.put("other", "value");
+
+		final MapSettingProvider provider = new MapSettingProvider(map);
+
+		// run test and assert results
+		assertEquals(
+			Collections.singletonMap("fml", "snapped-the-frame"),
+			provider.getProperties(null, Arrays.asList("fml", "missing"))
+		);
+
+	}
+
 }
@@ -3,7 +3,10 @@ package com.elmsoftware.env.settingproviderimpl;
 import com.elmsoftware.env.SettingProvider;
 import org.junit.Test;
 
+import java.util.Collections;
+
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class NoOpSettingProviderTest {
 
@@ -14,6 +17,7 @@ public class NoOpSettingProviderTest {
 		// setup
 		// run test
 		assertNull(settingProvider.getProperty("fml", "snapped-the-frame"));
+		assertTrue(settingProvider.getProperties("fml", Collections.singleton("snapped-the-frame")).isEmpty());
 		// verify mocks / capture values
 		// assert results
 	}
@@ -0,0 +1,106 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import com.elmsoftware.env.SettingProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.*;
+
+public class ParallelSettingProviderTest {
+
+	private ExecutorService executor;
+
+	@Before
+	public void beforeParallelSettingProviderTest() {
+		executor = ParallelSettingProvider.newDefaultExecutor();
+	}
+
+	@After
+	public void afterParallelSettingProviderTest() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void should_look_up_each_key_on_the_executor() {
+
+		// setup
+		final Set<String> threads = ConcurrentHashMap.newKeySet();
+		final SettingProvider provider = new ParallelSettingProvider((environment, key) -> {
+			threads.add(Thread.currentThread().toString());
+			return "missing".equals(key) ? null : environment + "/" + key;
+		}, executor);
+
+		// run test
+		final Map<String, String> values = provider.getProperties("test", Arrays.asList("a", "b", "missing"));
+
+		// assert results
+		assertEquals(2, values.size());
+		assertEquals("test/a", values.get("a"));
+		assertEquals("test/b", values.get("b"));
+		assertFalse(threads.contains(Thread.currentThread().toString()));
+
+	}
+
+	@Test
+	public void should_throw_the_first_failure_in_key_order() {
+
+		// setup
+		final SettingProvider provider = new ParallelSettingProvider((environment, key) -> {
+			if ("second".equals(key)) {
+				throw new IllegalStateException("second failed");
+			}
+			if ("third".equals(key)) {
+				throw new IllegalStateException("third failed");
+			}
+			return key;
+		}, executor);
+
+		// run test
+		try {
+			provider.getProperties("test", Arrays.asList("first", "second", "third"));
+			fail("two lookups failed - this should have too");
+		} catch (final IllegalStateException e) {
+
+			// assert results
+			assertEquals("second failed", e.getMessage());
+
+		}
+
+	}
+
+	@Test
+	public void should_leave_out_keys_not_found_by_the_deadline() {
+
+		// setup
+		final SettingProvider provider = new ParallelSettingProvider((environment, key) -> {
+			if ("slow".equals(key)) {
+				try {
+					Thread.sleep(5000);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return key;
+		}, executor, Duration.ofMillis(100));
+
+		// run test
+		final long start = System.currentTimeMillis();
+		final Map<String, String> values = provider.getProperties("test", Arrays.asList("slow", "fast"));
+		final long elapsed = System.currentTimeMillis() - start;
+
+		// assert results
+		assertEquals(Collections.singletonMap("fast", "fast"), values);
+		assertTrue("took " + elapsed + "ms", elapsed < 2000);
+
+	}
+
+}
@@ -0,0 +1,162 @@
+package com.elmsoftware.env.settingproviderimpl;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SsmThrottlingTest {
+
+	private static final RuntimeException THROTTLED = new RuntimeException("Rate exceeded");
+
+	@Test
+	public void should_keep_backoff_between_base_and_max_delay() {
+
+		// setup
+		final SsmThrottling throttling = new SsmThrottling().withBackoff(Duration.ofMillis(10), Duration.ofMillis(200));
+		final long base = TimeUnit.MILLISECONDS.toNanos(10);
+		final long max = TimeUnit.MILLISECONDS.toNanos(200);
+
+		// run test
+		long delay = base;
+		long longest = 0;
+		for (int i = 0; i < 1000; i++) {
+			final long next = throttling.nextDelay(delay);
+
+			// assert results - never more than three times the last delay
+			assertTrue("delay was " + next, next >= base && next <= max);
+			assertTrue("delay was " + next + " after " + delay, next <= delay * 3);
+			longest = Math.max(longest, next);
+			delay = next;
+		}
+		assertTrue("backoff never grew: " + longest, longest > base * 3);
+
+	}
+
+	@Test
+	public void should_retry_until_the_request_is_not_throttled() {
+
+		// setup
+		final AtomicInteger attempts = new AtomicInteger();
+		final SsmThrottling throttling = new SsmThrottling().withBackoff(Duration.ofMillis(1), Duration.ofMillis(5));
+
+		// run test
+		final String result = throttling.call("some-key", () -> {
+			if (attempts.incrementAndGet() < 4) {
+				throw THROTTLED;
+			}
+			return "value";
+		}, e -> e == THROTTLED);
+
+		// assert results
+		assertEquals("value", result);
+		assertEquals(4, attempts.get());
+		assertEquals(3, throttling.getThrottledCount());
+		assertEquals(3, throttling.getRetryCount());
+		assertTrue(throttling.getWaitTime().toNanos() >= TimeUnit.MILLISECONDS.toNanos(3));
+
+	}
+
+	@Test
+	public void should_give_up_after_max_attempts() {
+
+		// setup
+		final AtomicInteger attempts = new AtomicInteger();
+		final SsmThrottling throttling = new SsmThrottling()
+			.withMaxAttempts(3)
+			.withBackoff(Duration.ofMillis(1), Duration.ofMillis(5));
+
+		// run test
+		try {
+			throttling.call("some-key", () -> {
+				attempts.incrementAndGet();
+				throw THROTTLED;
+			}, e -> e == THROTTLED);
+			fail("every attempt was throttled - this should have failed");
+		} catch (final RuntimeException e) {
+			assertSame(THROTTLED, e);
+		}
+
+		// assert results
+		assertEquals(3, attempts.get());
+		assertEquals(2, throttling.getRetryCount());
+
+	}
+
+	@Test
+	public void should_not_retry_other_exceptions() {
+
+		// setup
+		final AtomicInteger attempts = new AtomicInteger();
+		final SsmThrottling throttling = new SsmThrottling();
+
+		// run test
+		try {
+			throttling.call("some-key", () -> {
+				attempts.incrementAndGet();
+				throw new IllegalStateException("not found");
+			}, e -> e == THROTTLED);
+			fail("this should have failed");
+		} catch (final IllegalStateException e) {
+			assertEquals("not found", e.getMessage());
+		}
+
+		// assert results
+		assertEquals(1, attempts.get());
+		assertEquals(0, throttling.getThrottledCount());
+
+	}
+
+	@Test
+	public void should_slow_down_when_throttled_and_recover_when_not() {
+
+		// setup
+		final SsmThrottling throttling = new SsmThrottling()
+			.withMaxRate(1000)
+			.withMinRate(10)
+			.withMaxAttempts(1);
+
+		// run test
+		for (int i = 0; i < 10; i++) {
+			try {
+				throttling.call("some-key", () -> {
+					throw THROTTLED;
+				}, e -> e == THROTTLED);
+			} catch (final RuntimeException e) {
+				// expected
+			}
+		}
+		final double slowest = throttling.getRate();
+		for (int i = 0; i < 5; i++) {
+			throttling.call("some-key", () -> "value", e -> e == THROTTLED);
+		}
+
+		// assert results
+		assertEquals(10, slowest, 0.001);
+		assertEquals(15, throttling.getRate(), 0.001);
+
+	}
+
+	@Test
+	public void should_pace_requests_to_the_rate() {
+
+		// setup - a new bucket only has one token, then refills at 50 per second
+		final SsmThrottling throttling = new SsmThrottling().withMaxRate(50);
+		throttling.call("warm-up", () -> "value", e -> false);
+
+		// run test
+		final long start = System.nanoTime();
+		for (int i = 0; i < 10; i++) {
+			throttling.call("some-key", () -> "value", e -> false);
+		}
+		final long elapsed = System.nanoTime() - start;
+
+		// assert results - the first token was already used, so ten requests take at least 9/50 of a second
+		assertTrue("took " + elapsed + "ns", elapsed >= TimeUnit.MILLISECONDS.toNanos(150));
+
+	}
+
+}